@@ -211,6 +211,26 @@ import java.util.List;
         global = true,
         category = CoreProperties.CATEGORY_SECURITY,
         type = PropertyType.BOOLEAN),
+    @Property(
+        key = CoreProperties.PRECOMPUTE_HIGHLIGHTING,
+        defaultValue = "" + CoreProperties.PRECOMPUTE_HIGHLIGHTING_DEFAULT_VALUE,
+        name = "Compute syntax highlighting during analysis",
+        description = "Set to true to store the syntax highlighting of sources during analysis instead of computing it on each display. "
+          + "Changes will be applied during next code analysis.",
+        project = true,
+        global = true,
+        category = CoreProperties.CATEGORY_GENERAL,
+        type = PropertyType.BOOLEAN),
+    @Property(
+        key = CoreProperties.BATCH_INSERT_DEPENDENCIES,
+        defaultValue = "" + CoreProperties.BATCH_INSERT_DEPENDENCIES_DEFAULT_VALUE,
+        name = "Insert dependencies in batch",
+        description = "Set to true to insert the dependencies between resources in batch once all the sensors have been executed. "
+          + "It must not be enabled if a sensor reads the ids of the dependencies it registers.",
+        project = true,
+        global = true,
+        category = CoreProperties.CATEGORY_GENERAL,
+        type = PropertyType.BOOLEAN),
     @Property(
         key = CoreProperties.CORE_TENDENCY_DEPTH_PROPERTY,
         defaultValue = "" + CoreProperties.CORE_TENDENCY_DEPTH_DEFAULT_VALUE,
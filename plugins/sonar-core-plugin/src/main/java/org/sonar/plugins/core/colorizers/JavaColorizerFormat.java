@@ -21,12 +21,15 @@ package org.sonar.plugins.core.colorizers;
 
 import java.util.List;
 
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
 import org.sonar.api.resources.Java;
 import org.sonar.api.web.CodeColorizerFormat;
 import org.sonar.colorizer.CodeColorizer;
 import org.sonar.colorizer.Tokenizer;
 
-public class JavaColorizerFormat extends CodeColorizerFormat{
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class JavaColorizerFormat extends CodeColorizerFormat implements BatchExtension {
 
   public JavaColorizerFormat() {
     super(Java.KEY);
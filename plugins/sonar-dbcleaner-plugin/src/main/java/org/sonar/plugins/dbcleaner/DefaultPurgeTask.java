@@ -42,7 +42,23 @@ import org.sonar.plugins.dbcleaner.period.DefaultPeriodCleaner;
     global = true,
     project = true,
     module = false,
-    type = PropertyType.BOOLEAN)
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = DbCleanerConstants.PROPERTY_PURGE_THREADS,
+    defaultValue = "" + PurgeDao.DEFAULT_MAX_THREADS,
+    name = "Number of threads used to purge the history of a project",
+    description = "Snapshots of different analysis are purged concurrently. Set 1 to purge them sequentially.",
+    global = true,
+    project = false,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = DbCleanerConstants.PROPERTY_PAUSE_BETWEEN_TABLES_IN_MS,
+    defaultValue = "0",
+    name = "Pause between the purges of tables (in milliseconds)",
+    description = "Slows down the purge in order to not starve the analyses that are saved in the same time.",
+    global = true,
+    project = false,
+    type = PropertyType.INTEGER)
 })
 public class DefaultPurgeTask implements PurgeTask {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultPurgeTask.class);
@@ -86,7 +102,9 @@ public class DefaultPurgeTask implements PurgeTask {
 
   private void doPurge(long resourceId) {
     try {
-      purgeDao.purge(resourceId, getScopesWithoutHistoricalData());
+      int threads = Math.max(1, settings.getInt(DbCleanerConstants.PROPERTY_PURGE_THREADS));
+      long pause = Math.max(0L, settings.getLong(DbCleanerConstants.PROPERTY_PAUSE_BETWEEN_TABLES_IN_MS));
+      purgeDao.purge(resourceId, getScopesWithoutHistoricalData(), threads, pause);
     } catch (Exception e) {
       // purge errors must no fail the batch
       LOG.error("Fail to purge data [id=" + resourceId + "]", e);
@@ -25,6 +25,16 @@ public interface DbCleanerConstants {
   String PLUGIN_NAME = "DbCleaner";
   String PROPERTY_CLEAN_DIRECTORY = "sonar.dbcleaner.cleanDirectory";
 
+  /**
+   * @since 3.5
+   */
+  String PROPERTY_PURGE_THREADS = "sonar.dbcleaner.purgeThreads";
+
+  /**
+   * @since 3.5
+   */
+  String PROPERTY_PAUSE_BETWEEN_TABLES_IN_MS = "sonar.dbcleaner.pauseBetweenTablesInMs";
+
   String HOURS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_DAY = "sonar.dbcleaner.hoursBeforeKeepingOnlyOneSnapshotByDay";
   String WEEKS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_WEEK = "sonar.dbcleaner.weeksBeforeKeepingOnlyOneSnapshotByWeek";
   String WEEKS_BEFORE_KEEPING_ONLY_ONE_SNAPSHOT_BY_MONTH = "sonar.dbcleaner.weeksBeforeKeepingOnlyOneSnapshotByMonth";
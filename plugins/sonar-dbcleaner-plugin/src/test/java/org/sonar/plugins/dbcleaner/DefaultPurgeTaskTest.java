@@ -39,7 +39,7 @@ public class DefaultPurgeTaskTest {
 
     task.purge(1L);
 
-    verify(purgeDao).purge(1L, new String[]{Scopes.FILE});
+    verify(purgeDao).purge(1L, new String[]{Scopes.FILE}, PurgeDao.DEFAULT_MAX_THREADS, 0L);
   }
 
   @Test
@@ -50,17 +50,30 @@ public class DefaultPurgeTaskTest {
 
     task.purge(1L);
 
-    verify(purgeDao).purge(1L, new String[]{Scopes.DIRECTORY, Scopes.FILE});
+    verify(purgeDao).purge(1L, new String[]{Scopes.DIRECTORY, Scopes.FILE}, PurgeDao.DEFAULT_MAX_THREADS, 0L);
+  }
+
+  @Test
+  public void shouldConfigureConcurrencyAndThrottling() {
+    PurgeDao purgeDao = mock(PurgeDao.class);
+    Settings settings = new Settings(new PropertyDefinitions(DefaultPurgeTask.class));
+    settings.setProperty(DbCleanerConstants.PROPERTY_PURGE_THREADS, "4");
+    settings.setProperty(DbCleanerConstants.PROPERTY_PAUSE_BETWEEN_TABLES_IN_MS, "50");
+    DefaultPurgeTask task = new DefaultPurgeTask(purgeDao, settings, mock(DefaultPeriodCleaner.class));
+
+    task.purge(1L);
+
+    verify(purgeDao).purge(1L, new String[]{Scopes.DIRECTORY, Scopes.FILE}, 4, 50L);
   }
 
   @Test
   public void shouldNotFailOnErrors() {
     PurgeDao purgeDao = mock(PurgeDao.class);
-    when(purgeDao.purge(anyLong(), (String[]) any())).thenThrow(new RuntimeException());
+    when(purgeDao.purge(anyLong(), (String[]) any(), anyInt(), anyLong())).thenThrow(new RuntimeException());
     DefaultPurgeTask task = new DefaultPurgeTask(purgeDao, new Settings(), mock(DefaultPeriodCleaner.class));
 
     task.purge(1L);
 
-    verify(purgeDao).purge(anyLong(), (String[]) any());
+    verify(purgeDao).purge(anyLong(), (String[]) any(), anyInt(), anyLong());
   }
 }
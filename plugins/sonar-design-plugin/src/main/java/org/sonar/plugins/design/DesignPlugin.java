@@ -22,6 +22,7 @@ package org.sonar.plugins.design;
 import com.google.common.collect.ImmutableList;
 import org.sonar.api.Extension;
 import org.sonar.api.SonarPlugin;
+import org.sonar.plugins.design.batch.DesignExecutor;
 import org.sonar.plugins.design.batch.FileTangleIndexDecorator;
 import org.sonar.plugins.design.batch.MavenDependenciesSensor;
 import org.sonar.plugins.design.batch.PackageTangleIndexDecorator;
@@ -44,6 +45,7 @@ public class DesignPlugin extends SonarPlugin {
     return ImmutableList.of(
         // Batch
         MavenDependenciesSensor.class,
+        DesignExecutor.class,
         ProjectDsmDecorator.class,
         PackageTangleIndexDecorator.class,
         FileTangleIndexDecorator.class,
@@ -0,0 +1,108 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.design.batch;
+
+import com.google.common.collect.Lists;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.utils.SonarException;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread pool shared by the design computations of all the modules. It is created on first use and shut down
+ * at the end of the analysis.
+ *
+ * @since 3.5
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class DesignExecutor implements BatchExtension {
+
+  private final int threads;
+  private ExecutorService executorService;
+
+  public DesignExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  DesignExecutor(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Executes the tasks and waits for their results. A single task is executed in the current thread.
+   *
+   * @return the results, in the order of the tasks
+   */
+  public <T> List<T> execute(List<? extends Callable<T>> tasks) {
+    List<T> results = Lists.newArrayList();
+    try {
+      if (tasks.size() < 2 || threads < 2) {
+        for (Callable<T> task : tasks) {
+          results.add(task.call());
+        }
+      } else {
+        List<Future<T>> futures = Lists.newArrayList();
+        for (Callable<T> task : tasks) {
+          futures.add(getExecutorService().submit(task));
+        }
+        for (Future<T> future : futures) {
+          results.add(future.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      throw new SonarException(e.getCause());
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SonarException(e);
+    }
+    return results;
+  }
+
+  private synchronized ExecutorService getExecutorService() {
+    if (executorService == null) {
+      executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "Design computations");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executorService;
+  }
+
+  public synchronized void stop() {
+    if (executorService != null) {
+      executorService.shutdown();
+      executorService = null;
+    }
+  }
+}
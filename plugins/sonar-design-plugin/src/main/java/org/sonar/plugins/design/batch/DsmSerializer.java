@@ -21,27 +21,35 @@ package org.sonar.plugins.design.batch;
 
 import org.sonar.api.design.Dependency;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.SonarException;
 import org.sonar.graph.Dsm;
 import org.sonar.graph.DsmCell;
 
+import java.io.IOException;
+
+/**
+ * Rows are serialized in the order of the DSM, with one object per cell. This format is read by the design page
+ * and by web service clients, so it must not change. Only non-empty cells are loaded from the DSM, the others are
+ * written as empty objects:
+ * <pre>[{"i":8,"n":"org.bar","q":"PAC","v":[{},{"i":30,"w":1}]},{"i":7,"n":"org.foo","q":"PAC","v":[{},{}]}]</pre>
+ */
 public final class DsmSerializer {
 
-  private Dsm dsm;
-  private StringBuilder json;
+  private final Dsm<Resource> dsm;
+  private final Appendable json;
 
-  private DsmSerializer(Dsm<Resource> dsm) {
+  private DsmSerializer(Dsm<Resource> dsm, Appendable json) {
     this.dsm = dsm;
-    this.json = new StringBuilder();
+    this.json = json;
   }
 
-  private String serialize() {
+  private void serialize() throws IOException {
     json.append('[');
     serializeRows();
     json.append(']');
-    return json.toString();
   }
 
-  private void serializeRows() {
+  private void serializeRows() throws IOException {
     for (int y = 0; y < dsm.getDimension(); y++) {
       if (y > 0) {
         json.append(',');
@@ -50,43 +58,71 @@ public final class DsmSerializer {
     }
   }
 
-  private void serializeRow(int y) {
-    Resource resource = (Resource) dsm.getVertex(y);
+  private void serializeRow(int y) throws IOException {
+    Resource resource = dsm.getVertex(y);
 
     json.append("{");
     if (resource != null) {
       json.append("\"i\":");
-      json.append(resource.getId());
+      json.append(String.valueOf(resource.getId()));
       json.append(",\"n\":\"");
       json.append(resource.getName());
       json.append("\",\"q\":\"");
       json.append(resource.getQualifier());
       json.append("\",\"v\":[");
-      for (int x = 0; x < dsm.getDimension(); x++) {
-        if (x > 0) {
-          json.append(',');
+      int x = 0;
+      for (int column : dsm.getIncomingIndexes(y)) {
+        for (; x < column; x++) {
+          serializeEmptyCell(x);
         }
         serializeCell(y, x);
+        x++;
+      }
+      for (; x < dsm.getDimension(); x++) {
+        serializeEmptyCell(x);
       }
       json.append("]");
     }
     json.append("}");
   }
 
-  private void serializeCell(int y, int x) {
+  private void serializeEmptyCell(int x) throws IOException {
+    if (x > 0) {
+      json.append(',');
+    }
+    json.append("{}");
+  }
+
+  private void serializeCell(int y, int x) throws IOException {
+    if (x > 0) {
+      json.append(',');
+    }
     DsmCell cell = dsm.getCell(x, y);
     json.append('{');
     if (cell.getEdge() != null && cell.getWeight() > 0) {
       Dependency dep = (Dependency) cell.getEdge();
       json.append("\"i\":");
-      json.append(dep.getId());
+      json.append(String.valueOf(dep.getId()));
       json.append(",\"w\":");
-      json.append(cell.getWeight());
+      json.append(String.valueOf(cell.getWeight()));
     }
     json.append('}');
   }
 
   public static String serialize(Dsm<Resource> dsm) {
-    return new DsmSerializer(dsm).serialize();
+    StringBuilder json = new StringBuilder();
+    serialize(dsm, json);
+    return json.toString();
+  }
+
+  /**
+   * @since 3.5
+   */
+  public static void serialize(Dsm<Resource> dsm, Appendable output) {
+    try {
+      new DsmSerializer(dsm, output).serialize();
+    } catch (IOException e) {
+      throw new SonarException("Unable to serialize DSM", e);
+    }
   }
 }
@@ -20,6 +20,7 @@
 package org.sonar.plugins.design.batch;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
@@ -34,6 +35,7 @@ import org.sonar.graph.*;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * For performance reasons, this decorator is currently limited to matrix between modules.
@@ -43,9 +45,11 @@ public class ProjectDsmDecorator implements Decorator {
 
   // hack as long as DecoratorContext does not implement SonarIndex
   private SonarIndex index;
+  private DesignExecutor executor;
 
-  public ProjectDsmDecorator(SonarIndex index) {
+  public ProjectDsmDecorator(SonarIndex index, DesignExecutor executor) {
     this.index = index;
+    this.executor = executor;
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -69,18 +73,53 @@ public class ProjectDsmDecorator implements Decorator {
     context.saveMeasure(measure);
   }
 
-  private Dsm<Resource> getDsm(Collection<Resource> subProjects) {
-    CycleDetector<Resource> cycleDetector = new CycleDetector<Resource>(index, subProjects);
-    Set<Cycle> cycles = cycleDetector.getCycles();
-
-    MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
-    Set<Edge> feedbackEdges = solver.getEdges();
+  Dsm<Resource> getDsm(Collection<Resource> subProjects) {
+    Set<Edge> feedbackEdges = Sets.newHashSet();
+    for (Set<Edge> tangleFeedbackEdges : executor.execute(getFeedbackEdgesTasks(subProjects))) {
+      feedbackEdges.addAll(tangleFeedbackEdges);
+    }
 
     Dsm<Resource> dsm = new Dsm<Resource>(index, subProjects, feedbackEdges);
     DsmTopologicalSorter.sort(dsm);
     return dsm;
   }
 
+  /**
+   * Cycles never span several strongly connected components, so the feedback edges of each tangle are searched
+   * by an independent task. The index is only read.
+   */
+  private List<FeedbackEdgesTask> getFeedbackEdgesTasks(Collection<Resource> subProjects) {
+    List<FeedbackEdgesTask> tasks = Lists.newArrayList();
+    for (Set<Resource> tangle : new StronglyConnectedComponents<Resource>(index, subProjects).getCyclicComponents()) {
+      tasks.add(new FeedbackEdgesTask(index, tangle));
+    }
+    return tasks;
+  }
+
+  private static final class FeedbackEdgesTask implements Callable<Set<Edge>> {
+    /**
+     * Above this number of cycles {@link MinimumFeedbackEdgeSetSolver} gives up its exhaustive search,
+     * so the cycles are not fully enumerated and the heuristic of Eades is used instead.
+     */
+    private static final int MAX_CYCLES = 1500;
+
+    private final SonarIndex index;
+    private final Set<Resource> tangle;
+
+    private FeedbackEdgesTask(SonarIndex index, Set<Resource> tangle) {
+      this.index = index;
+      this.tangle = tangle;
+    }
+
+    public Set<Edge> call() {
+      Set<Cycle> cycles = new CycleDetector<Resource>(index, tangle).detectCyclesWithUpperLimit(MAX_CYCLES);
+      if (cycles.size() >= MAX_CYCLES) {
+        return new EadesFeedbackEdgeSetSolver<Resource>(index, tangle).getFeedbackEdgeSet();
+      }
+      return new MinimumFeedbackEdgeSetSolver(cycles).getEdges();
+    }
+  }
+
   /**
    * sub-projects, including all descendants but not only direct children
    */
@@ -0,0 +1,80 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.design.batch;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.api.utils.SonarException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class DesignExecutorTest {
+
+  private DesignExecutor executor = new DesignExecutor(3);
+
+  @After
+  public void stopExecutor() {
+    executor.stop();
+  }
+
+  @Test
+  public void shouldReturnResultsInOrderOfTasks() {
+    List<Integer> results = executor.execute(Arrays.asList(new Square(1), new Square(2), new Square(3), new Square(4)));
+
+    assertThat(results, is(Arrays.asList(1, 4, 9, 16)));
+  }
+
+  @Test
+  public void shouldExecuteSingleTaskInCurrentThread() {
+    final Thread currentThread = Thread.currentThread();
+    List<Boolean> results = executor.execute(Arrays.asList(new Callable<Boolean>() {
+      public Boolean call() {
+        return Thread.currentThread() == currentThread;
+      }
+    }));
+
+    assertThat(results, is(Arrays.asList(true)));
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailIfTaskFails() {
+    executor.execute(Arrays.asList(new Square(1), new Square(-1)));
+  }
+
+  private static class Square implements Callable<Integer> {
+    private final int value;
+
+    Square(int value) {
+      this.value = value;
+    }
+
+    public Integer call() {
+      if (value < 0) {
+        throw new IllegalArgumentException("Negative value: " + value);
+      }
+      return value * value;
+    }
+  }
+}
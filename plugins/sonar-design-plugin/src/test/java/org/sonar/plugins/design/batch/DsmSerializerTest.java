@@ -57,4 +57,24 @@ public class DsmSerializerTest {
     String json = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/plugins/design/batch/DsmSerializerTest/dsm.json"));
     assertThat(DsmSerializer.serialize(dsm), is(json));
   }
+
+  @Test
+  public void serializeEmptyCellsAroundDependencies() {
+    Resource foo = new JavaPackage("org.foo").setId(7);
+    Resource bar = new JavaPackage("org.bar").setId(8);
+    Resource baz = new JavaPackage("org.baz").setId(9);
+
+    DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+    graph.addVertex(foo);
+    graph.addVertex(bar);
+    graph.addVertex(baz);
+    graph.addEdge(new Dependency(foo, bar).setId(30l).setWeight(1));
+    graph.addEdge(new Dependency(baz, bar).setId(31l).setWeight(2));
+
+    Dsm<Resource> dsm = new Dsm<Resource>(graph);
+    DsmManualSorter.sort(dsm, foo, bar, baz);
+    assertThat(DsmSerializer.serialize(dsm), is("[{\"i\":7,\"n\":\"org.foo\",\"q\":\"PAC\",\"v\":[{},{},{}]},"
+      + "{\"i\":8,\"n\":\"org.bar\",\"q\":\"PAC\",\"v\":[{\"i\":30,\"w\":1},{},{\"i\":31,\"w\":2}]},"
+      + "{\"i\":9,\"n\":\"org.baz\",\"q\":\"PAC\",\"v\":[{},{},{}]}]"));
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.design.batch;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Dsm;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProjectDsmDecoratorTest {
+
+  @Test
+  public void shouldMarkFeedbackEdgesOfSeveralTangles() {
+    Project a = new Project("a");
+    Project b = new Project("b");
+    Project c = new Project("c");
+    Project d = new Project("d");
+    Project e = new Project("e");
+    final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+    graph.addEdge(new Dependency(a, b).setWeight(3));
+    graph.addEdge(new Dependency(b, a).setWeight(1));
+    graph.addEdge(new Dependency(c, d).setWeight(1));
+    graph.addEdge(new Dependency(d, c).setWeight(2));
+    graph.addEdge(new Dependency(b, c).setWeight(1));
+    graph.addEdge(new Dependency(d, e).setWeight(1));
+
+    // the tangles {a, b} and {c, d} are processed by two threads
+    DesignExecutor executor = new DesignExecutor(2);
+    Dsm<Resource> dsm;
+    try {
+      dsm = new ProjectDsmDecorator(mockIndex(graph), executor).getDsm(Arrays.<Resource>asList(a, b, c, d, e));
+    } finally {
+      executor.stop();
+    }
+
+    assertThat(dsm.getDimension(), is(5));
+    int feedbackEdges = 0;
+    int feedbackWeight = 0;
+    for (int x = 0; x < dsm.getDimension(); x++) {
+      for (int y = 0; y < dsm.getDimension(); y++) {
+        if (dsm.getCell(x, y).isFeedbackEdge()) {
+          feedbackEdges++;
+          feedbackWeight += dsm.getCell(x, y).getWeight();
+        }
+      }
+    }
+    assertThat(feedbackEdges, is(2));
+    assertThat(feedbackWeight, is(2));
+  }
+
+  @Test
+  public void shouldMarkFeedbackEdgesOfTangleWithTooManyCycles() {
+    // every module depends on all the others: 2365 cycles
+    List<Resource> projects = Lists.newArrayList();
+    for (int i = 0; i < 7; i++) {
+      projects.add(new Project("p" + i));
+    }
+    final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+    for (Resource from : projects) {
+      for (Resource to : projects) {
+        if (from != to) {
+          graph.addEdge(new Dependency(from, to).setWeight(1));
+        }
+      }
+    }
+
+    DesignExecutor executor = new DesignExecutor(1);
+    Dsm<Resource> dsm;
+    try {
+      dsm = new ProjectDsmDecorator(mockIndex(graph), executor).getDsm(projects);
+    } finally {
+      executor.stop();
+    }
+
+    // one dependency of each pair of modules is a feedback edge
+    int feedbackEdges = 0;
+    for (int x = 0; x < dsm.getDimension(); x++) {
+      for (int y = 0; y < dsm.getDimension(); y++) {
+        if (dsm.getCell(x, y).isFeedbackEdge()) {
+          feedbackEdges++;
+        }
+      }
+    }
+    assertThat(feedbackEdges, is(21));
+  }
+
+  private static SonarIndex mockIndex(final DirectedGraph<Resource, Dependency> graph) {
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getEdge(any(Resource.class), any(Resource.class))).thenAnswer(new Answer<Dependency>() {
+      public Dependency answer(InvocationOnMock invocation) {
+        return graph.getEdge((Resource) invocation.getArguments()[0], (Resource) invocation.getArguments()[1]);
+      }
+    });
+    when(index.hasEdge(any(Resource.class), any(Resource.class))).thenAnswer(new Answer<Boolean>() {
+      public Boolean answer(InvocationOnMock invocation) {
+        return graph.hasEdge((Resource) invocation.getArguments()[0], (Resource) invocation.getArguments()[1]);
+      }
+    });
+    when(index.getOutgoingEdges(any(Resource.class))).thenAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        return graph.getOutgoingEdges((Resource) invocation.getArguments()[0]);
+      }
+    });
+    when(index.getIncomingEdges(any(Resource.class))).thenAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        return graph.getIncomingEdges((Resource) invocation.getArguments()[0]);
+      }
+    });
+    return index;
+  }
+}
@@ -19,6 +19,9 @@
  */
 package org.sonar.plugins.emailnotifications;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -33,8 +36,20 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
 import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * References:
@@ -86,6 +101,7 @@ public class EmailNotificationChannel extends NotificationChannel {
   private EmailSettings configuration;
   private EmailTemplate[] templates;
   private UserFinder userFinder;
+  private ExecutorService executorService;
 
   public EmailNotificationChannel(EmailSettings configuration, EmailTemplate[] templates, UserFinder userFinder) {
     this.configuration = configuration;
@@ -93,20 +109,77 @@ public class EmailNotificationChannel extends NotificationChannel {
     this.userFinder = userFinder;
   }
 
+  /**
+   * The threads of the pool are created on demand, so that the number of threads can be changed without restarting
+   * the server. They are destroyed after one minute of inactivity.
+   */
+  public void start() {
+    executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("Email sender %d").setDaemon(true).build());
+  }
+
+  public void stop() {
+    if (executorService != null) {
+      executorService.shutdown();
+    }
+  }
+
   @Override
   public void deliver(Notification notification, String username) {
-    User user = userFinder.findByLogin(username);
-    if (StringUtils.isBlank(user.getEmail())) {
-      LOG.debug("Email not defined for user: " + username);
+    String email = getEmail(username);
+    if (email == null) {
       return;
     }
     EmailMessage emailMessage = format(notification);
     if (emailMessage != null) {
-      emailMessage.setTo(user.getEmail());
+      emailMessage.setTo(email);
       deliver(emailMessage);
     }
   }
 
+  /**
+   * The emails are sent through a single SMTP connection per thread (see {@link EmailSettings#getSendThreads()}). The calling
+   * thread sends its share of the emails, the others are sent by the pool of the channel.
+   */
+  @Override
+  public void deliver(Map<String, List<Notification>> notificationsByUsername) {
+    List<EmailMessage> emailMessages = Lists.newArrayList();
+    for (Map.Entry<String, List<Notification>> entry : notificationsByUsername.entrySet()) {
+      String username = entry.getKey();
+      try {
+        String email = getEmail(username);
+        if (email != null) {
+          for (Notification notification : entry.getValue()) {
+            addEmailMessage(notification, email, emailMessages);
+          }
+        }
+      } catch (Exception e) { // catch all exceptions in order to deliver to the other users
+        LOG.warn("Unable to deliver notifications to user " + username, e);
+      }
+    }
+    deliver(emailMessages);
+  }
+
+  private String getEmail(String username) {
+    User user = userFinder.findByLogin(username);
+    if (user == null || StringUtils.isBlank(user.getEmail())) {
+      LOG.debug("Email not defined for user: " + username);
+      return null;
+    }
+    return user.getEmail();
+  }
+
+  private void addEmailMessage(Notification notification, String email, List<EmailMessage> emailMessages) {
+    try {
+      EmailMessage emailMessage = format(notification);
+      if (emailMessage != null) {
+        emailMessage.setTo(email);
+        emailMessages.add(emailMessage);
+      }
+    } catch (Exception e) { // catch all exceptions in order to deliver the other notifications
+      LOG.warn("Unable to format notification " + notification, e);
+    }
+  }
+
   private EmailMessage format(Notification notification) {
     for (EmailTemplate template : templates) {
       EmailMessage email = template.format(notification);
@@ -133,70 +206,181 @@ public class EmailNotificationChannel extends NotificationChannel {
     }
   }
 
-  private void send(EmailMessage emailMessage) throws EmailException {
+  /**
+   * Visibility has been relaxed for tests.
+   */
+  void deliver(List<EmailMessage> emailMessages) {
+    if (StringUtils.isBlank(configuration.getSmtpHost())) {
+      LOG.debug("SMTP host was not configured - emails will not be sent");
+      return;
+    }
+    if (emailMessages.isEmpty()) {
+      return;
+    }
+    int threads = Math.min(configuration.getSendThreads(), emailMessages.size());
+    if (threads <= 1 || executorService == null) {
+      sendInSameConnection(emailMessages);
+      return;
+    }
+    // the first slice is sent by the calling thread
+    int sliceSize = (emailMessages.size() + threads - 1) / threads;
+    List<List<EmailMessage>> slices = Lists.partition(emailMessages, sliceSize);
+    List<Future<?>> futures = Lists.newArrayList();
+    try {
+      for (final List<EmailMessage> slice : slices.subList(1, slices.size())) {
+        futures.add(executorService.submit(new Runnable() {
+          public void run() {
+            sendInSameConnection(slice);
+          }
+        }));
+      }
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Emails can not be sent concurrently, the server is being stopped", e);
+    }
+    sendInSameConnection(slices.get(0));
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Interrupted while sending emails", e);
+    } catch (ExecutionException e) {
+      LOG.error("Unable to send emails", e);
+    }
+  }
+
+  private void sendInSameConnection(List<EmailMessage> emailMessages) {
     // Trick to correctly initilize javax.mail library
     ClassLoader classloader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
+    Transport transport = null;
     try {
-      LOG.debug("Sending email: {}", emailMessage);
-      String host = null;
-      try {
-        host = new URL(configuration.getServerBaseURL()).getHost();
-      } catch (MalformedURLException e) {
-        // ignore
-      }
+      for (EmailMessage emailMessage : emailMessages) {
+        try {
+          LOG.debug("Sending email: {}", emailMessage);
+          SimpleEmail email = createEmail(emailMessage);
+          email.buildMimeMessage();
+          MimeMessage message = email.getMimeMessage();
+          if (transport == null || !transport.isConnected()) {
+            transport = connect(email, transport);
+          }
+          try {
+            transport.sendMessage(message, message.getAllRecipients());
+          } catch (MessagingException e) {
+            if (isSentToSomeRecipients(e)) {
+              throw e;
+            }
+            // the connection may have been dropped by the server since isConnected(), for example after a timeout
+            LOG.debug("Unable to send email, reconnecting to the SMTP server", e);
+            transport = connect(email, transport);
+            transport.sendMessage(message, message.getAllRecipients());
+          }
 
-      SimpleEmail email = new SimpleEmail();
-      if (StringUtils.isNotBlank(host)) {
-        /*
-        * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
-        * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
-        */
-        if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
-          String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
-          email.addHeader(IN_REPLY_TO_HEADER, messageId);
-          email.addHeader(REFERENCES_HEADER, messageId);
+        } catch (EmailException e) {
+          LOG.error("Unable to send email", e);
+        } catch (MessagingException e) {
+          LOG.error("Unable to send email", e);
+        } catch (RuntimeException e) { // catch all exceptions in order to send the other emails
+          LOG.error("Unable to send email", e);
         }
-        // Set headers for proper filtering
-        email.addHeader(LIST_ID_HEADER, "Sonar <sonar." + host + ">");
-        email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
-      }
-      // Set general information
-      email.setCharset("UTF-8");
-      String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : emailMessage.getFrom() + " (Sonar)";
-      email.setFrom(configuration.getFrom(), from);
-      email.addTo(emailMessage.getTo(), " ");
-      String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
-          + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
-      email.setSubject(subject);
-      email.setMsg(emailMessage.getMessage());
-      // Send
-      email.setHostName(configuration.getSmtpHost());
-      if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "SSL")) {
-        email.setSSL(true);
-        email.setSslSmtpPort(String.valueOf(configuration.getSmtpPort()));
-
-        // this port is not used except in EmailException message, that's why it's set with the same value than SSL port.
-        // It prevents from getting bad message.
-        email.setSmtpPort(configuration.getSmtpPort());
-      } else if (StringUtils.isBlank(configuration.getSecureConnection())) {
-        email.setSmtpPort(configuration.getSmtpPort());
-      } else {
-        throw new SonarException("Unknown type of SMTP secure connection: " + configuration.getSecureConnection());
       }
-      if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
-        email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    } finally {
+      close(transport);
+      Thread.currentThread().setContextClassLoader(classloader);
+    }
+  }
+
+  private static boolean isSentToSomeRecipients(MessagingException e) {
+    return e instanceof SendFailedException && !ArrayUtils.isEmpty(((SendFailedException) e).getValidSentAddresses());
+  }
+
+  private static Transport connect(SimpleEmail email, Transport previous) throws EmailException, MessagingException {
+    close(previous);
+    Transport transport = email.getMailSession().getTransport();
+    transport.connect();
+    return transport;
+  }
+
+  private static void close(Transport transport) {
+    if (transport != null) {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        LOG.debug("Unable to close SMTP connection", e);
       }
-      email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
-      email.setSocketTimeout(SOCKET_TIMEOUT);
-      email.send();
+    }
+  }
+
+  private void send(EmailMessage emailMessage) throws EmailException {
+    // Trick to correctly initilize javax.mail library
+    ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
+
+    try {
+      LOG.debug("Sending email: {}", emailMessage);
+      createEmail(emailMessage).send();
 
     } finally {
       Thread.currentThread().setContextClassLoader(classloader);
     }
   }
 
+  private SimpleEmail createEmail(EmailMessage emailMessage) throws EmailException {
+    String host = null;
+    try {
+      host = new URL(configuration.getServerBaseURL()).getHost();
+    } catch (MalformedURLException e) {
+      // ignore
+    }
+
+    SimpleEmail email = new SimpleEmail();
+    if (StringUtils.isNotBlank(host)) {
+      /*
+      * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
+      * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
+      */
+      if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
+        String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
+        email.addHeader(IN_REPLY_TO_HEADER, messageId);
+        email.addHeader(REFERENCES_HEADER, messageId);
+      }
+      // Set headers for proper filtering
+      email.addHeader(LIST_ID_HEADER, "Sonar <sonar." + host + ">");
+      email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
+    }
+    // Set general information
+    email.setCharset("UTF-8");
+    String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : emailMessage.getFrom() + " (Sonar)";
+    email.setFrom(configuration.getFrom(), from);
+    email.addTo(emailMessage.getTo(), " ");
+    String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
+        + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
+    email.setSubject(subject);
+    email.setMsg(emailMessage.getMessage());
+    // Send
+    email.setHostName(configuration.getSmtpHost());
+    if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "SSL")) {
+      email.setSSL(true);
+      email.setSslSmtpPort(String.valueOf(configuration.getSmtpPort()));
+
+      // this port is not used except in EmailException message, that's why it's set with the same value than SSL port.
+      // It prevents from getting bad message.
+      email.setSmtpPort(configuration.getSmtpPort());
+    } else if (StringUtils.isBlank(configuration.getSecureConnection())) {
+      email.setSmtpPort(configuration.getSmtpPort());
+    } else {
+      throw new SonarException("Unknown type of SMTP secure connection: " + configuration.getSecureConnection());
+    }
+    if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
+      email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    }
+    email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
+    email.setSocketTimeout(SOCKET_TIMEOUT);
+    return email;
+  }
+
   /**
    * Send test email. This method called from Ruby.
    *
@@ -19,20 +19,33 @@
  */
 package org.sonar.plugins.emailnotifications;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.mail.EmailException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.database.model.User;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.security.UserFinder;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
+import org.subethamail.smtp.DropConnectionException;
+import org.subethamail.smtp.TooMuchDataException;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
 import javax.mail.internet.MimeMessage;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.ServerSocket;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -69,10 +82,12 @@ public class EmailNotificationChannelTest {
 
     configuration = mock(EmailSettings.class);
     channel = new EmailNotificationChannel(configuration, null, null);
+    channel.start();
   }
 
   @After
   public void tearDown() {
+    channel.stop();
     server.stop();
   }
 
@@ -185,6 +200,149 @@ public class EmailNotificationChannelTest {
     channel.deliver(emailMessage);
   }
 
+  @Test
+  public void shouldSendSeveralEmailsInSameConnection() throws Exception {
+    configure();
+    channel.deliver(Arrays.asList(newEmailMessage("first@nowhere"), newEmailMessage("second@nowhere"), newEmailMessage("third@nowhere")));
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(3));
+    assertThat(messages.get(0).getMimeMessage().getHeader("To", null), is("<first@nowhere>"));
+    assertThat(messages.get(1).getMimeMessage().getHeader("To", null), is("<second@nowhere>"));
+    assertThat(messages.get(2).getMimeMessage().getHeader("To", null), is("<third@nowhere>"));
+  }
+
+  @Test
+  public void shouldSendEmailsConcurrently() throws Exception {
+    configure();
+    when(configuration.getSendThreads()).thenReturn(2);
+    List<EmailMessage> emailMessages = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      emailMessages.add(newEmailMessage("user" + i + "@nowhere"));
+    }
+    channel.deliver(emailMessages);
+
+    assertThat(server.getMessages().size(), is(5));
+  }
+
+  @Test
+  public void shouldReconnectWhenConnectionIsDropped() throws Exception {
+    server.stop();
+    server = new Wiser() {
+      private boolean dropped = false;
+
+      @Override
+      public void deliver(String from, String recipient, InputStream data) throws TooMuchDataException, IOException {
+        if (!dropped && recipient.startsWith("second")) {
+          dropped = true;
+          throw new DropConnectionException(421, "Too many messages");
+        }
+        super.deliver(from, recipient, data);
+      }
+    };
+    server.setPort(port);
+    server.start();
+    configure();
+
+    channel.deliver(Arrays.asList(newEmailMessage("first@nowhere"), newEmailMessage("second@nowhere"), newEmailMessage("third@nowhere")));
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(3));
+    assertThat(messages.get(1).getMimeMessage().getHeader("To", null), is("<second@nowhere>"));
+  }
+
+  @Test
+  public void shouldSendEmailsInCallingThreadIfNotStarted() throws Exception {
+    configure();
+    when(configuration.getSendThreads()).thenReturn(2);
+    channel.stop();
+    channel = new EmailNotificationChannel(configuration, null, null);
+
+    channel.deliver(Arrays.asList(newEmailMessage("first@nowhere"), newEmailMessage("second@nowhere")));
+
+    assertThat(server.getMessages().size(), is(2));
+  }
+
+  @Test
+  public void shouldDeliverNotificationsOfSeveralUsers() throws Exception {
+    configure();
+    Notification notification = new Notification("review-changed");
+    EmailTemplate template = mock(EmailTemplate.class);
+    when(template.format(notification)).thenAnswer(new Answer<EmailMessage>() {
+      public EmailMessage answer(InvocationOnMock invocation) {
+        return new EmailMessage().setSubject("Review #3").setMessage("Changed");
+      }
+    });
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("simon")).thenReturn(new User().setEmail("simon@nowhere"));
+    when(userFinder.findByLogin("evgeny")).thenReturn(new User().setEmail(""));
+    channel = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    Map<String, List<Notification>> notificationsByUsername = Maps.newLinkedHashMap();
+    notificationsByUsername.put("simon", Arrays.asList(notification, notification));
+    notificationsByUsername.put("evgeny", Arrays.asList(notification));
+    channel.deliver(notificationsByUsername);
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(2));
+    assertThat(messages.get(0).getMimeMessage().getHeader("To", null), is("<simon@nowhere>"));
+    assertThat(messages.get(1).getMimeMessage().getHeader("To", null), is("<simon@nowhere>"));
+  }
+
+  @Test
+  public void shouldDeliverToOtherUsersWhenOneFails() throws Exception {
+    configure();
+    Notification notification = new Notification("review-changed");
+    Notification unformattable = new Notification("unformattable");
+    EmailTemplate template = mock(EmailTemplate.class);
+    when(template.format(notification)).thenAnswer(new Answer<EmailMessage>() {
+      public EmailMessage answer(InvocationOnMock invocation) {
+        return new EmailMessage().setSubject("Review #3").setMessage("Changed");
+      }
+    });
+    when(template.format(unformattable)).thenThrow(new IllegalStateException("Fail to format"));
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("deleted")).thenReturn(null);
+    when(userFinder.findByLogin("failing")).thenThrow(new IllegalStateException("Fail to load user"));
+    when(userFinder.findByLogin("simon")).thenReturn(new User().setEmail("simon@nowhere"));
+    channel = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    Map<String, List<Notification>> notificationsByUsername = Maps.newLinkedHashMap();
+    notificationsByUsername.put("deleted", Arrays.asList(notification));
+    notificationsByUsername.put("failing", Arrays.asList(notification));
+    notificationsByUsername.put("simon", Arrays.asList(unformattable, notification));
+    channel.deliver(notificationsByUsername);
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(1));
+    assertThat(messages.get(0).getMimeMessage().getHeader("To", null), is("<simon@nowhere>"));
+  }
+
+  @Test
+  public void shouldNotThrowAnExceptionWhenSecureConnectionIsUnknown() throws Exception {
+    configure();
+    when(configuration.getSecureConnection()).thenReturn("unknown");
+
+    channel.deliver(Arrays.asList(newEmailMessage("first@nowhere"), newEmailMessage("second@nowhere")));
+
+    assertThat(server.getMessages().size(), is(0));
+  }
+
+  @Test
+  public void shouldNotThrowAnExceptionWhenUnableToSendSeveralEmails() throws Exception {
+    configure();
+    server.stop();
+
+    channel.deliver(Arrays.asList(newEmailMessage("first@nowhere"), newEmailMessage("second@nowhere")));
+  }
+
+  private static EmailMessage newEmailMessage(String to) {
+    return new EmailMessage()
+      .setTo(to)
+      .setSubject("Foo")
+      .setMessage("Bar");
+  }
+
   private void configure() {
     when(configuration.getSmtpHost()).thenReturn("localhost");
     when(configuration.getSmtpPort()).thenReturn(port);
@@ -19,9 +19,9 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -53,7 +53,6 @@ import org.sonar.batch.ViolationFilters;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -75,9 +74,7 @@ public class DefaultIndex extends SonarIndex {
   // caches
   private Project currentProject;
   private Map<Resource, Bucket> buckets = Maps.newHashMap();
-  private Set<Dependency> dependencies = Sets.newHashSet();
-  private Map<Resource, Map<Resource, Dependency>> outgoingDependenciesByResource = Maps.newHashMap();
-  private Map<Resource, Map<Resource, Dependency>> incomingDependenciesByResource = Maps.newHashMap();
+  private DependencyIndex dependencies = new DependencyIndex();
   private ProjectTree projectTree;
 
   public DefaultIndex(PersistenceManager persistence, DefaultResourceCreationLock lock, ProjectTree projectTree, MetricFinder metricFinder) {
@@ -140,13 +137,12 @@ public class DefaultIndex extends SonarIndex {
       }
     }
 
-    Set<Dependency> projectDependencies = getDependenciesBetweenProjects();
-    dependencies.clear();
-    incomingDependenciesByResource.clear();
-    outgoingDependenciesByResource.clear();
-    for (Dependency projectDependency : projectDependencies) {
+    for (Dependency projectDependency : dependencies.retainBetweenProjects(new Predicate<Dependency>() {
+      public boolean apply(Dependency dependency) {
+        return isIndexed(dependency.getFrom()) && isIndexed(dependency.getTo());
+      }
+    })) {
       projectDependency.setId(null);
-      registerDependency(projectDependency);
     }
 
     lock.unlock();
@@ -226,43 +222,51 @@ public class DefaultIndex extends SonarIndex {
     Bucket toBucket = doIndex(dependency.getTo());
 
     if (fromBucket != null && !fromBucket.isExcluded() && toBucket != null && !toBucket.isExcluded()) {
-      dependencies.add(dependency);
-      registerOutgoingDependency(dependency);
-      registerIncomingDependency(dependency);
-      return true;
+      return dependencies.add(currentProject, dependency);
     }
     return false;
   }
 
-  private void registerOutgoingDependency(Dependency dependency) {
-    Map<Resource, Dependency> outgoingDeps = outgoingDependenciesByResource.get(dependency.getFrom());
-    if (outgoingDeps == null) {
-      outgoingDeps = new HashMap<Resource, Dependency>();
-      outgoingDependenciesByResource.put(dependency.getFrom(), outgoingDeps);
-    }
-    outgoingDeps.put(dependency.getTo(), dependency);
-  }
-
-  private void registerIncomingDependency(Dependency dependency) {
-    Map<Resource, Dependency> incomingDeps = incomingDependenciesByResource.get(dependency.getTo());
-    if (incomingDeps == null) {
-      incomingDeps = new HashMap<Resource, Dependency>();
-      incomingDependenciesByResource.put(dependency.getTo(), incomingDeps);
-    }
-    incomingDeps.put(dependency.getFrom(), dependency);
+  private boolean isIndexed(Resource resource) {
+    Bucket bucket = buckets.get(resource);
+    return bucket != null && !bucket.isExcluded();
   }
 
   @Override
   public Set<Dependency> getDependencies() {
-    return dependencies;
+    return dependencies.getAll();
+  }
+
+  /**
+   * Dependencies between resources of the given scopes, for example {@link Scopes#DIRECTORY} for dependencies
+   * between packages.
+   *
+   * @since 3.5
+   */
+  public Collection<Dependency> getDependencies(String fromScope, String toScope) {
+    return dependencies.get(fromScope, toScope);
+  }
+
+  /**
+   * Dependencies registered during the analysis of the given module between resources of the given scopes.
+   *
+   * @since 3.5
+   */
+  public Collection<Dependency> getDependencies(Project module, String fromScope, String toScope) {
+    return dependencies.get(module, fromScope, toScope);
+  }
+
+  /**
+   * Dependencies from or to a project or a module.
+   *
+   * @since 3.5
+   */
+  public Collection<Dependency> getDependenciesBetweenProjects() {
+    return dependencies.getBetweenProjects();
   }
 
   public Dependency getEdge(Resource from, Resource to) {
-    Map<Resource, Dependency> map = outgoingDependenciesByResource.get(from);
-    if (map != null) {
-      return map.get(to);
-    }
-    return null;
+    return dependencies.get(from, to);
   }
 
   public boolean hasEdge(Resource from, Resource to) {
@@ -274,29 +278,11 @@ public class DefaultIndex extends SonarIndex {
   }
 
   public Collection<Dependency> getOutgoingEdges(Resource from) {
-    Map<Resource, Dependency> deps = outgoingDependenciesByResource.get(from);
-    if (deps != null) {
-      return deps.values();
-    }
-    return Collections.emptyList();
+    return dependencies.getOutgoing(from);
   }
 
   public Collection<Dependency> getIncomingEdges(Resource to) {
-    Map<Resource, Dependency> deps = incomingDependenciesByResource.get(to);
-    if (deps != null) {
-      return deps.values();
-    }
-    return Collections.emptyList();
-  }
-
-  Set<Dependency> getDependenciesBetweenProjects() {
-    Set<Dependency> result = Sets.newLinkedHashSet();
-    for (Dependency dependency : dependencies) {
-      if (ResourceUtils.isSet(dependency.getFrom()) || ResourceUtils.isSet(dependency.getTo())) {
-        result.add(dependency);
-      }
-    }
-    return result;
+    return dependencies.getIncoming(to);
   }
 
   //
@@ -57,10 +57,18 @@ public final class DefaultPersistenceManager implements PersistenceManager {
 
   public void setDelayedMode(boolean b) {
     measurePersister.setDelayedMode(b);
+    dependencyPersister.setDelayedMode(b);
   }
 
   public void dump() {
     measurePersister.dump();
+    dependencyPersister.dump();
+  }
+
+  public void dumpDependencies() {
+    dependencyPersister.dump();
+    // dependencies saved later, for example by decorators, must have ids immediately
+    dependencyPersister.setDelayedMode(false);
   }
 
   public void saveProject(Project project, Project parent) {
@@ -0,0 +1,253 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependencies registered in {@link DefaultIndex}. They are stored in lists grouped by owning module and pair of scopes,
+ * which answer the queries by scopes in O(result). The edges of a resource, outgoing and incoming, are held by a single
+ * entry of the map of resources. A dependency is therefore referenced by one hash map entry and two list slots.
+ * <p/>
+ * A dependency is registered only once for a given source and target, the first one wins.
+ *
+ * @since 3.5
+ */
+final class DependencyIndex {
+
+  private final Map<Resource, Edges> edgesByResource = Maps.newHashMap();
+  private final Map<Resource, Map<String, List<Dependency>>> byModuleAndScopes = Maps.newLinkedHashMap();
+  private int size = 0;
+
+  private final Set<Dependency> all = new AbstractSet<Dependency>() {
+    @Override
+    public Iterator<Dependency> iterator() {
+      List<Iterable<Dependency>> lists = Lists.newArrayList();
+      for (Map<String, List<Dependency>> byScopes : byModuleAndScopes.values()) {
+        lists.addAll(byScopes.values());
+      }
+      return Iterables.unmodifiableIterable(Iterables.concat(lists)).iterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Dependency)) {
+        return false;
+      }
+      Dependency dependency = (Dependency) o;
+      return dependency.equals(get(dependency.getFrom(), dependency.getTo()));
+    }
+  };
+
+  /**
+   * @return false if a dependency with the same source and target is already registered
+   */
+  boolean add(Resource module, Dependency dependency) {
+    if (get(dependency.getFrom(), dependency.getTo()) != null) {
+      return false;
+    }
+    indexEdge(dependency);
+    Map<String, List<Dependency>> byScopes = byModuleAndScopes.get(module);
+    if (byScopes == null) {
+      byScopes = Maps.newHashMap();
+      byModuleAndScopes.put(module, byScopes);
+    }
+    String key = scopesKey(dependency.getFrom().getScope(), dependency.getTo().getScope());
+    List<Dependency> list = byScopes.get(key);
+    if (list == null) {
+      list = Lists.newArrayList();
+      byScopes.put(key, list);
+    }
+    list.add(dependency);
+    return true;
+  }
+
+  private void indexEdge(Dependency dependency) {
+    edges(dependency.getFrom()).addOutgoing(dependency);
+    edges(dependency.getTo()).addIncoming(dependency);
+    size++;
+  }
+
+  private Edges edges(Resource resource) {
+    Edges edges = edgesByResource.get(resource);
+    if (edges == null) {
+      edges = new Edges();
+      edgesByResource.put(resource, edges);
+    }
+    return edges;
+  }
+
+  Dependency get(Resource from, Resource to) {
+    Edges edges = edgesByResource.get(from);
+    return edges != null && edges.outgoing != null ? edges.outgoing.get(to) : null;
+  }
+
+  Collection<Dependency> getOutgoing(Resource from) {
+    Edges edges = edgesByResource.get(from);
+    if (edges != null && edges.outgoing != null) {
+      return Collections.unmodifiableCollection(edges.outgoing.values());
+    }
+    return Collections.emptyList();
+  }
+
+  Collection<Dependency> getIncoming(Resource to) {
+    Edges edges = edgesByResource.get(to);
+    if (edges != null && edges.incoming != null) {
+      return Collections.unmodifiableList(edges.incoming);
+    }
+    return Collections.emptyList();
+  }
+
+  Set<Dependency> getAll() {
+    return all;
+  }
+
+  /**
+   * Dependencies of all the modules between resources of the given scopes
+   */
+  Collection<Dependency> get(String fromScope, String toScope) {
+    String key = scopesKey(fromScope, toScope);
+    List<Dependency> result = Lists.newArrayList();
+    for (Map<String, List<Dependency>> byScopes : byModuleAndScopes.values()) {
+      List<Dependency> list = byScopes.get(key);
+      if (list != null) {
+        result.addAll(list);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Dependencies registered during the analysis of the given module between resources of the given scopes
+   */
+  Collection<Dependency> get(Resource module, String fromScope, String toScope) {
+    Map<String, List<Dependency>> byScopes = byModuleAndScopes.get(module);
+    if (byScopes != null) {
+      List<Dependency> list = byScopes.get(scopesKey(fromScope, toScope));
+      if (list != null) {
+        return Collections.unmodifiableList(list);
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Dependencies from or to a project or a module
+   */
+  List<Dependency> getBetweenProjects() {
+    List<Dependency> result = Lists.newArrayList();
+    for (Map<String, List<Dependency>> byScopes : byModuleAndScopes.values()) {
+      for (Map.Entry<String, List<Dependency>> entry : byScopes.entrySet()) {
+        if (isBetweenProjects(entry.getKey())) {
+          result.addAll(entry.getValue());
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes all the dependencies except those from or to a project or a module which are accepted by the filter.
+   *
+   * @return the retained dependencies
+   */
+  List<Dependency> retainBetweenProjects(Predicate<Dependency> filter) {
+    List<Dependency> retained = Lists.newArrayList();
+    for (Iterator<Map<String, List<Dependency>>> modules = byModuleAndScopes.values().iterator(); modules.hasNext();) {
+      Map<String, List<Dependency>> byScopes = modules.next();
+      for (Iterator<Map.Entry<String, List<Dependency>>> lists = byScopes.entrySet().iterator(); lists.hasNext();) {
+        Map.Entry<String, List<Dependency>> entry = lists.next();
+        if (isBetweenProjects(entry.getKey())) {
+          for (Iterator<Dependency> it = entry.getValue().iterator(); it.hasNext();) {
+            if (!filter.apply(it.next())) {
+              it.remove();
+            }
+          }
+        }
+        if (!isBetweenProjects(entry.getKey()) || entry.getValue().isEmpty()) {
+          lists.remove();
+        }
+      }
+      if (byScopes.isEmpty()) {
+        modules.remove();
+      }
+    }
+    edgesByResource.clear();
+    size = 0;
+    for (Map<String, List<Dependency>> byScopes : byModuleAndScopes.values()) {
+      for (List<Dependency> dependencies : byScopes.values()) {
+        for (Dependency dependency : dependencies) {
+          indexEdge(dependency);
+          retained.add(dependency);
+        }
+      }
+    }
+    return retained;
+  }
+
+  private static String scopesKey(String fromScope, String toScope) {
+    return fromScope + '>' + toScope;
+  }
+
+  private static boolean isBetweenProjects(String scopesKey) {
+    return scopesKey.startsWith(Scopes.PROJECT + '>') || scopesKey.endsWith('>' + Scopes.PROJECT);
+  }
+
+  /**
+   * Collections are created on first use, as many resources have only incoming or only outgoing edges
+   */
+  private static final class Edges {
+    private Map<Resource, Dependency> outgoing;
+    private List<Dependency> incoming;
+
+    private void addOutgoing(Dependency dependency) {
+      if (outgoing == null) {
+        outgoing = Maps.newHashMap();
+      }
+      outgoing.put(dependency.getTo(), dependency);
+    }
+
+    private void addIncoming(Dependency dependency) {
+      if (incoming == null) {
+        incoming = Lists.newArrayList();
+      }
+      incoming.add(dependency);
+    }
+  }
+}
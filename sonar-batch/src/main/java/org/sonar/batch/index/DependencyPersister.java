@@ -19,20 +19,44 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.design.Dependency;
 import org.sonar.api.design.DependencyDto;
 import org.sonar.api.resources.Project;
+import org.sonar.core.dependency.DependencyDao;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 public final class DependencyPersister {
 
   private ResourcePersister resourcePersister;
   private DatabaseSession session;
+  private DependencyDao dependencyDao;
+  private boolean batchInsert;
+  private boolean delayedMode = false;
+  private final List<UnsavedDependency> unsavedDependencies = Lists.newArrayList();
 
-  public DependencyPersister(ResourcePersister resourcePersister, DatabaseSession session) {
+  public DependencyPersister(ResourcePersister resourcePersister, DatabaseSession session, DependencyDao dependencyDao, Settings settings) {
     this.resourcePersister = resourcePersister;
     this.session = session;
+    this.dependencyDao = dependencyDao;
+    this.batchInsert = settings.getBoolean(CoreProperties.BATCH_INSERT_DEPENDENCIES);
+  }
+
+  /**
+   * In delayed mode, dependencies are inserted in batch by {@link #dump()} if the property
+   * {@link CoreProperties#BATCH_INSERT_DEPENDENCIES} is enabled. Their ids are not available before.
+   */
+  public void setDelayedMode(boolean delayedMode) {
+    this.delayedMode = delayedMode;
   }
 
   public void saveDependency(Project project, Dependency dependency, Dependency parentDependency) {
@@ -40,6 +64,11 @@ public final class DependencyPersister {
     Snapshot toSnapshot = resourcePersister.saveResource(project, dependency.getTo());
     Snapshot projectSnapshot = resourcePersister.getSnapshot(project);
 
+    if (delayedMode && batchInsert) {
+      unsavedDependencies.add(new UnsavedDependency(dependency, parentDependency, toDto(dependency, projectSnapshot, fromSnapshot, toSnapshot)));
+      return;
+    }
+
     DependencyDto model = new DependencyDto();
     model.setProjectSnapshotId(projectSnapshot.getId());
     model.setUsage(dependency.getUsage());
@@ -60,4 +89,127 @@ public final class DependencyPersister {
     session.save(model);
     dependency.setId(model.getId());
   }
+
+  /**
+   * Inserts the delayed dependencies in batch. When the database sets the ids before the insert (Oracle), a dependency
+   * is inserted after its parent, so that the id of the parent is known. Otherwise the rows are inserted without the ids
+   * of the parents which are not saved yet. Generated ids are then loaded from the project snapshots, a dependency being
+   * identified by its source and target snapshots, and the missing parent ids are updated in batch.
+   */
+  public void dump() {
+    if (unsavedDependencies.isEmpty()) {
+      return;
+    }
+    LoggerFactory.getLogger(getClass()).debug("{} dependencies to dump", unsavedDependencies.size());
+
+    List<UnsavedDependency> remaining = Lists.newArrayList(unsavedDependencies);
+    List<UnsavedDependency> insertable = removeInsertable(remaining);
+    while (!insertable.isEmpty()) {
+      insert(insertable);
+      insertable = removeInsertable(remaining);
+    }
+    if (!remaining.isEmpty()) {
+      // ids are not generated before the insert, so parents are not known
+      insert(remaining);
+    }
+
+    if (hasMissingIds()) {
+      loadIds();
+      List<org.sonar.core.dependency.DependencyDto> orphans = Lists.newArrayList();
+      for (UnsavedDependency unsaved : unsavedDependencies) {
+        if (unsaved.parent != null && unsaved.dto.getParentDependencyId() == null) {
+          orphans.add(unsaved.dto.setParentDependencyId(unsaved.parent.getId()));
+        }
+      }
+      dependencyDao.updateParents(orphans);
+    }
+    unsavedDependencies.clear();
+  }
+
+  /**
+   * Removes and returns the dependencies without parent or whose parent is already saved
+   */
+  private static List<UnsavedDependency> removeInsertable(List<UnsavedDependency> unsaved) {
+    List<UnsavedDependency> insertable = Lists.newArrayList();
+    for (Iterator<UnsavedDependency> it = unsaved.iterator(); it.hasNext();) {
+      UnsavedDependency dependency = it.next();
+      if (dependency.parent == null || dependency.parent.getId() != null) {
+        insertable.add(dependency);
+        it.remove();
+      }
+    }
+    return insertable;
+  }
+
+  private void insert(List<UnsavedDependency> unsaved) {
+    List<org.sonar.core.dependency.DependencyDto> dtos = Lists.newArrayListWithCapacity(unsaved.size());
+    for (UnsavedDependency dependency : unsaved) {
+      if (dependency.parent != null) {
+        // null if the parent is inserted in the same batch
+        dependency.dto.setParentDependencyId(dependency.parent.getId());
+      }
+      dtos.add(dependency.dto);
+    }
+    dependencyDao.insert(dtos);
+    for (UnsavedDependency dependency : unsaved) {
+      // null if the database does not generate ids before the insert
+      dependency.dependency.setId(dependency.dto.getId());
+    }
+  }
+
+  private boolean hasMissingIds() {
+    for (UnsavedDependency unsaved : unsavedDependencies) {
+      if (unsaved.dto.getId() == null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void loadIds() {
+    Map<Long, Map<String, Long>> idsByProjectSnapshot = Maps.newHashMap();
+    for (UnsavedDependency unsaved : unsavedDependencies) {
+      Long projectSnapshotId = unsaved.dto.getProjectSnapshotId();
+      Map<String, Long> ids = idsByProjectSnapshot.get(projectSnapshotId);
+      if (ids == null) {
+        ids = Maps.newHashMap();
+        for (org.sonar.core.dependency.DependencyDto saved : dependencyDao.selectByProjectSnapshotId(projectSnapshotId)) {
+          ids.put(key(saved), saved.getId());
+        }
+        idsByProjectSnapshot.put(projectSnapshotId, ids);
+      }
+      Long id = ids.get(key(unsaved.dto));
+      unsaved.dto.setId(id);
+      unsaved.dependency.setId(id);
+    }
+  }
+
+  private static String key(org.sonar.core.dependency.DependencyDto dto) {
+    return dto.getFromSnapshotId() + ">" + dto.getToSnapshotId();
+  }
+
+  private static org.sonar.core.dependency.DependencyDto toDto(Dependency dependency, Snapshot projectSnapshot, Snapshot fromSnapshot, Snapshot toSnapshot) {
+    return new org.sonar.core.dependency.DependencyDto()
+      .setProjectSnapshotId(projectSnapshot.getId().longValue())
+      .setUsage(dependency.getUsage())
+      .setWeight(dependency.getWeight())
+      .setFromResourceId(fromSnapshot.getResourceId().longValue())
+      .setFromScope(fromSnapshot.getScope())
+      .setFromSnapshotId(fromSnapshot.getId().longValue())
+      .setToResourceId(toSnapshot.getResourceId().longValue())
+      .setToScope(toSnapshot.getScope())
+      .setToSnapshotId(toSnapshot.getId().longValue());
+  }
+
+  private static final class UnsavedDependency {
+    private final Dependency dependency;
+    private final Dependency parent;
+    private final org.sonar.core.dependency.DependencyDto dto;
+
+    private UnsavedDependency(Dependency dependency, Dependency parent, org.sonar.core.dependency.DependencyDto dto) {
+      this.dependency = dependency;
+      this.parent = parent;
+      this.dto = dto;
+    }
+  }
 }
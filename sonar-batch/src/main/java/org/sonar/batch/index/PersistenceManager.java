@@ -36,6 +36,11 @@ public interface PersistenceManager {
 
   void dump();
 
+  /**
+   * Saves the dependencies delayed so far, so that their ids are available. The next dependencies are not delayed.
+   */
+  void dumpDependencies();
+
   void saveProject(Project project, Project parent);
 
   Snapshot saveResource(Project project, Resource resource, Resource parent);
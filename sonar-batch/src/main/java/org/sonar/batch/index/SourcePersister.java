@@ -19,24 +19,47 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.database.model.SnapshotSource;
 import org.sonar.api.resources.DuplicatedSourceException;
+import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.web.CodeColorizerFormat;
+import org.sonar.colorizer.CodeColorizer;
+import org.sonar.colorizer.SynhtaxHighlightingException;
 
+import java.io.StringReader;
+import java.util.Map;
 import java.util.Set;
 
 public final class SourcePersister {
 
+  private static final Logger LOG = LoggerFactory.getLogger(SourcePersister.class);
+
   private DatabaseSession session;
   private Set<Integer> savedSnapshotIds = Sets.newHashSet();
   private ResourcePersister resourcePersister;
+  private Map<String, CodeColorizerFormat> formatPerLanguage = Maps.newHashMap();
+  private boolean precomputeHighlighting;
 
-  public SourcePersister(DatabaseSession session, ResourcePersister resourcePersister) {
+  public SourcePersister(DatabaseSession session, ResourcePersister resourcePersister, Settings settings, CodeColorizerFormat[] formats) {
     this.session = session;
     this.resourcePersister = resourcePersister;
+    this.precomputeHighlighting = settings.getBoolean(CoreProperties.PRECOMPUTE_HIGHLIGHTING);
+    for (CodeColorizerFormat format : formats) {
+      formatPerLanguage.put(format.getLanguageKey(), format);
+    }
+  }
+
+  public SourcePersister(DatabaseSession session, ResourcePersister resourcePersister, Settings settings) {
+    this(session, resourcePersister, settings, new CodeColorizerFormat[0]);
   }
 
   public void saveSource(Resource resource, String source) {
@@ -44,7 +67,9 @@ public final class SourcePersister {
     if (isCached(snapshot)) {
       throw new DuplicatedSourceException(resource);
     }
-    session.save(new SnapshotSource(snapshot.getId(), source));
+    SnapshotSource snapshotSource = new SnapshotSource(snapshot.getId(), source);
+    snapshotSource.setHighlighting(highlight(resource, source));
+    session.save(snapshotSource);
     session.commit();
     addToCache(snapshot);
   }
@@ -58,6 +83,24 @@ public final class SourcePersister {
     return source!=null ? source.getData() : null;
   }
 
+  private String highlight(Resource resource, String source) {
+    Language language = resource.getLanguage();
+    if (!precomputeHighlighting || source == null || language == null) {
+      return null;
+    }
+    CodeColorizerFormat format = formatPerLanguage.get(language.getKey());
+    if (format == null) {
+      return null;
+    }
+    try {
+      return new CodeColorizer(format.getTokenizers()).toSyntaxHighlighting(new StringReader(source)).serialize();
+    } catch (SynhtaxHighlightingException e) {
+      // the source will be highlighted by the server
+      LOG.warn("Fail to compute syntax highlighting of " + resource, e);
+      return null;
+    }
+  }
+
   private boolean isCached(Snapshot snapshot) {
     return savedSnapshotIds.contains(snapshot.getId());
   }
@@ -89,6 +89,8 @@ public final class Phases {
 
     persistenceManager.setDelayedMode(true);
     sensorsExecutor.execute(sensorContext);
+    // ids of dependencies are used by decorators
+    persistenceManager.dumpDependencies();
     decoratorsExecutor.execute();
     persistenceManager.dump();
     persistenceManager.setDelayedMode(false);
@@ -98,6 +100,9 @@ public final class Phases {
         updateStatusJob.execute();
       }
       postJobsExecutor.execute(sensorContext);
+      if (updateStatusJob != null) {
+        updateStatusJob.changeAnalysisGeneration();
+      }
     }
     cleanMemory();
     eventBus.fireEvent(new ProjectAnalysisEvent(project, false));
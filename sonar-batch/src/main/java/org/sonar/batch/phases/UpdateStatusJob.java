@@ -28,6 +28,8 @@ import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Scopes;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.ResourcePersister;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
 
 import javax.persistence.Query;
 
@@ -40,9 +42,12 @@ public class UpdateStatusJob implements BatchComponent {
   private Snapshot snapshot; // TODO remove this component
   private ResourcePersister resourcePersister;
   private Settings settings;
+  private PropertiesDao propertiesDao;
 
-  public UpdateStatusJob(Settings settings, ServerClient server, DatabaseSession session, ResourcePersister resourcePersister, Snapshot snapshot) {
+  public UpdateStatusJob(Settings settings, ServerClient server, DatabaseSession session, ResourcePersister resourcePersister, Snapshot snapshot,
+      PropertiesDao propertiesDao) {
     this.session = session;
+    this.propertiesDao = propertiesDao;
     this.server = server;
     this.resourcePersister = resourcePersister;
     this.snapshot = snapshot;
@@ -77,6 +82,17 @@ public class UpdateStatusJob implements BatchComponent {
     }
   }
 
+  /**
+   * Notifies the server that the analysis is complete. Must be executed after the post-jobs, including the indexing
+   * of the project, as the server reloads its caches when the generation changes. The generation of the project is
+   * set before the global one, so that the server knows which projects to reload.
+   */
+  public void changeAnalysisGeneration() {
+    String generation = String.valueOf(snapshot.getId());
+    propertiesDao.setProperty(new PropertyDto().setKey(CoreProperties.ANALYSIS_GENERATION).setResourceId(Long.valueOf(snapshot.getResourceId())).setValue(generation));
+    propertiesDao.setProperty(new PropertyDto().setKey(CoreProperties.ANALYSIS_GENERATION).setValue(generation));
+  }
+
   private void setFlags(Snapshot snapshot, boolean last, String status) {
     String hql = "UPDATE " + Snapshot.class.getSimpleName() + " SET last=:last";
     if (status != null) {
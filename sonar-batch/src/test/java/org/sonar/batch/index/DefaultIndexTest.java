@@ -20,6 +20,7 @@
 package org.sonar.batch.index;
 
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
@@ -30,6 +31,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.ResourceFilter;
 import org.sonar.api.config.Settings;
+import org.sonar.api.design.Dependency;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
@@ -44,6 +46,7 @@ import org.sonar.api.resources.Library;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
@@ -93,6 +96,87 @@ public class DefaultIndexTest {
     assertThat(DefaultIndex.createUID(project, library), is("junit:junit"));
   }
 
+  @Test
+  public void shouldIndexDependenciesByScopes() {
+    Directory foo = new Directory("org/foo");
+    Directory bar = new Directory("org/bar");
+    File fooFile = new File("org/foo/Foo.java");
+    File barFile = new File("org/bar/Bar.java");
+    index.index(foo);
+    index.index(bar);
+    index.index(fooFile, foo);
+    index.index(barFile, bar);
+
+    Dependency directories = new Dependency(foo, bar).setUsage("USES");
+    Dependency files = new Dependency(fooFile, barFile).setUsage("USES").setParent(directories);
+    index.addDependency(files);
+
+    assertThat(index.getDependencies().size(), is(2));
+    assertThat(index.getDependencies().contains(files), is(true));
+    assertThat(index.getDependencies().contains(directories), is(true));
+    assertThat(index.getDependencies(Scopes.DIRECTORY, Scopes.DIRECTORY).size(), is(1));
+    assertThat(index.getDependencies(Scopes.DIRECTORY, Scopes.DIRECTORY).iterator().next(), is(directories));
+    assertThat(index.getDependencies(Scopes.FILE, Scopes.FILE).iterator().next(), is(files));
+    assertThat(index.getDependencies(index.getProject(), Scopes.FILE, Scopes.FILE).size(), is(1));
+    assertThat(index.getDependencies(new Project("other"), Scopes.FILE, Scopes.FILE).isEmpty(), is(true));
+    assertThat(index.getDependenciesBetweenProjects().isEmpty(), is(true));
+    assertThat(index.getEdge(fooFile, barFile), is(files));
+    assertThat(index.getIncomingEdges(barFile).size(), is(1));
+    assertThat(index.getOutgoingEdges(foo).size(), is(1));
+  }
+
+  @Test
+  public void shouldKeepOnlyDependenciesBetweenProjectsOnClear() {
+    Directory foo = new Directory("org/foo");
+    Directory bar = new Directory("org/bar");
+    index.index(foo);
+    index.index(bar);
+    Library library = new Library("junit:junit", "4.7");
+    index.addResource(library);
+
+    index.addDependency(new Dependency(foo, bar));
+    Dependency libraryDependency = new Dependency(index.getProject(), library).setUsage("compile");
+    index.addDependency(libraryDependency);
+    assertThat(index.getDependencies().size(), is(2));
+
+    index.clear();
+
+    assertThat(index.getDependencies().size(), is(1));
+    assertThat(index.getDependencies().iterator().next(), is(libraryDependency));
+    assertThat(index.getEdge(foo, bar), nullValue());
+    assertThat(index.getIncomingEdges(library).size(), is(1));
+    assertThat(index.getDependencies(index.getProject(), Scopes.PROJECT, Scopes.PROJECT).size(), is(1));
+    assertThat(index.getDependenciesBetweenProjects().size(), is(1));
+  }
+
+  @Test
+  public void shouldNotKeepDependenciesToUnindexedResourcesOnClear() {
+    Directory foo = new Directory("org/foo");
+    index.index(foo);
+    index.addDependency(new Dependency(index.getProject(), foo));
+
+    index.clear();
+
+    assertThat(index.getDependencies().isEmpty(), is(true));
+    assertThat(index.getOutgoingEdges(index.getProject()).isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldRegisterDependencyOnlyOnce() {
+    Directory foo = new Directory("org/foo");
+    Directory bar = new Directory("org/bar");
+    index.index(foo);
+    index.index(bar);
+    Dependency first = new Dependency(foo, bar).setWeight(1);
+
+    assertThat(index.registerDependency(first), is(true));
+    assertThat(index.registerDependency(new Dependency(foo, bar).setWeight(2)), is(false));
+
+    assertThat(index.getDependencies().size(), is(1));
+    assertThat(index.getEdge(foo, bar), sameInstance(first));
+    assertThat(index.getIncomingEdges(bar).size(), is(1));
+  }
+
   @Test
   public void shouldIndexParentOfDeprecatedFiles() {
     File file = new File("org/foo/Bar.java");
@@ -0,0 +1,217 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.JavaPackage;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.core.dependency.DependencyDao;
+import org.sonar.core.persistence.AbstractDaoTestCase;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DependencyPersisterTest extends AbstractDaoTestCase {
+
+  private ResourcePersister resourcePersister = mock(ResourcePersister.class);
+  private DatabaseSession session = mock(DatabaseSession.class);
+  private Project project = new Project("foo");
+  private JavaPackage fromPackage = new JavaPackage("org.from");
+  private JavaPackage toPackage = new JavaPackage("org.to");
+  private JavaFile fromFile = new JavaFile("org.from.Foo");
+  private JavaFile toFile = new JavaFile("org.to.Bar");
+
+  @Before
+  public void mockResourcePersister() {
+    Snapshot projectSnapshot = snapshot(3001, 1, "PRJ");
+    when(resourcePersister.getSnapshot(project)).thenReturn(projectSnapshot);
+    mockSnapshot(fromPackage, snapshot(3002, 2, "DIR"));
+    mockSnapshot(toPackage, snapshot(3003, 3, "DIR"));
+    mockSnapshot(fromFile, snapshot(3004, 4, "FIL"));
+    mockSnapshot(toFile, snapshot(3005, 5, "FIL"));
+  }
+
+  @Test
+  public void shouldSaveWithJpaByDefault() {
+    setupData("empty");
+    DependencyPersister persister = newPersister(false);
+    persister.setDelayedMode(true);
+
+    persister.saveDependency(project, new Dependency(fromPackage, toPackage).setUsage("USES").setWeight(2), null);
+
+    verify(session).save(any(org.sonar.api.design.DependencyDto.class));
+  }
+
+  @Test
+  public void shouldInsertInBatch() {
+    setupData("empty");
+    DependencyPersister persister = newPersister(true);
+    persister.setDelayedMode(true);
+
+    // the child is registered before its parent is saved
+    Dependency packages = new Dependency(fromPackage, toPackage).setUsage("USES").setWeight(2);
+    Dependency files = new Dependency(fromFile, toFile).setUsage("USES").setWeight(1);
+    persister.saveDependency(project, packages, null);
+    persister.saveDependency(project, files, packages);
+    assertThat(packages.getId()).isNull();
+
+    persister.dump();
+
+    verify(session, never()).save(any(org.sonar.api.design.DependencyDto.class));
+    assertThat(packages.getId()).isEqualTo(1L);
+    assertThat(files.getId()).isEqualTo(2L);
+    checkTables("shouldInsertInBatch", "dependencies");
+  }
+
+  @Test
+  public void shouldSetParentIdsBeforeInsertIfIdsAreGeneratedBeforeInsert() {
+    // ids are read from a sequence, as on Oracle
+    DependencyDao dao = mock(DependencyDao.class);
+    final List<Long> insertedParentIds = Lists.newArrayList();
+    doAnswer(new Answer<Object>() {
+      private long sequence = 10L;
+
+      public Object answer(InvocationOnMock invocation) {
+        for (org.sonar.core.dependency.DependencyDto dto : (Collection<org.sonar.core.dependency.DependencyDto>) invocation.getArguments()[0]) {
+          insertedParentIds.add(dto.getParentDependencyId());
+          dto.setId(sequence++);
+        }
+        return null;
+      }
+    }).when(dao).insert(anyCollection());
+    DependencyPersister persister = new DependencyPersister(resourcePersister, session, dao, new Settings().setProperty(CoreProperties.BATCH_INSERT_DEPENDENCIES, true));
+    persister.setDelayedMode(true);
+
+    // the child is registered before its parent
+    Dependency packages = new Dependency(fromPackage, toPackage).setUsage("USES").setWeight(2);
+    Dependency files = new Dependency(fromFile, toFile).setUsage("USES").setWeight(1);
+    persister.saveDependency(project, files, packages);
+    persister.saveDependency(project, packages, null);
+    persister.dump();
+
+    assertThat(packages.getId()).isEqualTo(10L);
+    assertThat(files.getId()).isEqualTo(11L);
+    assertThat(insertedParentIds).containsExactly(null, 10L);
+    verify(dao, never()).selectByProjectSnapshotId(anyLong());
+    verify(dao, never()).updateParents(anyCollection());
+  }
+
+  @Test
+  public void shouldNotDelayIfNotInDelayedMode() {
+    setupData("empty");
+    DependencyPersister persister = newPersister(true);
+
+    persister.saveDependency(project, new Dependency(fromPackage, toPackage).setUsage("USES").setWeight(2), null);
+
+    verify(session).save(any(org.sonar.api.design.DependencyDto.class));
+  }
+
+  @Test
+  public void shouldSaveDependenciesOfDecoratorsImmediately() {
+    setupData("empty");
+    DependencyPersister persister = newPersister(true);
+    final PersistenceManager persistenceManager = new DefaultPersistenceManager(resourcePersister, null, null, persister, null, null);
+    persister.setDelayedMode(true);
+
+    // sensors phase
+    Dependency packages = new Dependency(fromPackage, toPackage).setUsage("USES").setWeight(2);
+    persistenceManager.saveDependency(project, packages, null);
+    persistenceManager.dumpDependencies();
+    assertThat(packages.getId()).isEqualTo(1L);
+
+    // decorators phase
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        ((org.sonar.api.design.DependencyDto) invocation.getArguments()[0]).setId(42L);
+        return null;
+      }
+    }).when(session).save(any(org.sonar.api.design.DependencyDto.class));
+    DecoratorContext context = mock(DecoratorContext.class);
+    when(context.saveDependency(any(Dependency.class))).thenAnswer(new Answer<Dependency>() {
+      public Dependency answer(InvocationOnMock invocation) {
+        Dependency dependency = (Dependency) invocation.getArguments()[0];
+        persistenceManager.saveDependency(project, dependency, dependency.getParent());
+        return dependency;
+      }
+    });
+    FileDependencyDecorator decorator = new FileDependencyDecorator(packages);
+    decorator.decorate(project, context);
+
+    assertThat(decorator.savedId).isEqualTo(42L);
+  }
+
+  private class FileDependencyDecorator implements Decorator {
+    private final Dependency parent;
+    private Long savedId;
+
+    private FileDependencyDecorator(Dependency parent) {
+      this.parent = parent;
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      Dependency dependency = context.saveDependency(new Dependency(fromFile, toFile).setUsage("USES").setWeight(1).setParent(parent));
+      savedId = dependency.getId();
+    }
+  }
+
+  private DependencyPersister newPersister(boolean batchInsert) {
+    Settings settings = new Settings().setProperty(CoreProperties.BATCH_INSERT_DEPENDENCIES, batchInsert);
+    return new DependencyPersister(resourcePersister, session, new DependencyDao(getMyBatis()), settings);
+  }
+
+  private void mockSnapshot(Resource resource, Snapshot snapshot) {
+    when(resourcePersister.saveResource(project, resource)).thenReturn(snapshot);
+  }
+
+  private static Snapshot snapshot(int id, int resourceId, String scope) {
+    Snapshot snapshot = mock(Snapshot.class);
+    when(snapshot.getId()).thenReturn(id);
+    when(snapshot.getResourceId()).thenReturn(resourceId);
+    when(snapshot.getScope()).thenReturn(scope);
+    return snapshot;
+  }
+}
@@ -21,12 +21,20 @@ package org.sonar.batch.index;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.DuplicatedSourceException;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.web.CodeColorizerFormat;
+import org.sonar.colorizer.KeywordsTokenizer;
+import org.sonar.colorizer.Tokenizer;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -34,14 +42,15 @@ import static org.mockito.Mockito.when;
 public class SourcePersisterTest extends AbstractDbUnitTestCase {
 
   private SourcePersister sourcePersister;
+  private ResourcePersister resourcePersister;
 
   @Before
   public void before() {
     setupData("shared");
     Snapshot snapshot = getSession().getSingleResult(Snapshot.class, "id", 1000);
-    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    resourcePersister = mock(ResourcePersister.class);
     when(resourcePersister.getSnapshotOrFail(any(Resource.class))).thenReturn(snapshot);
-    sourcePersister = new SourcePersister(getSession(), resourcePersister);
+    sourcePersister = new SourcePersister(getSession(), resourcePersister, new Settings());
   }
 
   @Test
@@ -56,4 +65,20 @@ public class SourcePersisterTest extends AbstractDbUnitTestCase {
     sourcePersister.saveSource(file, "this is the file content");
     sourcePersister.saveSource(file, "new content"); // fail
   }
+
+  @Test
+  public void shouldSaveHighlighting() {
+    Settings settings = new Settings().setProperty(CoreProperties.PRECOMPUTE_HIGHLIGHTING, true);
+    CodeColorizerFormat format = new CodeColorizerFormat("java") {
+      @Override
+      public List<Tokenizer> getTokenizers() {
+        return Arrays.<Tokenizer>asList(new KeywordsTokenizer("<b>", "</b>", "public", "class"));
+      }
+    };
+    sourcePersister = new SourcePersister(getSession(), resourcePersister, settings, new CodeColorizerFormat[] {format});
+
+    sourcePersister.saveSource(new JavaFile("org.foo.Bar"), "public class Bar {}");
+
+    checkTables("shouldSaveHighlighting", "snapshot_sources");
+  }
 }
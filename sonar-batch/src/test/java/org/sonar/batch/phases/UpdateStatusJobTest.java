@@ -20,17 +20,26 @@
 package org.sonar.batch.phases;
 
 import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.security.ResourcePermissions;
 import org.sonar.batch.bootstrap.ServerClient;
 import org.sonar.batch.index.DefaultResourcePersister;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import javax.persistence.Query;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.refEq;
+import static org.mockito.Mockito.verify;
 
 public class UpdateStatusJobTest extends AbstractDbUnitTestCase {
 
@@ -53,10 +62,20 @@ public class UpdateStatusJobTest extends AbstractDbUnitTestCase {
     setupData("sharedFixture", fixture);
 
     DatabaseSession session = getSession();
-    UpdateStatusJob sensor = new UpdateStatusJob(new Settings(), mock(ServerClient.class), session, new DefaultResourcePersister(session, mock(ResourcePermissions.class)), loadSnapshot(snapshotId));
+    PropertiesDao propertiesDao = mock(PropertiesDao.class);
+    UpdateStatusJob sensor = new UpdateStatusJob(new Settings(), mock(ServerClient.class), session, new DefaultResourcePersister(session, mock(ResourcePermissions.class)), loadSnapshot(snapshotId),
+      propertiesDao);
     sensor.execute();
 
     checkTables(fixture, "snapshots");
+    verify(propertiesDao, never()).setProperty(any(PropertyDto.class));
+
+    sensor.changeAnalysisGeneration();
+    Snapshot snapshot = loadSnapshot(snapshotId);
+    InOrder inOrder = inOrder(propertiesDao);
+    inOrder.verify(propertiesDao).setProperty(refEq(new PropertyDto().setKey(CoreProperties.ANALYSIS_GENERATION)
+      .setResourceId(Long.valueOf(snapshot.getResourceId())).setValue(String.valueOf(snapshotId))));
+    inOrder.verify(propertiesDao).setProperty(refEq(new PropertyDto().setKey(CoreProperties.ANALYSIS_GENERATION).setValue(String.valueOf(snapshotId))));
   }
 
   private Snapshot loadSnapshot(int id) {
@@ -19,7 +19,11 @@
  */
 package org.sonar.colorizer;
 
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
+
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 
 public class CodeColorizer {
@@ -43,6 +47,43 @@ public class CodeColorizer {
     return new HtmlRenderer(opts).render(code, tokenizers);
   }
 
+  /**
+   * Streams the HTML to output instead of building it in memory.
+   *
+   * @since 3.5
+   */
+  public void toHtml(Reader code, HtmlOptions options, Appendable output) {
+    HtmlOptions opts = (options == null ? HtmlOptions.DEFAULT : options);
+    new HtmlRenderer(opts).render(code, tokenizers, output, null);
+  }
+
+  /**
+   * Streams the syntax highlighting of a range of lines to output. The checkpoints should be shared between the calls
+   * related to the same source code, so that the tokenization does not restart from the beginning of the file.
+   *
+   * @see HtmlRenderer#renderLines(Reader, List, int, int, Appendable, LineCheckpoints)
+   * @since 3.5
+   */
+  public void toHtml(Reader code, int fromLine, int toLine, Appendable output, LineCheckpoints checkpoints) {
+    new HtmlRenderer(HtmlOptions.ONLY_SYNTAX).renderLines(code, tokenizers, fromLine, toLine, output, checkpoints);
+  }
+
+  /**
+   * Computes the highlighted tokens without generating HTML. The result can be stored and rendered later
+   * with {@link SyntaxHighlighting#toHtml(String)}.
+   *
+   * @since 3.5
+   */
+  public SyntaxHighlighting toSyntaxHighlighting(Reader code) {
+    try {
+      SyntaxHighlightingBuilder builder = new SyntaxHighlightingBuilder();
+      new TokenizerDispatcher(new ArrayList<Channel<HtmlCodeBuilder>>(tokenizers)).colorize(new CodeReader(code), builder);
+      return builder.build();
+    } catch (Exception e) {
+      throw new SynhtaxHighlightingException("Can not highlight code", e);
+    }
+  }
+
   public static String javaToHtml(Reader code, HtmlOptions options) {
     return new CodeColorizer(Format.JAVA).toHtml(code, options);
   }
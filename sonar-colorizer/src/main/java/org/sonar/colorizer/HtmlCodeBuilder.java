@@ -19,6 +19,7 @@
  */
 package org.sonar.colorizer;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,6 +27,22 @@ public class HtmlCodeBuilder implements Appendable {
 
   private StringBuilder colorizedCode = new StringBuilder();
   private Map variables = new HashMap();
+  private Appendable output = null;
+  private int chunkSize;
+
+  public HtmlCodeBuilder() {
+  }
+
+  /**
+   * The generated HTML is not kept in memory but written to output by chunks of about chunkSize characters.
+   * In this case {@link #toString()} only returns the characters which have not been flushed yet.
+   *
+   * @since 3.5
+   */
+  public HtmlCodeBuilder(Appendable output, int chunkSize) {
+    this.output = output;
+    this.chunkSize = chunkSize;
+  }
 
   public Appendable append(CharSequence csq) {
     for (int i = 0; i < csq.length(); i++) {
@@ -42,6 +59,7 @@ public class HtmlCodeBuilder implements Appendable {
     } else {
       colorizedCode.append(c);
     }
+    flushIfFull();
     return this;
   }
 
@@ -54,6 +72,29 @@ public class HtmlCodeBuilder implements Appendable {
 
   public void appendWithoutTransforming(String htmlTag) {
     colorizedCode.append(htmlTag);
+    flushIfFull();
+  }
+
+  private void flushIfFull() {
+    if (output != null && colorizedCode.length() >= chunkSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the pending characters to the output. Does nothing if the builder has been created without output.
+   *
+   * @since 3.5
+   */
+  public void flush() {
+    if (output != null) {
+      try {
+        output.append(colorizedCode);
+      } catch (IOException e) {
+        throw new SynhtaxHighlightingException("Can not write HTML", e);
+      }
+      colorizedCode.setLength(0);
+    }
   }
 
   @Override
@@ -19,6 +19,8 @@
  */
 package org.sonar.colorizer;
 
+import java.io.IOException;
+import java.io.PushbackReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +30,11 @@ import org.sonar.channel.CodeReader;
 
 public class HtmlRenderer extends Renderer {
 
+  /**
+   * Number of characters written at once to the output when streaming
+   */
+  private static final int CHUNK_SIZE = 8192;
+
   private HtmlOptions options = null;
 
   public HtmlRenderer(HtmlOptions options) {
@@ -40,26 +47,159 @@ public class HtmlRenderer extends Renderer {
 
   @Override
   public String render(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers) {
+    StringBuilder html = new StringBuilder();
+    render(code, tokenizers, html, null);
+    return html.toString();
+  }
+
+  /**
+   * Writes the HTML to output by chunks, so that the whole highlighted file is never kept in memory.
+   *
+   * @param checkpoints optional (can be null). If set, the state of the tokenizers is recorded at the beginning of lines
+   *                    in order to render later some ranges of lines with {@link #renderLines(Reader, List, int, int, Appendable, LineCheckpoints)}.
+   *                    Checkpoints are not recorded when generating HTML tables.
+   * @since 3.5
+   */
+  public void render(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers, Appendable output, LineCheckpoints checkpoints) {
     try {
       List<Channel<HtmlCodeBuilder>> allTokenizers = new ArrayList<Channel<HtmlCodeBuilder>>();
-      HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder();
+      HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder(output, CHUNK_SIZE);
       HtmlDecorator htmlDecorator = new HtmlDecorator(options);
+      boolean generateTable = options != null && options.isGenerateTable();
 
       // optimization
-      if (options != null && options.isGenerateTable()) {
+      if (generateTable) {
         codeBuilder.appendWithoutTransforming(htmlDecorator.getTagBeginOfFile());
         allTokenizers.add(htmlDecorator);
       }
       allTokenizers.addAll(tokenizers);
 
-      new TokenizerDispatcher(allTokenizers).colorize(new CodeReader(code), codeBuilder);
+      // positions of tokenizers in checkpoints would be shifted by the decorator
+      new TokenizerDispatcher(allTokenizers).colorize(new CodeReader(code), codeBuilder, generateTable ? null : checkpoints, 0);
       // optimization
-      if (options != null && options.isGenerateTable()) {
+      if (generateTable) {
         codeBuilder.appendWithoutTransforming(htmlDecorator.getTagEndOfFile());
       }
-      return codeBuilder.toString();
+      codeBuilder.flush();
     } catch (Exception e) {
       throw new SynhtaxHighlightingException("Can not render code", e);
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Renders only the lines fromLine to toLine (inclusive, starting at 1). Line breaks are written between lines
+   * but not after the last one. The tokenization starts at the nearest checkpoint before fromLine and stops after toLine.
+   * New checkpoints are recorded on the way, so that next calls are faster.
+   * <p>
+   * Only syntax highlighting is supported: the option {@link HtmlOptions#isGenerateTable()} must be false.
+   * </p>
+   *
+   * @since 3.5
+   */
+  public void renderLines(Reader code, List<? extends Channel<HtmlCodeBuilder>> tokenizers, int fromLine, int toLine, Appendable output,
+      LineCheckpoints checkpoints) {
+    if (options != null && options.isGenerateTable()) {
+      throw new IllegalStateException("Ranges of lines can not be rendered in HTML tables");
+    }
+    try {
+      int startLine = checkpoints.getStartLine(fromLine);
+      PushbackReader reader = new PushbackReader(code, 1);
+      skipLines(reader, startLine - 1);
+      CodeReader codeReader = new CodeReader(reader);
+      codeReader.setLinePosition(startLine);
+
+      HtmlCodeBuilder codeBuilder = new HtmlCodeBuilder(new LineRangeFilter(output, startLine, fromLine, toLine), CHUNK_SIZE);
+      TokenizerDispatcher dispatcher = new TokenizerDispatcher(new ArrayList<Channel<HtmlCodeBuilder>>(tokenizers));
+      dispatcher.restore(checkpoints, startLine, codeBuilder);
+      dispatcher.colorize(codeReader, codeBuilder, checkpoints, toLine);
+      codeBuilder.flush();
+    } catch (Exception e) {
+      throw new SynhtaxHighlightingException("Can not render lines " + fromLine + " to " + toLine, e);
+    }
+  }
+
+  /**
+   * Line breaks are LF, CR+LF or CR, as in {@link CodeReader}.
+   */
+  private static void skipLines(PushbackReader reader, int lines) throws IOException {
+    int skipped = 0;
+    while (skipped < lines) {
+      int c = reader.read();
+      if (c == -1) {
+        return;
+      }
+      if (c == '\n') {
+        skipped++;
+      } else if (c == '\r') {
+        int next = reader.read();
+        if (next != '\n' && next != -1) {
+          reader.unread(next);
+        }
+        skipped++;
+      }
+    }
+  }
+
+  /**
+   * Forwards only the characters of some lines of the generated HTML.
+   */
+  private static final class LineRangeFilter implements Appendable {
+    private final Appendable output;
+    private final int fromLine;
+    private final int toLine;
+    private int line;
+    private boolean afterCarriageReturn = false;
+
+    private LineRangeFilter(Appendable output, int firstLine, int fromLine, int toLine) {
+      this.output = output;
+      this.line = firstLine;
+      this.fromLine = fromLine;
+      this.toLine = toLine;
+    }
+
+    public Appendable append(CharSequence csq) throws IOException {
+      return append(csq, 0, csq.length());
+    }
+
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      int runStart = start;
+      for (int i = start; i < end; i++) {
+        char c = csq.charAt(i);
+        if (c == '\n' || c == '\r') {
+          writeRun(csq, runStart, i);
+          append(c);
+          runStart = i + 1;
+        }
+      }
+      writeRun(csq, runStart, end);
+      return this;
+    }
+
+    public Appendable append(char c) throws IOException {
+      if (c == '\n' && afterCarriageReturn) {
+        // second character of CR+LF, the line has already been incremented
+        if (line - 1 >= fromLine && line - 1 < toLine) {
+          output.append(c);
+        }
+      } else if (c == '\n' || c == '\r') {
+        if (line >= fromLine && line < toLine) {
+          output.append(c);
+        }
+        line++;
+      } else if (line >= fromLine && line <= toLine) {
+        output.append(c);
+      }
+      afterCarriageReturn = (c == '\r');
+      return this;
+    }
+
+    private void writeRun(CharSequence csq, int start, int end) throws IOException {
+      if (start < end) {
+        if (line >= fromLine && line <= toLine) {
+          output.append(csq, start, end);
+        }
+        afterCarriageReturn = false;
+      }
+    }
+  }
+}
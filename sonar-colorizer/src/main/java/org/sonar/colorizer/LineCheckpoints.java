@@ -0,0 +1,126 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.colorizer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * State of the tokenizers at the beginning of some lines, recorded while rendering. It allows to render a range
+ * of lines by starting the tokenization at the nearest previous checkpoint instead of the beginning of the file.
+ * <p>
+ * Checkpoints are valid only for the source code and the list of tokenizers which have been used to record them.
+ * Tokenizers referenced by the state are stored by position, so new instances of the same list of tokenizers can be used.
+ * This class is thread-safe.
+ * </p>
+ *
+ * @since 3.5
+ */
+public class LineCheckpoints {
+
+  public static final int DEFAULT_INTERVAL = 200;
+
+  private final int interval;
+  private final SortedMap<Integer, Map> statesByLine = new TreeMap<Integer, Map>();
+
+  public LineCheckpoints() {
+    this(DEFAULT_INTERVAL);
+  }
+
+  /**
+   * @param interval number of lines between two checkpoints
+   */
+  public LineCheckpoints(int interval) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Interval must be strictly positive: " + interval);
+    }
+    this.interval = interval;
+  }
+
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * Called when the tokenization is at the beginning of a line, between two tokens.
+   */
+  synchronized void record(int line, Map variables, Object[] tokenizers) {
+    if (line % interval == 1 % interval && !statesByLine.containsKey(line)) {
+      Map state = new HashMap(variables);
+      for (Map.Entry entry : (Set<Map.Entry>) state.entrySet()) {
+        int index = indexOf(tokenizers, entry.getValue());
+        if (index >= 0) {
+          entry.setValue(new TokenizerIndex(index));
+        }
+      }
+      statesByLine.put(line, state);
+    }
+  }
+
+  /**
+   * @return the variables of {@link HtmlCodeBuilder} at the beginning of the line. Empty if no checkpoint.
+   */
+  synchronized Map getState(int line, Object[] tokenizers) {
+    Map state = new HashMap();
+    Map recordedState = statesByLine.get(line);
+    if (recordedState != null) {
+      for (Map.Entry entry : (Set<Map.Entry>) recordedState.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof TokenizerIndex) {
+          value = tokenizers[((TokenizerIndex) value).index];
+        }
+        state.put(entry.getKey(), value);
+      }
+    }
+    return state;
+  }
+
+  private static int indexOf(Object[] tokenizers, Object value) {
+    for (int i = 0; i < tokenizers.length; i++) {
+      if (tokenizers[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the greatest line lower than or equal to the given line which has a checkpoint, 1 if none
+   */
+  public synchronized int getStartLine(int line) {
+    SortedMap<Integer, Map> head = statesByLine.headMap(line + 1);
+    return head.isEmpty() ? 1 : head.lastKey();
+  }
+
+  public synchronized int size() {
+    return statesByLine.size();
+  }
+
+  private static final class TokenizerIndex {
+    private final int index;
+
+    private TokenizerIndex(int index) {
+      this.index = index;
+    }
+  }
+}
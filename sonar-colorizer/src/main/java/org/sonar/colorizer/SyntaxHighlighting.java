@@ -0,0 +1,233 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.colorizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Highlighted tokens of a source file, encoded as (offset, length, type) spans. The type of a span is the pair
+ * of HTML tags to add around the token. The spans can be serialized at analysis time and rendered
+ * later to HTML without running the tokenizers again.
+ *
+ * <p>Serialized form: a version line, one line per type ("tagBefore TAB tagAfter"), an empty line, then
+ * the spans as "gap,length,type;" where gap is the number of characters since the end of the previous span.</p>
+ *
+ * @since 3.5
+ */
+public class SyntaxHighlighting {
+
+  private static final String VERSION = "1";
+  private static final char TAG_SEPARATOR = '\t';
+  private static final char LINE_SEPARATOR = '\n';
+  private static final char FIELD_SEPARATOR = ',';
+  private static final char SPAN_SEPARATOR = ';';
+  private static final int MAX_VALUE_BEFORE_DIGIT = (Integer.MAX_VALUE - 9) / 10;
+
+  private final List<String[]> types = new ArrayList<String[]>();
+  private final Map<String, Integer> typeIndexes = new HashMap<String, Integer>();
+  private int[] offsets = new int[64];
+  private int[] lengths = new int[64];
+  private int[] typeIds = new int[64];
+  private int size = 0;
+
+  /**
+   * Spans must be added in increasing order of offset and must not overlap.
+   */
+  public SyntaxHighlighting addToken(int offset, int length, String tagBefore, String tagAfter) {
+    if (tagBefore.length() == 0 && tagAfter.length() == 0) {
+      return this;
+    }
+    int previousEnd = size > 0 ? offsets[size - 1] + lengths[size - 1] : 0;
+    if (offset < previousEnd || length < 0) {
+      throw new IllegalArgumentException("Overlapping or unordered token at offset " + offset);
+    }
+    ensureCapacity(size + 1);
+    offsets[size] = offset;
+    lengths[size] = length;
+    typeIds[size] = typeIndex(tagBefore, tagAfter);
+    size++;
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getOffset(int index) {
+    return offsets[index];
+  }
+
+  public int getLength(int index) {
+    return lengths[index];
+  }
+
+  public String getTagBefore(int index) {
+    return types.get(typeIds[index])[0];
+  }
+
+  public String getTagAfter(int index) {
+    return types.get(typeIds[index])[1];
+  }
+
+  /**
+   * Generates the same HTML than {@link CodeColorizer#toHtml(java.io.Reader, HtmlOptions)} with the option
+   * {@link HtmlOptions#ONLY_SYNTAX}.
+   */
+  public String toHtml(String code) {
+    StringBuilder html = new StringBuilder(code.length() + size * 24);
+    int position = 0;
+    for (int i = 0; i < size; i++) {
+      int end = offsets[i] + lengths[i];
+      if (end > code.length()) {
+        throw new SynhtaxHighlightingException("Highlighting does not match the source code, offset: " + end);
+      }
+      appendEscaped(code, position, offsets[i], html);
+      String[] tags = types.get(typeIds[i]);
+      html.append(tags[0]);
+      appendEscaped(code, offsets[i], end, html);
+      html.append(tags[1]);
+      position = end;
+    }
+    appendEscaped(code, position, code.length(), html);
+    return html.toString();
+  }
+
+  private static void appendEscaped(String code, int from, int to, StringBuilder html) {
+    for (int i = from; i < to; i++) {
+      char c = code.charAt(i);
+      if (c == '<') {
+        html.append("&lt;");
+      } else if (c == '>') {
+        html.append("&gt;");
+      } else {
+        html.append(c);
+      }
+    }
+  }
+
+  public String serialize() {
+    StringBuilder sb = new StringBuilder(size * 8);
+    sb.append(VERSION).append(LINE_SEPARATOR);
+    for (String[] tags : types) {
+      sb.append(tags[0]).append(TAG_SEPARATOR).append(tags[1]).append(LINE_SEPARATOR);
+    }
+    sb.append(LINE_SEPARATOR);
+    int previousEnd = 0;
+    for (int i = 0; i < size; i++) {
+      sb.append(offsets[i] - previousEnd).append(FIELD_SEPARATOR).append(lengths[i]).append(FIELD_SEPARATOR).append(typeIds[i]).append(SPAN_SEPARATOR);
+      previousEnd = offsets[i] + lengths[i];
+    }
+    return sb.toString();
+  }
+
+  public static SyntaxHighlighting parse(String data) {
+    SyntaxHighlighting highlighting = new SyntaxHighlighting();
+    int versionEnd = data.indexOf(LINE_SEPARATOR);
+    if (versionEnd < 0 || !VERSION.equals(data.substring(0, versionEnd))) {
+      throw new SynhtaxHighlightingException("Unsupported format of syntax highlighting");
+    }
+    List<String[]> types = new ArrayList<String[]>();
+    int cursor = versionEnd + 1;
+    int lineEnd = data.indexOf(LINE_SEPARATOR, cursor);
+    while (lineEnd > cursor) {
+      int tab = data.indexOf(TAG_SEPARATOR, cursor);
+      if (tab < 0 || tab > lineEnd) {
+        throw new SynhtaxHighlightingException("Bad format of syntax highlighting type: " + data.substring(cursor, lineEnd));
+      }
+      types.add(new String[] {data.substring(cursor, tab), data.substring(tab + 1, lineEnd)});
+      cursor = lineEnd + 1;
+      lineEnd = data.indexOf(LINE_SEPARATOR, cursor);
+    }
+    if (lineEnd < 0) {
+      throw new SynhtaxHighlightingException("Bad format of syntax highlighting");
+    }
+    cursor = lineEnd + 1;
+
+    int[] fields = new int[3];
+    int field = 0;
+    int value = 0;
+    boolean hasValue = false;
+    int previousEnd = 0;
+    for (int i = cursor; i < data.length(); i++) {
+      char c = data.charAt(i);
+      if (c >= '0' && c <= '9' && value <= MAX_VALUE_BEFORE_DIGIT) {
+        value = value * 10 + (c - '0');
+        hasValue = true;
+      } else if (c == FIELD_SEPARATOR && field < 2 && hasValue) {
+        fields[field++] = value;
+        value = 0;
+        hasValue = false;
+      } else if (c == SPAN_SEPARATOR && field == 2 && hasValue) {
+        if (value >= types.size()) {
+          throw new SynhtaxHighlightingException("Unknown type of syntax highlighting at position " + i + ": " + value);
+        }
+        String[] tags = types.get(value);
+        int offset = previousEnd + fields[0];
+        try {
+          highlighting.addToken(offset, fields[1], tags[0], tags[1]);
+        } catch (IllegalArgumentException e) {
+          throw new SynhtaxHighlightingException("Bad format of syntax highlighting at position " + i, e);
+        }
+        previousEnd = offset + fields[1];
+        field = 0;
+        value = 0;
+        hasValue = false;
+      } else {
+        throw new SynhtaxHighlightingException("Bad format of syntax highlighting at position " + i);
+      }
+    }
+    if (field != 0 || hasValue) {
+      throw new SynhtaxHighlightingException("Truncated syntax highlighting");
+    }
+    return highlighting;
+  }
+
+  private int typeIndex(String tagBefore, String tagAfter) {
+    if (tagBefore.indexOf(TAG_SEPARATOR) >= 0 || tagBefore.indexOf(LINE_SEPARATOR) >= 0 || tagAfter.indexOf(LINE_SEPARATOR) >= 0) {
+      throw new IllegalArgumentException("Tags can not contain tabulations or line breaks: " + tagBefore);
+    }
+    String key = tagBefore + TAG_SEPARATOR + tagAfter;
+    Integer index = typeIndexes.get(key);
+    if (index == null) {
+      index = types.size();
+      types.add(new String[] {tagBefore, tagAfter});
+      typeIndexes.put(key, index);
+    }
+    return index;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > offsets.length) {
+      int newCapacity = Math.max(capacity, offsets.length * 2);
+      offsets = grow(offsets, newCapacity);
+      lengths = grow(lengths, newCapacity);
+      typeIds = grow(typeIds, newCapacity);
+    }
+  }
+
+  private static int[] grow(int[] array, int newCapacity) {
+    int[] result = new int[newCapacity];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.colorizer;
+
+/**
+ * Code builder which does not generate HTML but records the position of the tokens highlighted by the tokenizers.
+ * Tokenizers always surround a token with a tag before and a tag after, so tags are read by pairs.
+ *
+ * @since 3.5
+ */
+public class SyntaxHighlightingBuilder extends HtmlCodeBuilder {
+
+  private final SyntaxHighlighting highlighting = new SyntaxHighlighting();
+  private int offset = 0;
+  private int tokenStart = -1;
+  private String tagBefore = null;
+
+  @Override
+  public Appendable append(char c) {
+    offset++;
+    return this;
+  }
+
+  @Override
+  public void appendWithoutTransforming(String htmlTag) {
+    if (tagBefore == null) {
+      tagBefore = htmlTag;
+      tokenStart = offset;
+    } else {
+      highlighting.addToken(tokenStart, offset - tokenStart, tagBefore, htmlTag);
+      tagBefore = null;
+    }
+  }
+
+  public SyntaxHighlighting build() {
+    return highlighting;
+  }
+
+  @Override
+  public String toString() {
+    return highlighting.serialize();
+  }
+}
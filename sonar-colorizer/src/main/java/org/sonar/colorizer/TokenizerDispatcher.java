@@ -23,6 +23,8 @@ import org.sonar.channel.Channel;
 import org.sonar.channel.CodeReader;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TokenizerDispatcher {
 
@@ -43,9 +45,21 @@ public class TokenizerDispatcher {
   }
 
   public final void colorize(CodeReader code, HtmlCodeBuilder colorizedCode) {
-    cloneNotThreadSafeTokenizers();
+    colorize(code, colorizedCode, null, 0);
+  }
+
+  /**
+   * @param checkpoints if not null, the state of the tokenizers is recorded at the beginning of lines
+   * @param lastLine the tokenization stops after this line. Zero to tokenize until the end of code.
+   * @since 3.5
+   */
+  public final void colorize(CodeReader code, HtmlCodeBuilder colorizedCode, LineCheckpoints checkpoints, int lastLine) {
+    cloneNotThreadSafeTokenizers(colorizedCode.getVariables());
     nextChar:
-    while (code.peek() != -1) {
+    while (code.peek() != -1 && (lastLine <= 0 || code.getLinePosition() <= lastLine)) {
+      if (checkpoints != null && code.getColumnPosition() == 0) {
+        checkpoints.record(code.getLinePosition(), colorizedCode.getVariables(), tokenizers);
+      }
       for (Channel<HtmlCodeBuilder> codeTokenizer : tokenizers) {
         if (codeTokenizer.consume(code, colorizedCode)) {
           continue nextChar;
@@ -55,10 +69,30 @@ public class TokenizerDispatcher {
     }
   }
 
-  private void cloneNotThreadSafeTokenizers() {
+  /**
+   * Restores the state of tokenizers recorded at the beginning of a line. Not thread-safe tokenizers referenced
+   * by the state are replaced by their clones when colorizing.
+   *
+   * @since 3.5
+   */
+  public final void restore(LineCheckpoints checkpoints, int line, HtmlCodeBuilder colorizedCode) {
+    colorizedCode.getVariables().putAll(checkpoints.getState(line, tokenizers));
+  }
+
+  /**
+   * Variables which reference a cloned tokenizer, for example when they have been restored from a checkpoint,
+   * are updated to reference its clone.
+   */
+  private void cloneNotThreadSafeTokenizers(Map variables) {
     for (int i = 0; i < tokenizers.length; i++) {
       if (tokenizers[i] instanceof NotThreadSafeTokenizer) {
-        tokenizers[i] = ((NotThreadSafeTokenizer) tokenizers[i]).clone();
+        Channel<HtmlCodeBuilder> clone = ((NotThreadSafeTokenizer) tokenizers[i]).clone();
+        for (Map.Entry entry : (Set<Map.Entry>) variables.entrySet()) {
+          if (entry.getValue() == tokenizers[i]) {
+            entry.setValue(clone);
+          }
+        }
+        tokenizers[i] = clone;
       }
     }
   }
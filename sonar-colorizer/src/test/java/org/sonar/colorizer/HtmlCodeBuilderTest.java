@@ -78,4 +78,21 @@ public class HtmlCodeBuilderTest {
     assertThat((String) builder.getVariable("foo", "default"), is("default"));
   }
 
+  @Test
+  public void testStreamingByChunks() {
+    StringBuilder output = new StringBuilder();
+    builder = new HtmlCodeBuilder(output, 4);
+
+    builder.append("abc");
+    assertEquals("", output.toString());
+    assertEquals("abc", builder.toString());
+
+    builder.appendWithoutTransforming("<b>");
+    assertEquals("abc<b>", output.toString());
+    assertEquals("", builder.toString());
+
+    builder.append('>');
+    builder.flush();
+    assertEquals("abc<b>&gt;", output.toString());
+  }
 }
@@ -20,13 +20,17 @@
 package org.sonar.colorizer;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
+import org.sonar.channel.Channel;
+import org.sonar.channel.CodeReader;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -69,4 +73,106 @@ public class HtmlRendererTest {
     assertThat(html, containsString("</html>"));
   }
 
+  @Test
+  public void streamHtml() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    HtmlRenderer htmlRenderer = new HtmlRenderer(HtmlOptions.DEFAULT);
+
+    StringBuilder output = new StringBuilder();
+    htmlRenderer.render(new StringReader(code), JavaTokenizers.forHtml(), output, null);
+
+    assertThat(output.toString(), is(htmlRenderer.render(new StringReader(code), JavaTokenizers.forHtml())));
+  }
+
+  @Test
+  public void renderRangesOfLines() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    assertSameLinesThanFullRendering(code);
+  }
+
+  @Test
+  public void renderRangesOfLinesWithWindowsEndOfLines() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    assertSameLinesThanFullRendering(code.replace("\n", "\r\n"));
+  }
+
+  @Test
+  public void recordCheckpoints() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    LineCheckpoints checkpoints = new LineCheckpoints(10);
+
+    new HtmlRenderer(HtmlOptions.ONLY_SYNTAX).render(new StringReader(code), JavaTokenizers.forHtml(), new StringBuilder(), checkpoints);
+
+    // lines 1, 11, 21, 31, 41, 51
+    assertThat(checkpoints.size(), is(6));
+    assertThat(checkpoints.getStartLine(25), is(21));
+    assertThat(checkpoints.getStartLine(10), is(1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void renderRangeOfLinesDoesNotSupportTables() {
+    new HtmlRenderer(HtmlOptions.DEFAULT).renderLines(new StringReader("foo"), JavaTokenizers.forHtml(), 1, 1, new StringBuilder(), new LineCheckpoints());
+  }
+
+  @Test
+  public void renderRangesOfLinesWithNotThreadSafeTokenizers() {
+    String code = "a\n{\nb\nc\nd\n}\ne\n{\nf\n}";
+    List<BlockTokenizer> tokenizers = Arrays.asList(new BlockTokenizer());
+    HtmlRenderer htmlRenderer = new HtmlRenderer(HtmlOptions.ONLY_SYNTAX);
+    assertThat(htmlRenderer.render(new StringReader(code), tokenizers), containsString("<b>c</b>"));
+
+    assertSameLinesThanFullRendering(code, tokenizers);
+  }
+
+  private void assertSameLinesThanFullRendering(String code) {
+    assertSameLinesThanFullRendering(code, JavaTokenizers.forHtml());
+  }
+
+  private void assertSameLinesThanFullRendering(String code, List<? extends Channel<HtmlCodeBuilder>> tokenizers) {
+    HtmlRenderer htmlRenderer = new HtmlRenderer(HtmlOptions.ONLY_SYNTAX);
+    String[] lines = htmlRenderer.render(new StringReader(code), tokenizers).split("\r?\n|\r", -1);
+    LineCheckpoints checkpoints = new LineCheckpoints(3);
+
+    for (int from = 1; from <= lines.length; from++) {
+      for (int to = from; to <= lines.length; to += 4) {
+        StringBuilder output = new StringBuilder();
+        htmlRenderer.renderLines(new StringReader(code), tokenizers, from, to, output, checkpoints);
+
+        String[] range = new String[to - from + 1];
+        System.arraycopy(lines, from - 1, range, 0, range.length);
+        assertThat("lines " + from + " to " + to, output.toString().split("\r?\n|\r", -1), is(range));
+      }
+    }
+    assertThat(checkpoints.size() > 1, is(true));
+  }
+
+  /**
+   * Highlights the lines between curly braces. The state is shared between lines through a variable which
+   * references the tokenizer itself.
+   */
+  private static class BlockTokenizer extends NotThreadSafeTokenizer {
+    private static final String BLOCK = "BLOCK";
+
+    @Override
+    public boolean consume(CodeReader code, HtmlCodeBuilder codeBuilder) {
+      int c = code.peek();
+      if (c == '{' || c == '}') {
+        codeBuilder.append((char) code.pop());
+        codeBuilder.setVariable(BLOCK, c == '{' ? this : null);
+        return true;
+      }
+      if (codeBuilder.getVariable(BLOCK) == this && c != '\n' && c != '\r') {
+        codeBuilder.appendWithoutTransforming("<b>");
+        codeBuilder.append((char) code.pop());
+        codeBuilder.appendWithoutTransforming("</b>");
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public BlockTokenizer clone() {
+      return new BlockTokenizer();
+    }
+  }
 }
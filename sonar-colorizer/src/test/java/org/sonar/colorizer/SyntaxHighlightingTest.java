@@ -0,0 +1,120 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.colorizer;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SyntaxHighlightingTest {
+
+  @Test
+  public void shouldRenderSameHtmlThanCodeColorizer() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    CodeColorizer colorizer = new CodeColorizer(CodeColorizer.Format.JAVA);
+
+    SyntaxHighlighting highlighting = colorizer.toSyntaxHighlighting(new StringReader(code));
+
+    assertThat(highlighting.size()).isGreaterThan(0);
+    assertThat(highlighting.toHtml(code)).isEqualTo(colorizer.toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX));
+  }
+
+  @Test
+  public void shouldSerializeAndParse() throws IOException {
+    String code = IOUtils.toString(getClass().getResourceAsStream("/org/sonar/colorizer/samples/Sample.java"));
+    CodeColorizer colorizer = new CodeColorizer(CodeColorizer.Format.JAVA);
+
+    String data = colorizer.toSyntaxHighlighting(new StringReader(code)).serialize();
+    SyntaxHighlighting highlighting = SyntaxHighlighting.parse(data);
+
+    assertThat(highlighting.serialize()).isEqualTo(data);
+    assertThat(highlighting.toHtml(code)).isEqualTo(colorizer.toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX));
+  }
+
+  @Test
+  public void shouldEncodeSpans() {
+    SyntaxHighlighting highlighting = new SyntaxHighlighting()
+        .addToken(0, 6, "<span class=\"k\">", "</span>")
+        .addToken(7, 5, "<span class=\"k\">", "</span>")
+        .addToken(13, 3, "<span class=\"c\">", "</span>");
+
+    assertThat(highlighting.serialize()).isEqualTo("1\n<span class=\"k\">\t</span>\n<span class=\"c\">\t</span>\n\n0,6,0;1,5,0;1,3,1;");
+    assertThat(highlighting.toHtml("public class Foo<T>")).isEqualTo(
+        "<span class=\"k\">public</span> <span class=\"k\">class</span> <span class=\"c\">Foo</span>&lt;T&gt;");
+  }
+
+  @Test
+  public void shouldIgnoreTokensWithoutTags() {
+    SyntaxHighlighting highlighting = new SyntaxHighlighting().addToken(0, 3, "", "");
+
+    assertThat(highlighting.size()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldFailIfTokensOverlap() {
+    new SyntaxHighlighting()
+        .addToken(0, 6, "<b>", "</b>")
+        .addToken(3, 5, "<b>", "</b>");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfUnknownVersion() {
+    SyntaxHighlighting.parse("2\n\n0,6,0;");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfSourceDoesNotMatch() {
+    new SyntaxHighlighting().addToken(0, 6, "<b>", "</b>").toHtml("foo");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfUnknownType() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,6,1;");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfParsedOffsetOverflows() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,2000000000,0;2000000000,1,0;");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfLastSpanIsTruncated() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,6,0;1,5");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfLastSpanHasNoSeparator() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,6,0;1,5,0");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfFieldIsEmpty() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,,0;");
+  }
+
+  @Test(expected = SynhtaxHighlightingException.class)
+  public void shouldFailIfValueOverflows() {
+    SyntaxHighlighting.parse("1\n<b>\t</b>\n\n0,99999999999,0;");
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.dependency;
+
+import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @since 3.5
+ */
+public class DependencyDao implements BatchComponent, ServerComponent {
+
+  private final MyBatis mybatis;
+
+  public DependencyDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
+  public List<DependencyDto> selectByProjectSnapshotId(long projectSnapshotId) {
+    SqlSession session = mybatis.openSession();
+    try {
+      return session.getMapper(DependencyMapper.class).selectByProjectSnapshotId(projectSnapshotId);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Insert rows in the table DEPENDENCIES.
+   * On Oracle, ids are read from a sequence before each insert and set on the dtos. On the other databases, generated ids
+   * are not returned. They can be loaded with {@link #selectByProjectSnapshotId(long)}.
+   */
+  public void insert(Collection<DependencyDto> dependencies) {
+    SqlSession session = mybatis.openBatchSession();
+    try {
+      DependencyMapper mapper = session.getMapper(DependencyMapper.class);
+      for (DependencyDto dependency : dependencies) {
+        mapper.batchInsert(dependency);
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Update the column PARENT_DEPENDENCY_ID of dependencies that have been inserted before their parent.
+   */
+  public void updateParents(Collection<DependencyDto> dependencies) {
+    SqlSession session = mybatis.openBatchSession();
+    try {
+      DependencyMapper mapper = session.getMapper(DependencyMapper.class);
+      for (DependencyDto dependency : dependencies) {
+        mapper.batchUpdateParent(dependency);
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+}
@@ -21,9 +21,16 @@ package org.sonar.core.dependency;
 
 public final class DependencyDto {
   private Long id;
+  private Long projectSnapshotId;
+  private Long fromResourceId;
+  private String fromScope;
   private Long fromSnapshotId;
+  private Long toResourceId;
+  private String toScope;
   private Long toSnapshotId;
+  private Long parentDependencyId;
   private String usage;
+  private Integer weight;
 
   public Long getId() {
     return id;
@@ -34,6 +41,33 @@ public final class DependencyDto {
     return this;
   }
 
+  public Long getProjectSnapshotId() {
+    return projectSnapshotId;
+  }
+
+  public DependencyDto setProjectSnapshotId(Long projectSnapshotId) {
+    this.projectSnapshotId = projectSnapshotId;
+    return this;
+  }
+
+  public Long getFromResourceId() {
+    return fromResourceId;
+  }
+
+  public DependencyDto setFromResourceId(Long fromResourceId) {
+    this.fromResourceId = fromResourceId;
+    return this;
+  }
+
+  public String getFromScope() {
+    return fromScope;
+  }
+
+  public DependencyDto setFromScope(String fromScope) {
+    this.fromScope = fromScope;
+    return this;
+  }
+
   public Long getFromSnapshotId() {
     return fromSnapshotId;
   }
@@ -43,6 +77,24 @@ public final class DependencyDto {
     return this;
   }
 
+  public Long getToResourceId() {
+    return toResourceId;
+  }
+
+  public DependencyDto setToResourceId(Long toResourceId) {
+    this.toResourceId = toResourceId;
+    return this;
+  }
+
+  public String getToScope() {
+    return toScope;
+  }
+
+  public DependencyDto setToScope(String toScope) {
+    this.toScope = toScope;
+    return this;
+  }
+
   public Long getToSnapshotId() {
     return toSnapshotId;
   }
@@ -52,6 +104,15 @@ public final class DependencyDto {
     return this;
   }
 
+  public Long getParentDependencyId() {
+    return parentDependencyId;
+  }
+
+  public DependencyDto setParentDependencyId(Long parentDependencyId) {
+    this.parentDependencyId = parentDependencyId;
+    return this;
+  }
+
   public String getUsage() {
     return usage;
   }
@@ -60,4 +121,13 @@ public final class DependencyDto {
     this.usage = usage;
     return this;
   }
+
+  public Integer getWeight() {
+    return weight;
+  }
+
+  public DependencyDto setWeight(Integer weight) {
+    this.weight = weight;
+    return this;
+  }
 }
@@ -21,6 +21,14 @@ package org.sonar.core.dependency;
 
 import org.apache.ibatis.session.ResultHandler;
 
+import java.util.List;
+
 public interface DependencyMapper {
   void selectAll(ResultHandler handler);
+
+  List<DependencyDto> selectByProjectSnapshotId(long projectSnapshotId);
+
+  void batchInsert(DependencyDto dto);
+
+  void batchUpdateParent(DependencyDto dto);
 }
@@ -20,6 +20,7 @@
 package org.sonar.core.measure;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
@@ -56,6 +57,10 @@ public class MeasureFilter {
   // sort
   private MeasureFilterSort sort = new MeasureFilterSort();
 
+  // pagination, all the rows are returned if pageSize is null
+  private Integer pageSize = null;
+  private int pageIndex = 1;
+
   public String getBaseResourceKey() {
     return baseResourceKey;
   }
@@ -167,6 +172,38 @@ public class MeasureFilter {
     return this;
   }
 
+  public Integer getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * @param i maximum number of rows to return, or null to return all the rows
+   * @since 3.5
+   */
+  public MeasureFilter setPageSize(@Nullable Integer i) {
+    Preconditions.checkArgument(i == null || i > 0, "Page size must be strictly positive: " + i);
+    this.pageSize = i;
+    return this;
+  }
+
+  public int getPageIndex() {
+    return pageIndex;
+  }
+
+  /**
+   * @param i index of the page, starting from 1
+   * @since 3.5
+   */
+  public MeasureFilter setPageIndex(int i) {
+    Preconditions.checkArgument(i > 0, "Page index must be strictly positive: " + i);
+    this.pageIndex = i;
+    return this;
+  }
+
+  public boolean isPaginated() {
+    return pageSize != null;
+  }
+
   public Date getFromDate() {
     return fromDate;
   }
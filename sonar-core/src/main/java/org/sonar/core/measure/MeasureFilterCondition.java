@@ -23,6 +23,8 @@ import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.sonar.api.measures.Metric;
 
+import java.util.List;
+
 public class MeasureFilterCondition {
   public enum Operator {
     EQUALS("eq", "="), GREATER("gt", ">"), GREATER_OR_EQUALS("gte", ">="), LESS("lt", "<"), LESS_OR_EQUALS("lte", "<=");
@@ -91,13 +93,14 @@ public class MeasureFilterCondition {
     return sb;
   }
 
-  StringBuilder appendSqlCondition(StringBuilder sql, int conditionIndex) {
+  StringBuilder appendSqlCondition(StringBuilder sql, int conditionIndex, List<Object> parameters) {
     String table = "pmcond" + conditionIndex;
-    sql.append(" ").append(table).append(".metric_id=");
-    sql.append(metric.getId());
+    sql.append(" ").append(table).append(".metric_id=?");
+    parameters.add(metric.getId());
     sql.append(" AND ");
     appendSqlColumn(sql, conditionIndex);
-    sql.append(operator.getSql()).append(value);
+    sql.append(operator.getSql()).append("?");
+    parameters.add(value);
     sql.append(" AND ");
     sql.append(table).append(".rule_id IS NULL AND ");
     sql.append(table).append(".rule_priority IS NULL AND ");
@@ -25,10 +25,15 @@ import org.sonar.core.resource.SnapshotDto;
 
 import javax.annotation.Nullable;
 
+import java.util.Collections;
+import java.util.List;
+
 class MeasureFilterContext {
   private Long userId = null;
   private SnapshotDto baseSnapshot = null;
+  private List<Long> resourceIdsMatchingName = null;
   private String sql;
+  private List<Object> sqlParameters = Collections.emptyList();
   private String data;
 
   Long getUserId() {
@@ -49,6 +54,19 @@ class MeasureFilterContext {
     return this;
   }
 
+  /**
+   * Ids of the resources whose name matches the filter, as found by the in-memory index of names. Null if
+   * the condition must be executed in SQL.
+   */
+  List<Long> getResourceIdsMatchingName() {
+    return resourceIdsMatchingName;
+  }
+
+  MeasureFilterContext setResourceIdsMatchingName(@Nullable List<Long> ids) {
+    this.resourceIdsMatchingName = ids;
+    return this;
+  }
+
   String getSql() {
     return sql;
   }
@@ -58,6 +76,15 @@ class MeasureFilterContext {
     return this;
   }
 
+  List<Object> getSqlParameters() {
+    return sqlParameters;
+  }
+
+  MeasureFilterContext setSqlParameters(List<Object> sqlParameters) {
+    this.sqlParameters = sqlParameters;
+    return this;
+  }
+
   String getData() {
     return data;
   }
@@ -72,6 +99,7 @@ class MeasureFilterContext {
     return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
       .append("filter", data)
       .append("sql", sql)
+      .append("parameters", sqlParameters)
       .append("user", userId)
       .toString();
   }
@@ -21,25 +21,64 @@ package org.sonar.core.measure;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.ServerComponent;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
 
 import javax.annotation.Nullable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
 
 public class MeasureFilterEngine implements ServerComponent {
 
+  private static final int CACHE_MAX_SIZE = 100;
+  private static final long CACHE_TTL_IN_SECONDS = 300L;
+
   private final MeasureFilterFactory factory;
   private final MeasureFilterExecutor executor;
+  private final PropertiesDao propertiesDao;
+
+  /**
+   * Results are shared between users. Filters on favourites are not cached, as favourites can change at any time.
+   * Keys contain the analysis generation, so results computed before the end of an analysis are never returned after.
+   */
+  private final Cache<CacheKey, MeasureFilterResult> cache;
+  private volatile String lastGeneration = null;
 
+  public MeasureFilterEngine(MeasureFilterFactory factory, MeasureFilterExecutor executor, PropertiesDao propertiesDao) {
+    this(factory, executor, propertiesDao, CACHE_MAX_SIZE, CACHE_TTL_IN_SECONDS);
+  }
 
-  public MeasureFilterEngine(MeasureFilterFactory factory, MeasureFilterExecutor executor) {
+  @VisibleForTesting
+  MeasureFilterEngine(MeasureFilterFactory factory, MeasureFilterExecutor executor, PropertiesDao propertiesDao, int cacheMaxSize, long cacheTtlInSeconds) {
     this.executor = executor;
     this.factory = factory;
+    this.propertiesDao = propertiesDao;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(cacheMaxSize)
+      .expireAfterWrite(cacheTtlInSeconds, TimeUnit.SECONDS)
+      .softValues()
+      .build(new CacheLoader<CacheKey, MeasureFilterResult>() {
+        @Override
+        public MeasureFilterResult load(CacheKey key) {
+          return doExecute(key.filterMap, key.userId, key.logger);
+        }
+      });
   }
 
   public MeasureFilterResult execute(Map<String, Object> filterMap, @Nullable Long userId) {
@@ -48,6 +87,45 @@ public class MeasureFilterEngine implements ServerComponent {
 
   @VisibleForTesting
   MeasureFilterResult execute(Map<String, Object> filterMap, @Nullable Long userId, Logger logger) {
+    if ("true".equals(String.valueOf(filterMap.get("onFavourites")))) {
+      return doExecute(filterMap, userId, logger);
+    }
+    String generation;
+    try {
+      generation = currentGeneration();
+    } catch (Exception e) {
+      // results can not be cached
+      logger.error("Fail to load the analysis generation", e);
+      return doExecute(filterMap, userId, logger);
+    }
+    CacheKey key = new CacheKey(generation, filterMap, userId, logger);
+    MeasureFilterResult result = cache.getUnchecked(key);
+    if (!result.isSuccess()) {
+      cache.invalidate(key);
+    }
+    return result;
+  }
+
+  /**
+   * Statistics of the cache of results, for example to monitor the hit rate.
+   * @since 3.5
+   */
+  public CacheStats getCacheStats() {
+    return cache.stats();
+  }
+
+  private String currentGeneration() {
+    PropertyDto property = propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION);
+    String generation = (property != null ? property.getValue() : null);
+    if (!Objects.equal(generation, lastGeneration)) {
+      // previous results can not be requested anymore, release memory
+      cache.invalidateAll();
+      lastGeneration = generation;
+    }
+    return generation;
+  }
+
+  private MeasureFilterResult doExecute(Map<String, Object> filterMap, @Nullable Long userId, Logger logger) {
     long start = System.currentTimeMillis();
     MeasureFilterResult result = new MeasureFilterResult();
     MeasureFilterContext context = new MeasureFilterContext();
@@ -57,6 +135,9 @@ public class MeasureFilterEngine implements ServerComponent {
       MeasureFilter filter = factory.create(filterMap);
       List<MeasureFilterRow> rows = executor.execute(filter, context);
       result.setRows(rows);
+      if (filter.isPaginated()) {
+        result.setTotal(executor.count(filter, context));
+      }
       result.setDurationInMs(System.currentTimeMillis() - start);
       log(context, result, logger);
 
@@ -74,8 +155,53 @@ public class MeasureFilterEngine implements ServerComponent {
       log.append("request: ").append(context.getData()).append(SystemUtils.LINE_SEPARATOR);
       log.append(" result: ").append(result.toString()).append(SystemUtils.LINE_SEPARATOR);
       log.append("    sql: ").append(context.getSql()).append(SystemUtils.LINE_SEPARATOR);
+      log.append(" params: ").append(context.getSqlParameters()).append(SystemUtils.LINE_SEPARATOR);
+      log.append("  cache: ").append(cache.stats()).append(SystemUtils.LINE_SEPARATOR);
       logger.debug(log.toString());
     }
   }
 
+  /**
+   * Equality is based on the generation and on the filter criteria sorted by key. The other properties
+   * of the request and the other fields are only used to load the result.
+   */
+  static final class CacheKey {
+    private final String generation;
+    private final SortedMap<String, String> criteria;
+
+    private final Map<String, Object> filterMap;
+    private final Long userId;
+    private final Logger logger;
+
+    CacheKey(@Nullable String generation, Map<String, Object> filterMap, @Nullable Long userId, Logger logger) {
+      this.generation = generation;
+      this.filterMap = filterMap;
+      this.userId = userId;
+      this.logger = logger;
+      this.criteria = Maps.newTreeMap();
+      for (Map.Entry<String, Object> entry : filterMap.entrySet()) {
+        if (MeasureFilterFactory.isCriterion(entry.getKey())) {
+          Object value = entry.getValue();
+          criteria.put(entry.getKey(), value instanceof Collection ? StringUtils.join((Collection) value, ',') : String.valueOf(value));
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return Objects.equal(generation, other.generation) && criteria.equals(other.criteria);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(generation, criteria);
+    }
+  }
 }
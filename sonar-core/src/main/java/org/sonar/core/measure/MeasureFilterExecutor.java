@@ -20,12 +20,16 @@
 package org.sonar.core.measure;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.Database;
 import org.sonar.core.persistence.DatabaseUtils;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
+import org.sonar.core.resource.ResourceIndexDto;
+import org.sonar.core.resource.ResourceSearchIndex;
 
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -34,14 +38,22 @@ import java.util.List;
 
 public class MeasureFilterExecutor implements ServerComponent {
 
+  /**
+   * Above this number of resources matching the name of the filter, the condition on names is executed in SQL
+   * in order to not send too many parameters.
+   */
+  static final int MAX_RESOURCE_IDS_MATCHING_NAME = 500;
+
   private MyBatis mybatis;
   private Database database;
   private ResourceDao resourceDao;
+  private ResourceSearchIndex searchIndex;
 
-  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao) {
+  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao, ResourceSearchIndex searchIndex) {
     this.mybatis = mybatis;
     this.database = database;
     this.resourceDao = resourceDao;
+    this.searchIndex = searchIndex;
   }
 
   public List<MeasureFilterRow> execute(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
@@ -59,6 +71,7 @@ public class MeasureFilterExecutor implements ServerComponent {
       if (isValid(filter, context)) {
         MeasureFilterSql sql = new MeasureFilterSql(database, filter, context);
         context.setSql(sql.sql());
+        context.setSqlParameters(sql.parameters());
         connection = session.getConnection();
         rows = sql.execute(connection);
       } else {
@@ -73,12 +86,60 @@ public class MeasureFilterExecutor implements ServerComponent {
     return rows;
   }
 
+  /**
+   * Number of rows matching the filter, whatever the pagination.
+   * @since 3.5
+   */
+  public int count(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
+    if (filter.isEmpty()) {
+      return 0;
+    }
+
+    int count;
+    SqlSession session = null;
+    Connection connection = null;
+    try {
+      session = mybatis.openSession();
+      prepareContext(context, filter, session);
+
+      if (isValid(filter, context)) {
+        MeasureFilterSql sql = new MeasureFilterSql(database, filter, context);
+        connection = session.getConnection();
+        count = sql.count(connection);
+      } else {
+        count = 0;
+      }
+    } finally {
+      MyBatis.closeQuietly(session);
+      // connection is supposed to be closed by the session
+      DatabaseUtils.closeQuietly(connection);
+    }
+
+    return count;
+  }
+
   private void prepareContext(MeasureFilterContext context, MeasureFilter filter, SqlSession session) {
     if (filter.getBaseResourceKey() != null) {
       context.setBaseSnapshot(resourceDao.getLastSnapshot(filter.getBaseResourceKey(), session));
     } else if (filter.getBaseResourceId() != null) {
       context.setBaseSnapshot(resourceDao.getLastSnapshotByResourceId(filter.getBaseResourceId(), session));
     }
+    if (StringUtils.isNotBlank(filter.getResourceName())) {
+      context.setResourceIdsMatchingName(searchResourceIds(filter));
+    }
+  }
+
+  private List<Long> searchResourceIds(MeasureFilter filter) {
+    List<String> qualifiers = filter.getResourceQualifiers();
+    List<ResourceIndexDto> matches = searchIndex.search(filter.getResourceName(), qualifiers.isEmpty() ? null : qualifiers);
+    if (matches.size() > MAX_RESOURCE_IDS_MATCHING_NAME) {
+      return null;
+    }
+    List<Long> ids = Lists.newArrayList();
+    for (ResourceIndexDto match : matches) {
+      ids.add(match.getResourceId());
+    }
+    return ids;
   }
 
   static boolean isValid(MeasureFilter filter, MeasureFilterContext context) {
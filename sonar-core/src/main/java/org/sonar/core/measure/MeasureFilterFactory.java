@@ -20,6 +20,7 @@
 package org.sonar.core.measure;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.measures.Metric;
@@ -33,9 +34,15 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class MeasureFilterFactory implements ServerComponent {
 
+  private static final Set<String> CRITERIA = ImmutableSet.of("base", "baseId", "scopes", "qualifiers", "languages", "onBaseComponents",
+    "nameSearch", "keyRegexp", "onFavourites", "fromDate", "ageMaxDays", "toDate", "ageMinDays", "sort", "asc");
+  private static final Pattern MEASURE_CRITERION = Pattern.compile("c[1-3]_(metric|op|val|period)");
+
   private MetricFinder metricFinder;
 
   public MeasureFilterFactory(MetricFinder metricFinder) {
@@ -65,6 +72,14 @@ public class MeasureFilterFactory implements ServerComponent {
     return filter;
   }
 
+  /**
+   * Whether the property is read by {@link #create(java.util.Map)}. The other properties, for example the
+   * pagination or the columns to display, have no effect on the rows returned by the filter.
+   */
+  static boolean isCriterion(String property) {
+    return CRITERIA.contains(property) || MEASURE_CRITERION.matcher(property).matches();
+  }
+
   private void fillDateConditions(MeasureFilter filter, Map<String, Object> properties) {
     if (properties.containsKey("fromDate")) {
       filter.setFromDate(toDate((String) properties.get("fromDate")));
@@ -30,6 +30,7 @@ public class MeasureFilterResult {
   }
 
   private List<MeasureFilterRow> rows = null;
+  private Integer total = null;
   private Error error = null;
   private long durationInMs;
 
@@ -40,6 +41,19 @@ public class MeasureFilterResult {
     return rows;
   }
 
+  /**
+   * Number of rows matching the filter when the rows are paginated, else null.
+   * @since 3.5
+   */
+  public Integer getTotal() {
+    return total;
+  }
+
+  MeasureFilterResult setTotal(@Nullable Integer i) {
+    this.total = i;
+    return this;
+  }
+
   public Error getError() {
     return error;
   }
@@ -73,6 +87,9 @@ public class MeasureFilterResult {
     if (rows != null) {
       sb.append(rows.size()).append(" rows, ");
     }
+    if (total != null) {
+      sb.append("total=").append(total).append(", ");
+    }
     if (error != null) {
       sb.append("error=").append(error).append(", ");
     }
@@ -79,6 +79,13 @@ class MeasureFilterSort {
     return Field.DATE.equals(field);
   }
 
+  /**
+   * Text columns are sorted programmatically in order to be case-insensitive on all the databases.
+   */
+  boolean isSortedByDatabase() {
+    return isOnNumericMeasure() || isOnDate();
+  }
+
   boolean isAsc() {
     return asc;
   }
@@ -22,7 +22,7 @@ package org.sonar.core.measure;
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
-import org.apache.commons.lang.StringEscapeUtils;
+import com.google.common.primitives.Longs;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.core.persistence.Database;
 import org.sonar.core.persistence.DatabaseUtils;
@@ -36,8 +36,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 class MeasureFilterSql {
 
@@ -45,14 +47,19 @@ class MeasureFilterSql {
   private final Database database;
   private final MeasureFilter filter;
   private final MeasureFilterContext context;
+  // values are bound in order to get the same SQL for all the filters of the same shape
+  private final List<Object> parameters = Lists.newArrayList();
   private final String sql;
-  private final List<Date> dateParameters = Lists.newArrayList();
+  private final String countSql;
+  private boolean paginatedByDatabase = false;
 
   MeasureFilterSql(Database database, MeasureFilter filter, MeasureFilterContext context) {
     this.database = database;
     this.filter = filter;
     this.context = context;
-    this.sql = generateSql();
+    String fromClause = generateFromClause();
+    this.sql = generateSql(fromClause);
+    this.countSql = "SELECT COUNT(s.id)" + fromClause;
   }
 
   List<MeasureFilterRow> execute(Connection connection) throws SQLException {
@@ -60,8 +67,10 @@ class MeasureFilterSql {
     statement.setFetchSize(FETCH_SIZE);
     ResultSet rs = null;
     try {
-      for (int index = 0; index < dateParameters.size(); index++) {
-        statement.setDate(index + 1, dateParameters.get(index));
+      bindParameters(statement);
+      if (filter.isPaginated() && filter.sort().isSortedByDatabase() && !paginatedByDatabase) {
+        // rows are sorted but the dialect can not skip them, the driver only has to stop after the requested page
+        statement.setMaxRows(offset() + filter.getPageSize());
       }
       rs = statement.executeQuery();
       return process(rs);
@@ -72,21 +81,87 @@ class MeasureFilterSql {
     }
   }
 
+  int count(Connection connection) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(countSql);
+    ResultSet rs = null;
+    try {
+      bindParameters(statement);
+      rs = statement.executeQuery();
+      return rs.next() ? rs.getInt(1) : 0;
+
+    } finally {
+      DatabaseUtils.closeQuietly(rs);
+      DatabaseUtils.closeQuietly(statement);
+    }
+  }
+
   String sql() {
     return sql;
   }
 
-  private String generateSql() {
-    StringBuilder sb = new StringBuilder(1000);
+  String countSql() {
+    return countSql;
+  }
+
+  List<Object> parameters() {
+    return parameters;
+  }
+
+  private void bindParameters(PreparedStatement statement) throws SQLException {
+    for (int index = 0; index < parameters.size(); index++) {
+      Object parameter = parameters.get(index);
+      if (parameter instanceof Date) {
+        statement.setDate(index + 1, (Date) parameter);
+      } else if (parameter instanceof Long) {
+        statement.setLong(index + 1, (Long) parameter);
+      } else if (parameter instanceof Integer) {
+        statement.setInt(index + 1, (Integer) parameter);
+      } else if (parameter instanceof Double) {
+        statement.setDouble(index + 1, (Double) parameter);
+      } else {
+        statement.setString(index + 1, (String) parameter);
+      }
+    }
+  }
+
+  private int offset() {
+    return (filter.getPageIndex() - 1) * filter.getPageSize();
+  }
+
+  private String generateSql(String fromClause) {
+    StringBuilder sb = new StringBuilder(fromClause.length() + 200);
     sb.append("SELECT s.id, s.project_id, s.root_project_id, ");
     sb.append(filter.sort().column());
+    sb.append(fromClause);
+
+    if (filter.isPaginated() && filter.sort().isSortedByDatabase()) {
+      appendOrderBy(sb);
+      String paginatedSql = database.getDialect().getPaginatedSql(sb.toString(), offset(), filter.getPageSize());
+      if (paginatedSql != null) {
+        paginatedByDatabase = true;
+        return paginatedSql;
+      }
+    }
+    return sb.toString();
+  }
+
+  private void appendOrderBy(StringBuilder sb) {
+    String column = filter.sort().column();
+    // nulls are last whatever the direction, snapshot id guarantees the same order between pages
+    sb.append(" ORDER BY CASE WHEN ").append(column).append(" IS NULL THEN 1 ELSE 0 END, ");
+    sb.append(column).append(filter.sort().isAsc() ? " ASC" : " DESC");
+    sb.append(", s.id");
+  }
+
+  private String generateFromClause() {
+    StringBuilder sb = new StringBuilder(1000);
     sb.append(" FROM snapshots s INNER JOIN projects p ON s.project_id=p.id ");
 
     for (int index = 0; index < filter.getMeasureConditions().size(); index++) {
       MeasureFilterCondition condition = filter.getMeasureConditions().get(index);
       sb.append(" INNER JOIN project_measures pmcond").append(index);
       sb.append(" ON s.id=pmcond").append(index).append(".snapshot_id AND ");
-      condition.appendSqlCondition(sb, index);
+      condition.appendSqlCondition(sb, index, parameters);
     }
 
     if (filter.isOnFavourites()) {
@@ -94,8 +169,8 @@ class MeasureFilterSql {
     }
 
     if (filter.sort().isOnMeasure()) {
-      sb.append(" LEFT OUTER JOIN project_measures pmsort ON s.id=pmsort.snapshot_id AND pmsort.metric_id=");
-      sb.append(filter.sort().metric().getId());
+      sb.append(" LEFT OUTER JOIN project_measures pmsort ON s.id=pmsort.snapshot_id AND pmsort.metric_id=? ");
+      parameters.add(filter.sort().metric().getId());
       sb.append(" AND pmsort.rule_id IS NULL AND pmsort.rule_priority IS NULL AND pmsort.characteristic_id IS NULL AND pmsort.person_id IS NULL ");
     }
 
@@ -105,7 +180,7 @@ class MeasureFilterSql {
     for (int index = 0; index < filter.getMeasureConditions().size(); index++) {
       MeasureFilterCondition condition = filter.getMeasureConditions().get(index);
       sb.append(" AND ");
-      condition.appendSqlCondition(sb, index);
+      condition.appendSqlCondition(sb, index, parameters);
     }
 
     return sb.toString();
@@ -118,15 +193,15 @@ class MeasureFilterSql {
     }
     if (!filter.getResourceQualifiers().isEmpty()) {
       sb.append(" AND s.qualifier IN ");
-      appendInStatement(filter.getResourceQualifiers(), sb);
+      appendInStatement(filter.getResourceQualifiers(), sb, parameters);
     }
     if (!filter.getResourceScopes().isEmpty()) {
       sb.append(" AND s.scope IN ");
-      appendInStatement(filter.getResourceScopes(), sb);
+      appendInStatement(filter.getResourceScopes(), sb, parameters);
     }
     if (!filter.getResourceLanguages().isEmpty()) {
       sb.append(" AND p.language IN ");
-      appendInStatement(filter.getResourceLanguages(), sb);
+      appendInStatement(filter.getResourceLanguages(), sb, parameters);
     }
     appendDateConditions(sb);
     appendFavouritesCondition(sb);
@@ -138,19 +213,18 @@ class MeasureFilterSql {
   private void appendDateConditions(StringBuilder sb) {
     if (filter.getFromDate() != null) {
       sb.append(" AND s.created_at >= ? ");
-      dateParameters.add(new Date(filter.getFromDate().getTime()));
+      parameters.add(new Date(filter.getFromDate().getTime()));
     }
     if (filter.getToDate() != null) {
       sb.append(" AND s.created_at <= ? ");
-      dateParameters.add(new Date(filter.getToDate().getTime()));
+      parameters.add(new Date(filter.getToDate().getTime()));
     }
   }
 
   private void appendFavouritesCondition(StringBuilder sb) {
     if (filter.isOnFavourites()) {
-      sb.append(" AND props.prop_key='favourite' AND props.resource_id IS NOT NULL AND props.user_id=");
-      sb.append(context.getUserId());
-      sb.append(" ");
+      sb.append(" AND props.prop_key='favourite' AND props.resource_id IS NOT NULL AND props.user_id=? ");
+      parameters.add(context.getUserId());
     }
   }
 
@@ -158,41 +232,48 @@ class MeasureFilterSql {
     SnapshotDto baseSnapshot = context.getBaseSnapshot();
     if (baseSnapshot != null) {
       if (filter.isOnBaseResourceChildren()) {
-        sb.append(" AND s.parent_snapshot_id=").append(baseSnapshot.getId());
+        sb.append(" AND s.parent_snapshot_id=? ");
+        parameters.add(baseSnapshot.getId());
       } else {
         Long rootSnapshotId = (baseSnapshot.getRootId() != null ? baseSnapshot.getRootId() : baseSnapshot.getId());
-        sb.append(" AND s.root_snapshot_id=").append(rootSnapshotId);
-        sb.append(" AND s.path LIKE '").append(StringUtils.defaultString(baseSnapshot.getPath())).append(baseSnapshot.getId()).append(".%'");
+        sb.append(" AND s.root_snapshot_id=? AND s.path LIKE ? ");
+        parameters.add(rootSnapshotId);
+        parameters.add(StringUtils.defaultString(baseSnapshot.getPath()) + baseSnapshot.getId() + ".%");
       }
     }
   }
 
   private void appendResourceKeyCondition(StringBuilder sb) {
     if (StringUtils.isNotBlank(filter.getResourceKeyRegexp())) {
-      sb.append(" AND UPPER(p.kee) LIKE '");
+      sb.append(" AND UPPER(p.kee) LIKE ? ");
       // limitation : special characters _ and % are not escaped
-      String regexp = StringEscapeUtils.escapeSql(filter.getResourceKeyRegexp());
-      regexp = StringUtils.replaceChars(regexp, '*', '%');
+      String regexp = StringUtils.replaceChars(filter.getResourceKeyRegexp(), '*', '%');
       regexp = StringUtils.replaceChars(regexp, '?', '_');
-      sb.append(StringUtils.upperCase(regexp)).append("'");
+      parameters.add(StringUtils.upperCase(regexp));
     }
   }
 
   private void appendResourceNameCondition(StringBuilder sb) {
-    if (StringUtils.isNotBlank(filter.getResourceName())) {
-      sb.append(" AND s.project_id IN (SELECT rindex.resource_id FROM resource_index rindex WHERE rindex.kee like '");
-      sb.append(StringEscapeUtils.escapeSql(StringUtils.lowerCase(filter.getResourceName())));
-      sb.append("%'");
+    List<Long> matchingIds = context.getResourceIdsMatchingName();
+    if (StringUtils.isNotBlank(filter.getResourceName()) && matchingIds != null) {
+      if (matchingIds.isEmpty()) {
+        sb.append(" AND 1=0 ");
+      } else {
+        sb.append(" AND s.project_id IN ");
+        appendInStatement(matchingIds, sb, parameters);
+      }
+    } else if (StringUtils.isNotBlank(filter.getResourceName())) {
+      sb.append(" AND s.project_id IN (SELECT rindex.resource_id FROM resource_index rindex WHERE rindex.kee LIKE ? ");
+      parameters.add(StringUtils.lowerCase(filter.getResourceName()) + "%");
       if (!filter.getResourceQualifiers().isEmpty()) {
         sb.append(" AND rindex.qualifier IN ");
-        appendInStatement(filter.getResourceQualifiers(), sb);
+        appendInStatement(filter.getResourceQualifiers(), sb, parameters);
       }
       sb.append(") ");
     }
   }
 
   List<MeasureFilterRow> process(ResultSet rs) throws SQLException {
-    List<MeasureFilterRow> rows = Lists.newArrayList();
     RowProcessor rowProcessor;
     if (filter.sort().isOnNumericMeasure()) {
       rowProcessor = new NumericSortRowProcessor();
@@ -202,17 +283,39 @@ class MeasureFilterSql {
       rowProcessor = new TextSortRowProcessor();
     }
 
-    while (rs.next()) {
-      rows.add(rowProcessor.fetch(rs));
+    if (!filter.isPaginated()) {
+      List<MeasureFilterRow> rows = Lists.newArrayList();
+      while (rs.next()) {
+        rows.add(rowProcessor.fetch(rs));
+      }
+      return rowProcessor.sort(rows, filter.sort().isAsc());
+    }
+    if (filter.sort().isSortedByDatabase()) {
+      return fetchSortedPage(rs, rowProcessor);
     }
+    return rowProcessor.top(rs, offset(), filter.getPageSize(), filter.sort().isAsc());
+  }
 
-    return rowProcessor.sort(rows, filter.sort().isAsc());
+  private List<MeasureFilterRow> fetchSortedPage(ResultSet rs, RowProcessor rowProcessor) throws SQLException {
+    List<MeasureFilterRow> rows = Lists.newArrayList();
+    int skipped = paginatedByDatabase ? offset() : 0;
+    while (rs.next()) {
+      if (skipped < offset()) {
+        skipped++;
+      } else {
+        rows.add(rowProcessor.fetch(rs));
+      }
+    }
+    return rows;
   }
 
-  private static void appendInStatement(List<String> values, StringBuilder to) {
-    to.append(" ('");
-    to.append(StringUtils.join(values, "','"));
-    to.append("') ");
+  private static void appendInStatement(List<?> values, StringBuilder to, List<Object> parameters) {
+    to.append(" (");
+    for (int index = 0; index < values.size(); index++) {
+      to.append(index > 0 ? ",?" : "?");
+    }
+    to.append(") ");
+    parameters.addAll(values);
   }
 
   static abstract class RowProcessor {
@@ -223,8 +326,43 @@ class MeasureFilterSql {
     abstract MeasureFilterRow fetch(ResultSet rs) throws SQLException;
 
     final List<MeasureFilterRow> sort(List<MeasureFilterRow> rows, boolean ascending) {
+      return rowOrdering(ascending).immutableSortedCopy(rows);
+    }
+
+    /**
+     * Keeps only the rows of the requested page in a bounded heap, so that memory does not depend
+     * on the number of rows returned by the database.
+     */
+    final List<MeasureFilterRow> top(ResultSet rs, int offset, int limit, boolean ascending) throws SQLException {
+      Ordering<MeasureFilterRow> ordering = rowOrdering(ascending);
+      int capacity = offset + limit;
+
+      // the head of the heap is the greatest row kept so far
+      PriorityQueue<MeasureFilterRow> heap = new PriorityQueue<MeasureFilterRow>(Math.min(capacity, FETCH_SIZE) + 1, ordering.reverse());
+      while (rs.next()) {
+        MeasureFilterRow row = fetch(rs);
+        if (heap.size() < capacity) {
+          heap.add(row);
+        } else if (ordering.compare(row, heap.peek()) < 0) {
+          heap.poll();
+          heap.add(row);
+        }
+      }
+      List<MeasureFilterRow> rows = ordering.sortedCopy(heap);
+      if (rows.size() <= offset) {
+        return Collections.emptyList();
+      }
+      return rows.subList(offset, rows.size());
+    }
+
+    private Ordering<MeasureFilterRow> rowOrdering(boolean ascending) {
       Ordering<MeasureFilterRow> ordering = sortFieldOrdering(ascending).onResultOf(sortFieldFunction());
-      return ordering.immutableSortedCopy(rows);
+      // same tie-breaker than the SQL sort, so that pages do not overlap
+      return ordering.compound(new Comparator<MeasureFilterRow>() {
+        public int compare(MeasureFilterRow left, MeasureFilterRow right) {
+          return Longs.compare(left.getSnapshotId(), right.getSnapshotId());
+        }
+      });
     }
   }
 
@@ -19,6 +19,8 @@
  */
 package org.sonar.core.notification;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.configuration.Property;
 import org.sonar.api.database.model.User;
@@ -26,6 +28,8 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationManager;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -50,30 +54,94 @@ public class DefaultNotificationManager implements NotificationManager {
   }
 
   public NotificationQueueElement getFromQueue() {
+    List<NotificationQueueElement> notifications = readQueue(1);
+    if (notifications.isEmpty()) {
+      return null;
+    }
+    removeFromQueue(notifications);
+    return notifications.get(0);
+  }
+
+  /**
+   * Reads the oldest notifications of the queue. They are not removed, see {@link #removeFromQueue(Collection)}.
+   *
+   * @param maxElements maximum number of notifications to return
+   * @return the notifications, sorted by date of creation. Empty if the queue is empty.
+   * @since 3.5
+   */
+  public List<NotificationQueueElement> readQueue(int maxElements) {
     DatabaseSession session = sessionFactory.getSession();
     String hql = "FROM " + NotificationQueueElement.class.getSimpleName() + " ORDER BY createdAt ASC";
-    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(1).getResultList();
+    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(maxElements).getResultList();
     if (notifications.isEmpty()) {
       // UGLY - waiting for a clean way to manage JDBC connections without Hibernate - myBatis is coming soon
       // This code is highly coupled to org.sonar.server.notifications.NotificationService, which periodically executes
-      // several times the methods getFromQueue() and isEnabled(). The session is closed only at the end of the task -
+      // several times the methods readQueue() and getEnabledNotificationKeys(). The session is closed only at the end of the task -
       // when there are no more notifications to process - to ensure "better" performances.
       sessionFactory.clear();
-      return null;
+      return Collections.emptyList();
     }
-    NotificationQueueElement notification = notifications.get(0);
-    session.removeWithoutFlush(notification);
-    session.commit();
-    return notification;
+    return notifications;
+  }
 
+  /**
+   * Removes notifications read by {@link #readQueue(int)} in the same thread, in a single transaction.
+   *
+   * @since 3.5
+   */
+  public void removeFromQueue(Collection<NotificationQueueElement> notifications) {
+    if (!notifications.isEmpty()) {
+      DatabaseSession session = sessionFactory.getSession();
+      for (NotificationQueueElement notification : notifications) {
+        session.removeWithoutFlush(notification);
+      }
+      session.commit();
+    }
   }
 
   public boolean isEnabled(String username, String channelKey, String dispatcherKey) {
     DatabaseSession session = sessionFactory.getSession();
     User user = session.getSingleResult(User.class, "login", username);
-    String notificationKey = "notification." + dispatcherKey + "." + channelKey;
+    String notificationKey = getNotificationKey(dispatcherKey, channelKey);
     Property property = session.getSingleResult(Property.class, "userId", user.getId(), "key", notificationKey);
     return property != null && "true".equals(property.getValue());
   }
 
+  /**
+   * Same as {@link #isEnabled(String, String, String)} for all the users at once : the keys of the notifications enabled by
+   * users (see {@link #getNotificationKey(String, String)}), grouped by login.
+   *
+   * @since 3.5
+   */
+  public SetMultimap<String, String> getEnabledNotificationKeys() {
+    DatabaseSession session = sessionFactory.getSession();
+    String hql = "SELECT u.login, p FROM " + User.class.getSimpleName() + " u, " + Property.class.getSimpleName() + " p"
+      + " WHERE p.userId=u.id AND p.key LIKE 'notification.%'";
+    List<Object[]> rows = session.createQuery(hql).getResultList();
+    SetMultimap<String, String> result = HashMultimap.create();
+    for (Object[] row : rows) {
+      Property property = (Property) row[1];
+      if ("true".equals(property.getValue())) {
+        result.put((String) row[0], property.getKey());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Releases the database session of the current thread, for example at the end of a task that delivered notifications.
+   *
+   * @since 3.5
+   */
+  public void releaseSession() {
+    sessionFactory.clear();
+  }
+
+  /**
+   * @since 3.5
+   */
+  public static String getNotificationKey(String dispatcherKey, String channelKey) {
+    return "notification." + dispatcherKey + "." + channelKey;
+  }
+
 }
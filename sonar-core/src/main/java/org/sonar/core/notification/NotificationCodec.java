@@ -0,0 +1,154 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.notification;
+
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.utils.SonarException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+/**
+ * Binary encoding of the notifications stored in the queue.
+ *
+ * <p>Format: the two bytes {@link #MAGIC}, a version byte, the type then the number of fields followed by the pairs
+ * (name, value). Strings are encoded in UTF-8 and prefixed by their length (-1 for null).</p>
+ *
+ * <p>Subclasses of {@link Notification} are encoded with Java serialization, in order to not lose their state.
+ * Data starting with the header of Java serialization streams (rows queued by previous versions) are decoded
+ * with Java serialization too.</p>
+ *
+ * @since 3.5
+ */
+final class NotificationCodec {
+
+  private static final byte[] MAGIC = {'S', 'N'};
+  private static final byte VERSION = 1;
+  private static final byte[] JAVA_SERIALIZATION_MAGIC = {(byte) 0xAC, (byte) 0xED};
+  private static final String ENCODING = "UTF-8";
+  private static final int NULL_LENGTH = -1;
+
+  private NotificationCodec() {
+    // only static methods
+  }
+
+  static byte[] encode(Notification notification) {
+    try {
+      if (notification.getClass() != Notification.class) {
+        return serialize(notification);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.write(MAGIC);
+      output.writeByte(VERSION);
+      writeString(output, notification.getType());
+      Map<String, String> fields = notification.getFieldValues();
+      output.writeInt(fields.size());
+      for (Map.Entry<String, String> field : fields.entrySet()) {
+        writeString(output, field.getKey());
+        writeString(output, field.getValue());
+      }
+      output.flush();
+      return bytes.toByteArray();
+
+    } catch (IOException e) {
+      throw new SonarException("Fail to encode notification " + notification, e);
+    }
+  }
+
+  static Notification decode(byte[] data) {
+    try {
+      if (startsWith(data, JAVA_SERIALIZATION_MAGIC)) {
+        return deserialize(data);
+      }
+      if (!startsWith(data, MAGIC) || data.length < 3 || data[2] != VERSION) {
+        throw new SonarException("Unsupported format of notification");
+      }
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, 3, data.length - 3));
+      Notification notification = new Notification(readString(input));
+      int size = input.readInt();
+      for (int i = 0; i < size; i++) {
+        notification.setFieldValue(readString(input), readString(input));
+      }
+      return notification;
+
+    } catch (IOException e) {
+      throw new SonarException("Fail to decode notification", e);
+
+    } catch (ClassNotFoundException e) {
+      throw new SonarException("Fail to decode notification", e);
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String s) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_LENGTH);
+    } else {
+      byte[] bytes = s.getBytes(ENCODING);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, ENCODING);
+  }
+
+  private static boolean startsWith(byte[] data, byte[] prefix) {
+    if (data.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (data[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] serialize(Notification notification) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(notification);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  private static Notification deserialize(byte[] data) throws IOException, ClassNotFoundException {
+    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data));
+    try {
+      return (Notification) input.readObject();
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -19,14 +19,11 @@
  */
 package org.sonar.core.notification;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.sonar.api.notifications.Notification;
-import org.sonar.api.utils.SonarException;
 
 import javax.persistence.*;
-import java.io.*;
 import java.util.Date;
 
 @Entity
@@ -61,42 +58,14 @@ public class NotificationQueueElement {
   }
 
   public void setNotification(Notification notification) {
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-    try {
-      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-      objectOutputStream.writeObject(notification);
-      objectOutputStream.close();
-      this.data = byteArrayOutputStream.toByteArray();
-
-    } catch (IOException e) {
-      throw new SonarException(e);
-
-    } finally {
-      IOUtils.closeQuietly(byteArrayOutputStream);
-    }
+    this.data = NotificationCodec.encode(notification);
   }
 
   public Notification getNotification() {
     if (this.data == null) {
       return null;
     }
-    ByteArrayInputStream byteArrayInputStream = null;
-    try {
-      byteArrayInputStream = new ByteArrayInputStream(this.data);
-      ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-      Object result = objectInputStream.readObject();
-      objectInputStream.close();
-      return (Notification) result;
-
-    } catch (IOException e) {
-      throw new SonarException(e);
-
-    } catch (ClassNotFoundException e) {
-      throw new SonarException(e);
-      
-    } finally {
-      IOUtils.closeQuietly(byteArrayInputStream);
-    }
+    return NotificationCodec.decode(this.data);
   }
 
   @Override
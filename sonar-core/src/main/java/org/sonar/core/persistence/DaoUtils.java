@@ -22,6 +22,7 @@ package org.sonar.core.persistence;
 import com.google.common.collect.ImmutableList;
 import org.sonar.core.dashboard.ActiveDashboardDao;
 import org.sonar.core.dashboard.DashboardDao;
+import org.sonar.core.dependency.DependencyDao;
 import org.sonar.core.duplication.DuplicationDao;
 import org.sonar.core.measure.MeasureFilterDao;
 import org.sonar.core.properties.PropertiesDao;
@@ -49,6 +50,7 @@ public final class DaoUtils {
       ActiveDashboardDao.class,
       AuthorDao.class,
       DashboardDao.class,
+      DependencyDao.class,
       DuplicationDao.class,
       LoadedTemplateDao.class,
       MeasureFilterDao.class,
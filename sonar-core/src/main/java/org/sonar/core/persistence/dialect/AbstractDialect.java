@@ -70,4 +70,12 @@ abstract class AbstractDialect implements Dialect {
   public List<String> getConnectionInitStatements(String schema) {
     return Collections.emptyList();
   }
+
+  public String getPaginatedSql(String sql, int offset, int limit) {
+    return null;
+  }
+
+  static String appendLimitOffset(String sql, int offset, int limit) {
+    return sql + " LIMIT " + limit + " OFFSET " + offset;
+  }
 }
@@ -72,4 +72,16 @@ public interface Dialect {
    * @since 3.2
    */
   String getValidationQuery();
+
+  /**
+   * Restricts the rows returned by an ordered query to a page.
+   *
+   * @param sql an ordered SELECT query
+   * @param offset number of rows to skip
+   * @param limit maximum number of rows to return
+   * @return the paginated query, or null if the database does not support pagination in a simple way.
+   *         In such a case rows have to be skipped and limited programmatically.
+   * @since 3.5
+   */
+  String getPaginatedSql(String sql, int offset, int limit);
 }
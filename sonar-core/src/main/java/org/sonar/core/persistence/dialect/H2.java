@@ -41,4 +41,9 @@ public class H2 extends AbstractDialect {
     return StringUtils.startsWithIgnoreCase(jdbcConnectionURL, "jdbc:h2:");
   }
 
+  @Override
+  public String getPaginatedSql(String sql, int offset, int limit) {
+    return appendLimitOffset(sql, offset, limit);
+  }
+
 }
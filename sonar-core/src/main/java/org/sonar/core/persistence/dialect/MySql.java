@@ -44,6 +44,11 @@ public class MySql extends AbstractDialect {
     return StringUtils.startsWithIgnoreCase(jdbcConnectionURL, "jdbc:mysql:");
   }
 
+  @Override
+  public String getPaginatedSql(String sql, int offset, int limit) {
+    return appendLimitOffset(sql, offset, limit);
+  }
+
   public static class MySqlWithDecimalDialect extends MySQLDialect {
     public MySqlWithDecimalDialect() {
       super();
@@ -46,6 +46,14 @@ public class Oracle extends AbstractDialect {
     return StringUtils.startsWithIgnoreCase(jdbcConnectionURL, "jdbc:oracle:");
   }
 
+  /**
+   * ROWNUM is assigned before ORDER BY is applied, so the ordered query must be wrapped.
+   */
+  @Override
+  public String getPaginatedSql(String sql, int offset, int limit) {
+    return "SELECT * FROM (SELECT pq.*, ROWNUM pq_rownum FROM (" + sql + ") pq WHERE ROWNUM <= " + (offset + limit) + ") WHERE pq_rownum > " + offset;
+  }
+
   public static class Oracle10gWithDecimalDialect extends Oracle10gDialect {
     public Oracle10gWithDecimalDialect() {
       super();
@@ -45,6 +45,11 @@ public class PostgreSql extends AbstractDialect {
     return StringUtils.startsWithIgnoreCase(jdbcConnectionURL, "jdbc:postgresql:");
   }
 
+  @Override
+  public String getPaginatedSql(String sql, int offset, int limit) {
+    return appendLimitOffset(sql, offset, limit);
+  }
+
   public static class PostgreSQLWithDecimalDialect extends PostgreSQLDialect {
     public PostgreSQLWithDecimalDialect() {
       super();
@@ -64,6 +64,34 @@ public class PropertiesDao implements BatchComponent, ServerComponent {
     }
   }
 
+  /**
+   * @return the global property, or null if it does not exist
+   * @since 3.5
+   */
+  public PropertyDto selectGlobalProperty(String key) {
+    SqlSession session = mybatis.openSession();
+    PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
+    try {
+      return mapper.selectByKey(new PropertyDto().setKey(key));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * @return the properties with the given key which are set on resources, whatever the resource
+   * @since 3.5
+   */
+  public List<PropertyDto> selectResourcePropertiesByKey(String key) {
+    SqlSession session = mybatis.openSession();
+    PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
+    try {
+      return mapper.selectResourcePropertiesByKey(key);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public List<PropertyDto> selectProjectProperties(String resourceKey) {
     SqlSession session = mybatis.openSession();
     PropertiesMapper mapper = session.getMapper(PropertiesMapper.class);
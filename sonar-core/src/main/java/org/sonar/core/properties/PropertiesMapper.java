@@ -28,6 +28,7 @@ public interface PropertiesMapper {
   List<String> findUserIdsForFavouriteResource(Long resourceId);
   List<PropertyDto> selectGlobalProperties();
   List<PropertyDto> selectProjectProperties(String resourceKey);
+  List<PropertyDto> selectResourcePropertiesByKey(String key);
   List<PropertyDto> selectSetOfResourceProperties(@Param("rId") Long projectId, @Param("propKeys") List<String> propertyKeys);
   PropertyDto selectByKey(PropertyDto key);
   void update(PropertyDto property);
@@ -21,19 +21,42 @@ package org.sonar.core.purge;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.ibatis.session.SqlSession;
 
 import java.util.List;
 
 class PurgeCommands {
+  /**
+   * Rows are deleted by chunks of ids. The default size complies with the limits of Oracle (1000 elements in
+   * a IN list) and MS SQL Server (2100 parameters in a statement, including the characteristics or the three
+   * lists of snapshot ids of dependencies).
+   */
+  static final int MAX_IDS_PER_QUERY = 500;
   private static final int MAX_CHARACTERISTICS_PER_QUERY = 1000;
 
   private final SqlSession session;
   private final PurgeMapper purgeMapper;
+  private final int maxIdsPerQuery;
+  private final long pauseMillisBetweenTables;
 
   PurgeCommands(SqlSession session, PurgeMapper purgeMapper) {
+    this(session, purgeMapper, MAX_IDS_PER_QUERY);
+  }
+
+  PurgeCommands(SqlSession session, PurgeMapper purgeMapper, int maxIdsPerQuery) {
+    this(session, purgeMapper, maxIdsPerQuery, 0L);
+  }
+
+  /**
+   * @param pauseMillisBetweenTables time to wait after the commit of each table, so that the purge does not
+   *                                 monopolize the database while analyses are being saved. No pause if zero.
+   */
+  PurgeCommands(SqlSession session, PurgeMapper purgeMapper, int maxIdsPerQuery, long pauseMillisBetweenTables) {
     this.session = session;
     this.purgeMapper = purgeMapper;
+    this.maxIdsPerQuery = maxIdsPerQuery;
+    this.pauseMillisBetweenTables = pauseMillisBetweenTables;
   }
 
   @VisibleForTesting
@@ -49,77 +72,80 @@ class PurgeCommands {
     // Note : do not merge the delete statements into a single loop of resource ids. It's
     // voluntarily grouped by tables in order to benefit from JDBC batch mode.
     // Batch requests can only relate to the same PreparedStatement.
+    List<List<Long>> resourceIdPartitions = Lists.partition(resourceIds, maxIdsPerQuery);
 
-    for (Long resourceId : resourceIds) {
-      deleteSnapshots(PurgeSnapshotQuery.create().setResourceId(resourceId));
+    List<Long> snapshotIds = Lists.newArrayList();
+    for (List<Long> ids : resourceIdPartitions) {
+      snapshotIds.addAll(purgeMapper.selectSnapshotIdsByResource(ids));
     }
+    deleteSnapshots(snapshotIds);
 
     // possible missing optimization: filter requests according to resource scope
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceLinks(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceLinks(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceProperties(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceProperties(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceIndex(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceIndex(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceGroupRoles(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceGroupRoles(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceUserRoles(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceUserRoles(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceManualMeasures(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceManualMeasures(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceReviewComments(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceReviewComments(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceActionPlansReviews(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceActionPlansReviews(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceReviews(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceReviews(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceActionPlans(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceActionPlans(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResourceEvents(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResourceEvents(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteResource(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteResource(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long resourceId : resourceIds) {
-      purgeMapper.deleteAuthors(resourceId);
+    for (List<Long> ids : resourceIdPartitions) {
+      purgeMapper.deleteAuthors(ids);
     }
-    session.commit();
+    commit();
   }
 
   void deleteSnapshots(final PurgeSnapshotQuery query) {
@@ -127,46 +153,47 @@ class PurgeCommands {
   }
 
   private void deleteSnapshots(final List<Long> snapshotIds) {
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotDependencies(snapshotId);
-    }
-    session.commit();
+    List<List<Long>> snapshotIdPartitions = Lists.partition(snapshotIds, maxIdsPerQuery);
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotDuplications(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotDependencies(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotEvents(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotDuplications(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotMeasureData(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotEvents(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotMeasures(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotMeasureData(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotSource(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotMeasures(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotViolations(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotSource(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshot(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotViolations(ids);
     }
+    commit();
 
-    session.commit();
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshot(ids);
+    }
+    commit();
   }
 
   void purgeSnapshots(final PurgeSnapshotQuery query) {
@@ -175,49 +202,63 @@ class PurgeCommands {
 
   private void purgeSnapshots(final List<Long> snapshotIds) {
     // note that events are not deleted
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotDependencies(snapshotId);
+    List<List<Long>> snapshotIdPartitions = Lists.partition(snapshotIds, maxIdsPerQuery);
+
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotDependencies(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotDuplications(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotDuplications(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotSource(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotSource(ids);
     }
-    session.commit();
+    commit();
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.deleteSnapshotViolations(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.deleteSnapshotViolations(ids);
     }
-    session.commit();
+    commit();
 
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
     if (!metricIdsWithoutHistoricalData.isEmpty()) {
-      for (Long snapshotId : snapshotIds) {
-        purgeMapper.deleteSnapshotWastedMeasures(snapshotId, metricIdsWithoutHistoricalData);
+      for (List<Long> ids : snapshotIdPartitions) {
+        purgeMapper.deleteSnapshotWastedMeasures(ids, metricIdsWithoutHistoricalData);
       }
-      session.commit();
+      commit();
     }
 
     List<Long> characteristicIds = purgeMapper.selectCharacteristicIdsToPurge();
     if (!characteristicIds.isEmpty()) {
-      for (Long snapshotId : snapshotIds) {
+      for (List<Long> ids : snapshotIdPartitions) {
         // SONAR-3641 We cannot process all characteristics at once
-        for (List<Long> ids : Iterables.partition(characteristicIds, MAX_CHARACTERISTICS_PER_QUERY)) {
-          purgeMapper.deleteSnapshotMeasuresOnCharacteristics(snapshotId, ids);
+        for (List<Long> characteristicIdPartition : Iterables.partition(characteristicIds, MAX_CHARACTERISTICS_PER_QUERY)) {
+          purgeMapper.deleteSnapshotMeasuresOnCharacteristics(ids, characteristicIdPartition);
         }
       }
-      session.commit();
+      commit();
     }
 
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.updatePurgeStatusToOne(snapshotId);
+    for (List<Long> ids : snapshotIdPartitions) {
+      purgeMapper.updatePurgeStatusToOne(ids);
     }
+    commit();
+  }
+
+  private void commit() {
     session.commit();
+    if (pauseMillisBetweenTables > 0L) {
+      try {
+        Thread.sleep(pauseMillisBetweenTables);
+      } catch (InterruptedException e) {
+        // stop throttling, the remaining tables are purged without pause
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
 }
@@ -20,6 +20,7 @@
 package org.sonar.core.purge;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.ibatis.session.ResultContext;
@@ -27,44 +28,104 @@ import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.Semaphores;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.persistence.SemaphoreDao;
 import org.sonar.core.resource.ResourceDao;
 import org.sonar.core.resource.ResourceDto;
 
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @since 2.14
  */
 public class PurgeDao {
+
+  /**
+   * Default number of snapshots purged concurrently, each one in its own session.
+   * @since 3.5
+   */
+  public static final int DEFAULT_MAX_THREADS = 2;
+
+  /**
+   * A purge lock older than this duration is considered as abandoned, for example when the process was killed.
+   */
+  private static final int LOCK_MAX_DURATION_IN_SECONDS = 6 * 60 * 60;
+
   private final MyBatis mybatis;
   private final ResourceDao resourceDao;
+  private final SemaphoreDao semaphoreDao;
   private static final Logger LOG = LoggerFactory.getLogger(PurgeDao.class);
 
-  public PurgeDao(MyBatis mybatis, ResourceDao resourceDao) {
+  public PurgeDao(MyBatis mybatis, ResourceDao resourceDao, SemaphoreDao semaphoreDao) {
     this.mybatis = mybatis;
     this.resourceDao = resourceDao;
+    this.semaphoreDao = semaphoreDao;
   }
 
   public PurgeDao purge(long rootResourceId, String[] scopesWithoutHistoricalData) {
+    return purge(rootResourceId, scopesWithoutHistoricalData, DEFAULT_MAX_THREADS, 0L);
+  }
+
+  /**
+   * Purges the tree of projects. Snapshots of a project are purged concurrently, but the purges of a given root
+   * project are serialized : the call does nothing if another purge of the same tree is already running.
+   *
+   * @param maxThreads               maximum number of snapshots purged concurrently. Snapshots are purged in the current thread if 1.
+   * @param pauseMillisBetweenTables pause after the deletion of rows of each table, in order to not slow down the
+   *                                 analyses running on the same database. No pause if zero.
+   * @since 3.5
+   */
+  public PurgeDao purge(long rootResourceId, String[] scopesWithoutHistoricalData, int maxThreads, long pauseMillisBetweenTables) {
+    Preconditions.checkArgument(maxThreads > 0, "Number of threads must be strictly positive: " + maxThreads);
+    Preconditions.checkArgument(pauseMillisBetweenTables >= 0L, "Pause must be positive: " + pauseMillisBetweenTables);
+
+    String lockName = "purge-" + rootResourceId;
+    Semaphores.Semaphore lock = semaphoreDao.acquire(lockName, LOCK_MAX_DURATION_IN_SECONDS);
+    if (!lock.isLocked()) {
+      LOG.warn("Purge is skipped because another purge of the same project is already running [id=" + rootResourceId + "]");
+      return this;
+    }
+    try {
+      doPurge(rootResourceId, scopesWithoutHistoricalData, maxThreads, pauseMillisBetweenTables);
+    } finally {
+      semaphoreDao.release(lockName);
+    }
+    return this;
+  }
+
+  private void doPurge(long rootResourceId, String[] scopesWithoutHistoricalData, int maxThreads, long pauseMillisBetweenTables) {
     SqlSession session = mybatis.openBatchSession();
     PurgeMapper purgeMapper = session.getMapper(PurgeMapper.class);
-    PurgeCommands commands = new PurgeCommands(session, purgeMapper);
+    PurgeCommands commands = new PurgeCommands(session, purgeMapper, PurgeCommands.MAX_IDS_PER_QUERY, pauseMillisBetweenTables);
+    ExecutorService executorService = maxThreads > 1 ? Executors.newFixedThreadPool(maxThreads) : null;
     try {
       List<ResourceDto> projects = getProjects(rootResourceId, session);
       for (ResourceDto project : projects) {
         LOG.info("-> Clean " + project.getLongName() + " [id=" + project.getId() + "]");
         deleteAbortedBuilds(project, commands);
-        purge(project, scopesWithoutHistoricalData, commands);
+        purge(project, scopesWithoutHistoricalData, commands, executorService, pauseMillisBetweenTables);
       }
       for (ResourceDto project : projects) {
         disableOrphanResources(project, session, purgeMapper);
       }
     } finally {
+      if (executorService != null) {
+        executorService.shutdown();
+      }
       MyBatis.closeQuietly(session);
     }
-    return this;
   }
 
   private void deleteAbortedBuilds(ResourceDto project, PurgeCommands commands) {
@@ -86,25 +147,91 @@ public class PurgeDao {
     return !commands.selectSnapshotIds(query).isEmpty();
   }
 
-  private void purge(ResourceDto project, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands) {
+  private void purge(ResourceDto project, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands,
+                     @Nullable ExecutorService executorService, long pauseMillisBetweenTables) {
     List<Long> projectSnapshotIds = purgeCommands.selectSnapshotIds(
       PurgeSnapshotQuery.create().setResourceId(project.getId()).setIslast(false).setNotPurged(true)
     );
-    for (final Long projectSnapshotId : projectSnapshotIds) {
-      LOG.info("<- Clean snapshot " + projectSnapshotId);
-      if (!ArrayUtils.isEmpty(scopesWithoutHistoricalData)) {
-        PurgeSnapshotQuery query = PurgeSnapshotQuery.create()
-          .setIslast(false)
-          .setScopes(scopesWithoutHistoricalData)
-          .setRootSnapshotId(projectSnapshotId);
-        purgeCommands.deleteSnapshots(query);
+    if (projectSnapshotIds.isEmpty()) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    if (executorService == null || projectSnapshotIds.size() == 1) {
+      for (Long projectSnapshotId : projectSnapshotIds) {
+        purgeSnapshot(projectSnapshotId, scopesWithoutHistoricalData, purgeCommands);
       }
+    } else {
+      // the trees of snapshots of different analysis are independent, so they can be purged concurrently
+      purgeSnapshotsInParallel(projectSnapshotIds, scopesWithoutHistoricalData, executorService, pauseMillisBetweenTables);
+    }
+    long duration = Math.max(1L, System.currentTimeMillis() - start);
+    LOG.info("<- " + projectSnapshotIds.size() + " snapshots cleaned in " + duration + " ms ("
+      + (projectSnapshotIds.size() * 1000L / duration) + " snapshots/s)");
+  }
 
-      PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(projectSnapshotId).setNotPurged(true);
-      purgeCommands.purgeSnapshots(query);
+  private void purgeSnapshotsInParallel(List<Long> projectSnapshotIds, String[] scopesWithoutHistoricalData,
+                                        ExecutorService executorService, long pauseMillisBetweenTables) {
+    AtomicInteger progress = new AtomicInteger();
+    List<Future<Void>> futures = Lists.newArrayList();
+    for (Long projectSnapshotId : projectSnapshotIds) {
+      futures.add(executorService.submit(new PurgeSnapshotTask(projectSnapshotId, scopesWithoutHistoricalData,
+        pauseMillisBetweenTables, progress, projectSnapshotIds.size())));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new SonarException("Interrupted while purging snapshots", e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Fail to purge snapshots", e.getCause());
+    }
+  }
 
-      // must be executed at the end for reentrance
-      purgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true));
+  private void purgeSnapshot(Long projectSnapshotId, String[] scopesWithoutHistoricalData, PurgeCommands purgeCommands) {
+    LOG.info("<- Clean snapshot " + projectSnapshotId);
+    if (!ArrayUtils.isEmpty(scopesWithoutHistoricalData)) {
+      PurgeSnapshotQuery query = PurgeSnapshotQuery.create()
+        .setIslast(false)
+        .setScopes(scopesWithoutHistoricalData)
+        .setRootSnapshotId(projectSnapshotId);
+      purgeCommands.deleteSnapshots(query);
+    }
+
+    PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(projectSnapshotId).setNotPurged(true);
+    purgeCommands.purgeSnapshots(query);
+
+    // must be executed at the end for reentrance
+    purgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true));
+  }
+
+  private final class PurgeSnapshotTask implements Callable<Void> {
+    private final Long projectSnapshotId;
+    private final String[] scopesWithoutHistoricalData;
+    private final long pauseMillisBetweenTables;
+    private final AtomicInteger progress;
+    private final int total;
+
+    private PurgeSnapshotTask(Long projectSnapshotId, String[] scopesWithoutHistoricalData, long pauseMillisBetweenTables,
+                              AtomicInteger progress, int total) {
+      this.projectSnapshotId = projectSnapshotId;
+      this.scopesWithoutHistoricalData = scopesWithoutHistoricalData;
+      this.pauseMillisBetweenTables = pauseMillisBetweenTables;
+      this.progress = progress;
+      this.total = total;
+    }
+
+    public Void call() {
+      SqlSession session = mybatis.openBatchSession();
+      try {
+        PurgeCommands commands = new PurgeCommands(session, session.getMapper(PurgeMapper.class), PurgeCommands.MAX_IDS_PER_QUERY,
+          pauseMillisBetweenTables);
+        purgeSnapshot(projectSnapshotId, scopesWithoutHistoricalData, commands);
+        LOG.debug("Snapshot " + projectSnapshotId + " cleaned (" + progress.incrementAndGet() + "/" + total + ")");
+        return null;
+      } finally {
+        MyBatis.closeQuietly(session);
+      }
     }
   }
 
@@ -158,7 +285,7 @@ public class PurgeDao {
 
   @VisibleForTesting
   void disableResource(long resourceId, PurgeMapper mapper) {
-    mapper.deleteResourceIndex(resourceId);
+    mapper.deleteResourceIndex(Arrays.asList(resourceId));
     mapper.setSnapshotIsLastToFalse(resourceId);
     mapper.disableResource(resourceId);
     mapper.closeResourceReviews(resourceId);
@@ -29,59 +29,61 @@ public interface PurgeMapper {
 
   List<Long> selectProjectIdsByRootId(long rootResourceId);
 
-  void deleteSnapshot(long snapshotId);
+  List<Long> selectSnapshotIdsByResource(@Param("ids") List<Long> resourceIds);
 
-  void deleteSnapshotDependencies(long snapshotId);
+  void deleteSnapshot(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotDuplications(long snapshotId);
+  void deleteSnapshotDependencies(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotEvents(long snapshotId);
+  void deleteSnapshotDuplications(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotMeasures(long snapshotId);
+  void deleteSnapshotEvents(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotMeasureData(long snapshotId);
+  void deleteSnapshotMeasures(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotSource(long snapshotId);
+  void deleteSnapshotMeasureData(@Param("ids") List<Long> ids);
 
-  void deleteSnapshotViolations(long snapshotId);
+  void deleteSnapshotSource(@Param("ids") List<Long> ids);
+
+  void deleteSnapshotViolations(@Param("ids") List<Long> ids);
 
   List<Long> selectMetricIdsWithoutHistoricalData();
 
   List<Long> selectCharacteristicIdsToPurge();
 
-  void deleteSnapshotWastedMeasures(@Param("sid") long snapshotId, @Param("mids") List<Long> metricIds);
+  void deleteSnapshotWastedMeasures(@Param("ids") List<Long> snapshotIds, @Param("mids") List<Long> metricIds);
 
-  void deleteSnapshotMeasuresOnCharacteristics(@Param("sid") long snapshotId, @Param("cids") List<Long> characteristicIds);
+  void deleteSnapshotMeasuresOnCharacteristics(@Param("ids") List<Long> snapshotIds, @Param("cids") List<Long> characteristicIds);
 
-  void updatePurgeStatusToOne(long snapshotId);
+  void updatePurgeStatusToOne(@Param("ids") List<Long> ids);
 
   void disableResource(long resourceId);
 
-  void deleteResourceIndex(long resourceId);
+  void deleteResourceIndex(@Param("ids") List<Long> ids);
 
   void deleteEvent(long eventId);
 
   void setSnapshotIsLastToFalse(long resourceId);
 
-  void deleteResourceLinks(long resourceId);
+  void deleteResourceLinks(@Param("ids") List<Long> ids);
 
-  void deleteResourceProperties(long resourceId);
+  void deleteResourceProperties(@Param("ids") List<Long> ids);
 
-  void deleteResource(long resourceId);
+  void deleteResource(@Param("ids") List<Long> ids);
 
-  void deleteResourceGroupRoles(long resourceId);
+  void deleteResourceGroupRoles(@Param("ids") List<Long> ids);
 
-  void deleteResourceUserRoles(long resourceId);
+  void deleteResourceUserRoles(@Param("ids") List<Long> ids);
 
-  void deleteResourceManualMeasures(long resourceId);
+  void deleteResourceManualMeasures(@Param("ids") List<Long> ids);
 
-  void deleteResourceReviews(long resourceId);
+  void deleteResourceReviews(@Param("ids") List<Long> ids);
 
-  void deleteResourceEvents(long resourceId);
+  void deleteResourceEvents(@Param("ids") List<Long> ids);
 
-  void deleteResourceActionPlans(long resourceId);
+  void deleteResourceActionPlans(@Param("ids") List<Long> ids);
 
-  void deleteAuthors(long developerId);
+  void deleteAuthors(@Param("ids") List<Long> ids);
 
   void closeResourceReviews(long resourceId);
 
@@ -91,7 +93,7 @@ public interface PurgeMapper {
 
   List<Long> selectResourceIdsByRootId(long rootProjectId);
 
-  void deleteResourceReviewComments(long resourceId);
+  void deleteResourceReviewComments(@Param("ids") List<Long> ids);
 
-  void deleteResourceActionPlansReviews(long resourceId);
+  void deleteResourceActionPlansReviews(@Param("ids") List<Long> ids);
 }
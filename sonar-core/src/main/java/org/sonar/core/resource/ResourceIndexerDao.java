@@ -19,18 +19,36 @@
  */
 package org.sonar.core.resource;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.persistence.MyBatis;
 
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class ResourceIndexerDao {
 
   public static final int MINIMUM_KEY_SIZE = 3;
 
+  // Oracle does not accept more than 1000 values in an IN clause
+  private static final int MAX_PROJECTS_PER_QUERY = 1000;
+
   // The scopes and qualifiers that are not in the following constants are not indexed at all.
   // Directories and packages are explicitly excluded.
   private static final String[] RENAMABLE_QUALIFIERS = {Qualifiers.PROJECT, Qualifiers.MODULE, Qualifiers.VIEW, Qualifiers.SUBVIEW};
@@ -81,6 +99,49 @@ public class ResourceIndexerDao {
     }
   }
 
+  /**
+   * Same as {@link #indexProjects()}, except that root projects are indexed concurrently, each one in its own
+   * session. It is used to rebuild the whole index, for example when upgrading the server.
+   *
+   * @param threads maximum number of projects indexed concurrently. Projects are indexed in the current thread if 1.
+   * @since 3.5
+   */
+  public ResourceIndexerDao indexProjects(int threads) {
+    if (threads <= 1) {
+      return indexProjects();
+    }
+    List<Integer> rootProjectIds;
+    SqlSession session = mybatis.openSession();
+    try {
+      rootProjectIds = session.selectList("org.sonar.core.resource.ResourceIndexerMapper.selectRootProjectIds", ResourceIndexerQuery.create());
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ResourceIndexerDao>> futures = Lists.newArrayList();
+      for (final Integer rootProjectId : rootProjectIds) {
+        futures.add(executorService.submit(new Callable<ResourceIndexerDao>() {
+          public ResourceIndexerDao call() {
+            return indexProject(rootProjectId);
+          }
+        }));
+      }
+      for (Future<ResourceIndexerDao> future : futures) {
+        future.get();
+      }
+      return this;
+
+    } catch (InterruptedException e) {
+      throw new SonarException("Interrupted while indexing projects", e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Fail to index projects", e.getCause());
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   private void doIndexProject(int rootProjectId, SqlSession session, final ResourceIndexerMapper mapper) {
     // non indexed resources
     ResourceIndexerQuery query = ResourceIndexerQuery.create()
@@ -97,38 +158,111 @@ public class ResourceIndexerDao {
     });
 
     // some resources can be renamed, so index must be regenerated
-    // -> delete existing rows and create them again
+    // -> compare existing rows with the expected ones and write only the differences
     query = ResourceIndexerQuery.create()
         .setNonIndexedOnly(false)
         .setQualifiers(RENAMABLE_QUALIFIERS)
         .setScopes(RENAMABLE_SCOPES)
         .setRootProjectId(rootProjectId);
 
-    session.select("org.sonar.core.resource.ResourceIndexerMapper.selectResources", query, new ResultHandler() {
-      public void handleResult(ResultContext context) {
-        ResourceDto resource = (ResourceDto) context.getResultObject();
+    List<ResourceDto> resources = session.selectList("org.sonar.core.resource.ResourceIndexerMapper.selectResources", query);
+    List<ResourceIndexDto> existingRows = session.selectList("org.sonar.core.resource.ResourceIndexerMapper.selectIndexes", query);
+    updateIndexes(resources, existingRows, mapper);
+  }
 
-        mapper.deleteByResourceId(resource.getId());
-        doIndex(resource, mapper);
+  /**
+   * Rows are identified by (resource_id, position). Rows that do not exist or that changed are inserted,
+   * rows that are obsolete or that changed are deleted.
+   */
+  private void updateIndexes(List<ResourceDto> resources, List<ResourceIndexDto> existingRows, ResourceIndexerMapper mapper) {
+    Map<Long, Map<Integer, ResourceIndexDto>> existingRowsByResource = Maps.newHashMap();
+    for (ResourceIndexDto row : existingRows) {
+      Map<Integer, ResourceIndexDto> rowsByPosition = existingRowsByResource.get(row.getResourceId());
+      if (rowsByPosition == null) {
+        rowsByPosition = Maps.newHashMap();
+        existingRowsByResource.put(row.getResourceId(), rowsByPosition);
       }
-    });
+      rowsByPosition.put(row.getPosition(), row);
+    }
+
+    List<ResourceIndexDto> rowsToDelete = Lists.newArrayList();
+    List<ResourceIndexDto> rowsToInsert = Lists.newArrayList();
+    for (ResourceDto resource : resources) {
+      Map<Integer, ResourceIndexDto> rowsByPosition = existingRowsByResource.remove(resource.getId());
+      for (ResourceIndexDto row : createRows(resource.getId(), resource.getName(), resource.getQualifier(), resource.getRootId())) {
+        ResourceIndexDto existingRow = rowsByPosition != null ? rowsByPosition.remove(row.getPosition()) : null;
+        if (existingRow == null || !isSameRow(existingRow, row)) {
+          if (existingRow != null) {
+            rowsToDelete.add(existingRow);
+          }
+          rowsToInsert.add(row);
+        }
+      }
+      if (rowsByPosition != null) {
+        rowsToDelete.addAll(rowsByPosition.values());
+      }
+    }
+
+    // the JDBC batch is flushed each time the statement changes, so deletions and insertions are not mixed
+    for (ResourceIndexDto row : rowsToDelete) {
+      mapper.deleteByResourceIdAndPosition(row);
+    }
+    for (ResourceIndexDto row : rowsToInsert) {
+      mapper.insert(row);
+    }
   }
 
+  private static boolean isSameRow(ResourceIndexDto existingRow, ResourceIndexDto row) {
+    return StringUtils.equals(existingRow.getKey(), row.getKey())
+      && existingRow.getNameSize() == row.getNameSize()
+      && existingRow.getRootProjectId() == row.getRootProjectId()
+      && StringUtils.equals(existingRow.getQualifier(), row.getQualifier());
+  }
 
   void doIndex(ResourceDto resource, ResourceIndexerMapper mapper) {
-    String key = nameToKey(resource.getName());
-    if (key.length() >= MINIMUM_KEY_SIZE) {
-      ResourceIndexDto dto = new ResourceIndexDto()
-          .setResourceId(resource.getId())
-          .setQualifier(resource.getQualifier())
-          .setRootProjectId(resource.getRootId())
-          .setNameSize(resource.getName().length());
-
-      for (int position = 0; position <= key.length() - MINIMUM_KEY_SIZE; position++) {
-        dto.setPosition(position);
-        dto.setKey(StringUtils.substring(key, position));
-        mapper.insert(dto);
+    for (ResourceIndexDto row : createRows(resource.getId(), resource.getName(), resource.getQualifier(), resource.getRootId())) {
+      mapper.insert(row);
+    }
+  }
+
+  /**
+   * One row per suffix of the name, the suffixes shorter than {@link #MINIMUM_KEY_SIZE} being excluded.
+   */
+  private static List<ResourceIndexDto> createRows(long resourceId, String name, String qualifier, long rootId) {
+    String key = nameToKey(name);
+    List<ResourceIndexDto> rows = Lists.newArrayList();
+    for (int position = 0; position <= key.length() - MINIMUM_KEY_SIZE; position++) {
+      rows.add(new ResourceIndexDto()
+          .setResourceId(resourceId)
+          .setQualifier(qualifier)
+          .setRootProjectId(rootId)
+          .setNameSize(name.length())
+          .setPosition(position)
+          .setKey(StringUtils.substring(key, position)));
+    }
+    return rows;
+  }
+
+  /**
+   * Rows at position 0, which contain the whole names, of all the indexed resources or only of the
+   * given root projects.
+   *
+   * @since 3.5
+   */
+  public List<ResourceIndexDto> selectMasterIndexes(@Nullable Collection<Long> rootProjectIds) {
+    SqlSession session = mybatis.openSession();
+    try {
+      ResourceIndexerMapper mapper = session.getMapper(ResourceIndexerMapper.class);
+      if (rootProjectIds == null) {
+        return mapper.selectMasterIndexes(null);
       }
+      List<ResourceIndexDto> rows = Lists.newArrayList();
+      for (List<Long> partition : Iterables.partition(rootProjectIds, MAX_PROJECTS_PER_QUERY)) {
+        rows.addAll(mapper.selectMasterIndexes(partition));
+      }
+      return rows;
+    } finally {
+      MyBatis.closeQuietly(session);
     }
   }
 
@@ -170,16 +304,8 @@ public class ResourceIndexerDao {
       indexed = true;
       boolean toBeIndexed = sanitizeIndex(id, key, mapper);
       if (toBeIndexed) {
-        ResourceIndexDto dto = new ResourceIndexDto()
-            .setResourceId(id)
-            .setQualifier(qualifier)
-            .setRootProjectId(rootId)
-            .setNameSize(name.length());
-
-        for (int position = 0; position <= key.length() - MINIMUM_KEY_SIZE; position++) {
-          dto.setPosition(position);
-          dto.setKey(StringUtils.substring(key, position));
-          mapper.insert(dto);
+        for (ResourceIndexDto row : createRows(id, name, qualifier, rootId)) {
+          mapper.insert(row);
         }
         session.commit();
       }
@@ -19,13 +19,23 @@
  */
 package org.sonar.core.resource;
 
+import org.apache.ibatis.annotations.Param;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+
 public interface ResourceIndexerMapper {
 
   ResourceIndexDto selectMasterIndexByResourceId(long resourceId);
 
+  List<ResourceIndexDto> selectMasterIndexes(@Nullable @Param("rootProjectIds") List<Long> rootProjectIds);
+
   ResourceDto selectResourceToIndex(long resourceId);
 
   void deleteByResourceId(long resourceId);
 
+  void deleteByResourceIdAndPosition(ResourceIndexDto dto);
+
   void insert(ResourceIndexDto dto);
 }
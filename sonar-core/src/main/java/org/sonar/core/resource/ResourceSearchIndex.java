@@ -0,0 +1,364 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.resource;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the names of resources, loaded from the table RESOURCE_INDEX. Names are searched on
+ * their suffixes, like the SQL condition "kee like 'xxx%'" on RESOURCE_INDEX, but without requesting the database.
+ *
+ * <p>The index is loaded at startup and when it is invalidated. At the end of each analysis, the batch sets the
+ * property {@link CoreProperties#ANALYSIS_GENERATION} on the root project, then globally. When the global
+ * generation changes, the projects whose generation differs from the loaded one are reloaded. The generation is
+ * checked at most once every {@link #REFRESH_PERIOD_IN_MS} milliseconds.</p>
+ *
+ * @since 3.5
+ */
+public class ResourceSearchIndex implements ServerComponent {
+
+  static final long REFRESH_PERIOD_IN_MS = 10000L;
+  private static final Logger LOG = LoggerFactory.getLogger(ResourceSearchIndex.class);
+
+  private final ResourceIndexerDao indexerDao;
+  private final PropertiesDao propertiesDao;
+  private final long refreshPeriodInMs;
+
+  private volatile SuffixArray suffixArray = new SuffixArray(Collections.<ResourceIndexDto>emptyList());
+  private volatile long lastRefresh = 0L;
+  private String generation = null;
+  private Map<Long, String> projectGenerations = Collections.emptyMap();
+  private boolean invalidated = true;
+
+  public ResourceSearchIndex(ResourceIndexerDao indexerDao, PropertiesDao propertiesDao) {
+    this(indexerDao, propertiesDao, REFRESH_PERIOD_IN_MS);
+  }
+
+  @VisibleForTesting
+  ResourceSearchIndex(ResourceIndexerDao indexerDao, PropertiesDao propertiesDao, long refreshPeriodInMs) {
+    this.indexerDao = indexerDao;
+    this.propertiesDao = propertiesDao;
+    this.refreshPeriodInMs = refreshPeriodInMs;
+  }
+
+  public void start() {
+    refresh();
+  }
+
+  /**
+   * Resources whose lowercased name contains the text, sorted by name size.
+   *
+   * @param qualifiers accepted qualifiers, or null to accept all resources
+   */
+  public List<ResourceIndexDto> search(String text, @Nullable Collection<String> qualifiers) {
+    refreshIfNeeded();
+    return suffixArray.search(StringUtils.lowerCase(text), qualifiers, false);
+  }
+
+  /**
+   * Resources whose lowercased name starts with the text, sorted by name size.
+   *
+   * @param qualifiers accepted qualifiers, or null to accept all resources
+   */
+  public List<ResourceIndexDto> searchByPrefix(String text, @Nullable Collection<String> qualifiers) {
+    refreshIfNeeded();
+    return suffixArray.search(StringUtils.lowerCase(text), qualifiers, true);
+  }
+
+  /**
+   * The whole index is reloaded on next search, for example when projects have been reindexed by the server.
+   */
+  public synchronized void invalidate() {
+    invalidated = true;
+    lastRefresh = 0L;
+  }
+
+  public int size() {
+    return suffixArray.entries.length;
+  }
+
+  private void refreshIfNeeded() {
+    if (System.currentTimeMillis() - lastRefresh >= refreshPeriodInMs) {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        // the previous index is used until the next refresh
+        LOG.error("Fail to refresh the index of resources", e);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized void refresh() {
+    long now = System.currentTimeMillis();
+    if (!invalidated && now - lastRefresh < refreshPeriodInMs) {
+      // already refreshed by another thread
+      return;
+    }
+    String currentGeneration = currentGeneration();
+    if (invalidated) {
+      // generations are loaded before the names, so that a project indexed in the meantime is reloaded later
+      projectGenerations = currentProjectGenerations();
+      suffixArray = new SuffixArray(indexerDao.selectMasterIndexes(null));
+      LOG.debug("Index of resources loaded: {} resources", suffixArray.entries.length);
+
+    } else if (currentGeneration != null && !Objects.equal(generation, currentGeneration)) {
+      // concurrent analysis can end in any order, so the generation of each project is compared to the loaded one
+      Map<Long, String> currentProjectGenerations = currentProjectGenerations();
+      Set<Long> rootProjectIds = Sets.newHashSet();
+      for (Map.Entry<Long, String> entry : currentProjectGenerations.entrySet()) {
+        if (!entry.getValue().equals(projectGenerations.get(entry.getKey()))) {
+          rootProjectIds.add(entry.getKey());
+        }
+      }
+      // deleted projects
+      rootProjectIds.addAll(Sets.difference(projectGenerations.keySet(), currentProjectGenerations.keySet()));
+      if (!rootProjectIds.isEmpty()) {
+        suffixArray = suffixArray.reload(rootProjectIds, indexerDao.selectMasterIndexes(rootProjectIds));
+      }
+      projectGenerations = currentProjectGenerations;
+      LOG.debug("Index of resources refreshed: {} projects reloaded", rootProjectIds.size());
+    }
+    generation = currentGeneration;
+    invalidated = false;
+    lastRefresh = now;
+  }
+
+  private String currentGeneration() {
+    PropertyDto property = propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION);
+    return property != null ? StringUtils.defaultIfEmpty(property.getValue(), null) : null;
+  }
+
+  private Map<Long, String> currentProjectGenerations() {
+    Map<Long, String> generations = Maps.newHashMap();
+    for (PropertyDto property : propertiesDao.selectResourcePropertiesByKey(CoreProperties.ANALYSIS_GENERATION)) {
+      generations.put(property.getResourceId(), StringUtils.defaultString(property.getValue()));
+    }
+    return generations;
+  }
+
+  /**
+   * Immutable array of the suffixes of the names, sorted in lexicographic order. A suffix is encoded in a long by
+   * the index of its resource (high bits) and by its position in the name (low bits). As in RESOURCE_INDEX, suffixes
+   * shorter than {@link ResourceIndexerDao#MINIMUM_KEY_SIZE} are not indexed.
+   */
+  static final class SuffixArray {
+    private final ResourceIndexDto[] entries;
+    private final long[] suffixes;
+
+    SuffixArray(List<ResourceIndexDto> rows) {
+      entries = rows.toArray(new ResourceIndexDto[rows.size()]);
+      suffixes = suffixesOf(entries, 0);
+      sort(entries, suffixes);
+    }
+
+    private SuffixArray(ResourceIndexDto[] entries, long[] suffixes) {
+      this.entries = entries;
+      this.suffixes = suffixes;
+    }
+
+    /**
+     * Copy of this array in which the resources of the given projects are replaced by the given rows. The kept suffixes
+     * are already sorted, so only the suffixes of the new rows are sorted, then both are merged.
+     */
+    SuffixArray reload(Set<Long> rootProjectIds, List<ResourceIndexDto> rows) {
+      int[] newEntryIndexes = new int[entries.length];
+      List<ResourceIndexDto> newEntries = Lists.newArrayListWithCapacity(entries.length + rows.size());
+      for (int i = 0; i < entries.length; i++) {
+        if (rootProjectIds.contains(entries[i].getRootProjectId())) {
+          newEntryIndexes[i] = -1;
+        } else {
+          newEntryIndexes[i] = newEntries.size();
+          newEntries.add(entries[i]);
+        }
+      }
+      int firstAddedEntry = newEntries.size();
+      newEntries.addAll(rows);
+      ResourceIndexDto[] reloadedEntries = newEntries.toArray(new ResourceIndexDto[newEntries.size()]);
+
+      long[] keptSuffixes = new long[suffixes.length];
+      int keptCount = 0;
+      for (long suffix : suffixes) {
+        int newEntryIndex = newEntryIndexes[entryIndex(suffix)];
+        if (newEntryIndex >= 0) {
+          keptSuffixes[keptCount] = encode(newEntryIndex, position(suffix));
+          keptCount++;
+        }
+      }
+      long[] addedSuffixes = suffixesOf(reloadedEntries, firstAddedEntry);
+      sort(reloadedEntries, addedSuffixes);
+
+      long[] reloadedSuffixes = new long[keptCount + addedSuffixes.length];
+      merge(reloadedEntries, keptSuffixes, 0, keptCount, addedSuffixes, 0, addedSuffixes.length, reloadedSuffixes, 0);
+      return new SuffixArray(reloadedEntries, reloadedSuffixes);
+    }
+
+    List<ResourceIndexDto> search(String text, @Nullable Collection<String> qualifiers, boolean prefixOnly) {
+      Set<ResourceIndexDto> result = Sets.newHashSet();
+      for (int i = lowerBound(text); i < suffixes.length; i++) {
+        ResourceIndexDto entry = entries[entryIndex(suffixes[i])];
+        int position = position(suffixes[i]);
+        if (!entry.getKey().startsWith(text, position)) {
+          break;
+        }
+        if ((!prefixOnly || position == 0) && (qualifiers == null || qualifiers.contains(entry.getQualifier()))) {
+          result.add(entry);
+        }
+      }
+      List<ResourceIndexDto> sorted = Lists.newArrayList(result);
+      Collections.sort(sorted, BY_NAME_SIZE);
+      return sorted;
+    }
+
+    /**
+     * Index of the first suffix that is greater than or equal to the text
+     */
+    private int lowerBound(String text) {
+      int low = 0;
+      int high = suffixes.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (compare(entries[entryIndex(suffixes[middle])].getKey(), position(suffixes[middle]), text, 0) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private static long[] suffixesOf(ResourceIndexDto[] entries, int fromEntry) {
+      int count = 0;
+      for (int entryIndex = fromEntry; entryIndex < entries.length; entryIndex++) {
+        count += Math.max(0, entries[entryIndex].getKey().length() - ResourceIndexerDao.MINIMUM_KEY_SIZE + 1);
+      }
+      long[] suffixes = new long[count];
+      int index = 0;
+      for (int entryIndex = fromEntry; entryIndex < entries.length; entryIndex++) {
+        for (int position = 0; position <= entries[entryIndex].getKey().length() - ResourceIndexerDao.MINIMUM_KEY_SIZE; position++) {
+          suffixes[index] = encode(entryIndex, position);
+          index++;
+        }
+      }
+      return suffixes;
+    }
+
+    /**
+     * Merge sort of the suffixes. The suffixes are not compared on their values, so Arrays.sort(long[]) can not be used.
+     */
+    private static void sort(ResourceIndexDto[] entries, long[] suffixes) {
+      mergeSort(entries, suffixes.clone(), suffixes, 0, suffixes.length);
+    }
+
+    /**
+     * Sorts the range of dest. On entry, src and dest contain the same values in the range.
+     */
+    private static void mergeSort(ResourceIndexDto[] entries, long[] src, long[] dest, int from, int to) {
+      if (to - from < 2) {
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      mergeSort(entries, dest, src, from, middle);
+      mergeSort(entries, dest, src, middle, to);
+      merge(entries, src, from, middle, src, middle, to, dest, from);
+    }
+
+    private static void merge(ResourceIndexDto[] entries, long[] left, int leftFrom, int leftTo, long[] right, int rightFrom, int rightTo,
+      long[] dest, int destFrom) {
+      int leftIndex = leftFrom;
+      int rightIndex = rightFrom;
+      int destIndex = destFrom;
+      while (leftIndex < leftTo && rightIndex < rightTo) {
+        if (compareSuffixes(entries, left[leftIndex], right[rightIndex]) <= 0) {
+          dest[destIndex] = left[leftIndex];
+          leftIndex++;
+        } else {
+          dest[destIndex] = right[rightIndex];
+          rightIndex++;
+        }
+        destIndex++;
+      }
+      System.arraycopy(left, leftIndex, dest, destIndex, leftTo - leftIndex);
+      System.arraycopy(right, rightIndex, dest, destIndex + leftTo - leftIndex, rightTo - rightIndex);
+    }
+
+    private static long encode(int entryIndex, int position) {
+      return ((long) entryIndex << 32) | position;
+    }
+
+    private static int entryIndex(long suffix) {
+      return (int) (suffix >>> 32);
+    }
+
+    private static int position(long suffix) {
+      return (int) (suffix & 0xFFFFFFFFL);
+    }
+
+    private static int compareSuffixes(ResourceIndexDto[] entries, long left, long right) {
+      return compare(entries[entryIndex(left)].getKey(), position(left), entries[entryIndex(right)].getKey(), position(right));
+    }
+
+    private static int compare(String left, int leftOffset, String right, int rightOffset) {
+      int leftLength = left.length() - leftOffset;
+      int rightLength = right.length() - rightOffset;
+      int length = Math.min(leftLength, rightLength);
+      for (int i = 0; i < length; i++) {
+        int diff = left.charAt(leftOffset + i) - right.charAt(rightOffset + i);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return leftLength - rightLength;
+    }
+  }
+
+  private static final Comparator<ResourceIndexDto> BY_NAME_SIZE = new Comparator<ResourceIndexDto>() {
+    public int compare(ResourceIndexDto left, ResourceIndexDto right) {
+      int diff = left.getNameSize() - right.getNameSize();
+      if (diff == 0) {
+        diff = left.getKey().compareTo(right.getKey());
+      }
+      if (diff == 0) {
+        diff = left.getResourceId() < right.getResourceId() ? -1 : (left.getResourceId() == right.getResourceId() ? 0 : 1);
+      }
+      return diff;
+    }
+  };
+}
@@ -0,0 +1,77 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.dependency;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.persistence.AbstractDaoTestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DependencyDaoTest extends AbstractDaoTestCase {
+
+  private DependencyDao dao;
+
+  @Before
+  public void createDao() {
+    dao = new DependencyDao(getMyBatis());
+  }
+
+  @Test
+  public void shouldSelectByProjectSnapshotId() {
+    setupData("shouldSelectByProjectSnapshotId");
+
+    List<DependencyDto> dependencies = dao.selectByProjectSnapshotId(10L);
+
+    assertThat(dependencies).hasSize(2);
+    DependencyDto dependency = dependencies.get(0).getId() == 1L ? dependencies.get(1) : dependencies.get(0);
+    assertThat(dependency.getId()).isEqualTo(2L);
+    assertThat(dependency.getFromSnapshotId()).isEqualTo(1002L);
+    assertThat(dependency.getToSnapshotId()).isEqualTo(1003L);
+    assertThat(dependency.getParentDependencyId()).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldInsert() {
+    setupData("shouldInsert");
+
+    DependencyDto packages = new DependencyDto().setProjectSnapshotId(10L).setUsage("USES").setWeight(2)
+      .setFromResourceId(100L).setFromScope("DIR").setFromSnapshotId(1000L)
+      .setToResourceId(101L).setToScope("DIR").setToSnapshotId(1001L);
+    DependencyDto files = new DependencyDto().setProjectSnapshotId(10L).setUsage("USES").setWeight(1)
+      .setFromResourceId(102L).setFromScope("FIL").setFromSnapshotId(1002L)
+      .setToResourceId(103L).setToScope("FIL").setToSnapshotId(1003L);
+    dao.insert(Arrays.asList(packages, files));
+
+    checkTables("shouldInsert", "dependencies");
+  }
+
+  @Test
+  public void shouldUpdateParents() {
+    setupData("shouldUpdateParents");
+
+    dao.updateParents(Arrays.asList(new DependencyDto().setId(2L).setParentDependencyId(1L)));
+
+    checkTables("shouldUpdateParents", "dependencies");
+  }
+}
@@ -19,11 +19,14 @@
  */
 package org.sonar.core.measure;
 
+import com.google.common.collect.Lists;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.measures.Metric;
 
+import java.util.List;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class MeasureFilterConditionTest {
@@ -61,7 +64,9 @@ public class MeasureFilterConditionTest {
     assertThat(condition.value()).isEqualTo(10.0);
     assertThat(condition.appendSqlColumn(new StringBuilder(), 1).toString()).isEqualTo("pmcond1.value");
     assertThat(condition.toString()).isNotEmpty();
-    assertThat(condition.appendSqlCondition(new StringBuilder(), 1).toString()).isEqualTo(" pmcond1.metric_id=123 AND pmcond1.value>10.0 AND pmcond1.rule_id IS NULL AND pmcond1.rule_priority IS NULL AND pmcond1.characteristic_id IS NULL AND pmcond1.person_id IS NULL ");
+    List<Object> parameters = Lists.newArrayList();
+    assertThat(condition.appendSqlCondition(new StringBuilder(), 1, parameters).toString()).isEqualTo(" pmcond1.metric_id=? AND pmcond1.value>? AND pmcond1.rule_id IS NULL AND pmcond1.rule_priority IS NULL AND pmcond1.characteristic_id IS NULL AND pmcond1.person_id IS NULL ");
+    assertThat(parameters).containsExactly(123, 10.0);
   }
 
   @Test
@@ -77,6 +82,8 @@ public class MeasureFilterConditionTest {
     assertThat(condition.value()).isEqualTo(10.0);
     assertThat(condition.appendSqlColumn(new StringBuilder(), 2).toString()).isEqualTo("pmcond2.variation_value_3");
     assertThat(condition.toString()).isNotEmpty();
-    assertThat(condition.appendSqlCondition(new StringBuilder(), 2).toString()).isEqualTo(" pmcond2.metric_id=123 AND pmcond2.variation_value_3<=10.0 AND pmcond2.rule_id IS NULL AND pmcond2.rule_priority IS NULL AND pmcond2.characteristic_id IS NULL AND pmcond2.person_id IS NULL ");
+    List<Object> parameters = Lists.newArrayList();
+    assertThat(condition.appendSqlCondition(new StringBuilder(), 2, parameters).toString()).isEqualTo(" pmcond2.metric_id=? AND pmcond2.variation_value_3<=? AND pmcond2.rule_id IS NULL AND pmcond2.rule_priority IS NULL AND pmcond2.characteristic_id IS NULL AND pmcond2.person_id IS NULL ");
+    assertThat(parameters).containsExactly(123, 10.0);
   }
 }
@@ -22,6 +22,7 @@ package org.sonar.core.measure;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -37,8 +38,9 @@ public class MeasureFilterContextTest {
   public void test_toString() {
     MeasureFilterContext context = new MeasureFilterContext();
     context.setData("{qualifiers=TRK}");
-    context.setSql("SELECT *");
+    context.setSql("SELECT * FROM projects WHERE id=?");
+    context.setSqlParameters(Arrays.<Object>asList(12L));
     context.setUserId(50L);
-    assertThat(context.toString()).isEqualTo("MeasureFilterContext[filter={qualifiers=TRK},sql=SELECT *,user=50]");
+    assertThat(context.toString()).isEqualTo("MeasureFilterContext[filter={qualifiers=TRK},sql=SELECT * FROM projects WHERE id=?,parameters=[12],user=50]");
   }
 }
@@ -24,14 +24,21 @@ import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Test;
 import org.slf4j.Logger;
+import org.sonar.api.CoreProperties;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
 
 import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.refEq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,7 +54,7 @@ public class MeasureFilterEngineTest {
     Logger logger = mock(Logger.class);
     when(logger.isDebugEnabled()).thenReturn(true);
 
-    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor);
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
 
     final long userId = 50L;
     engine.execute(filterMap, userId, logger);
@@ -63,6 +70,36 @@ public class MeasureFilterEngineTest {
     verify(logger).debug(anyString());
   }
 
+  @Test
+  public void should_count_rows_of_paginated_filter() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    MeasureFilter filter = new MeasureFilter().setPageSize(20);
+    when(factory.create(filterMap)).thenReturn(filter);
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+    when(executor.count(eq(filter), any(MeasureFilterContext.class))).thenReturn(150);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    MeasureFilterResult result = engine.execute(filterMap, 50L);
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.getTotal()).isEqualTo(150);
+  }
+
+  @Test
+  public void should_not_count_rows_if_not_paginated() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(filterMap)).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    MeasureFilterResult result = engine.execute(filterMap, 50L);
+
+    assertThat(result.getTotal()).isNull();
+    verify(executor, never()).count(any(MeasureFilter.class), any(MeasureFilterContext.class));
+  }
+
   @Test
   public void keep_error_but_do_not_fail() throws Exception {
     Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
@@ -70,10 +107,101 @@ public class MeasureFilterEngineTest {
     when(factory.create(filterMap)).thenThrow(new IllegalArgumentException());
     MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
 
-    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor);
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
     MeasureFilterResult result = engine.execute(filterMap, 50L);
 
     assertThat(result.isSuccess()).isFalse();
     assertThat(result.getError()).isEqualTo(MeasureFilterResult.Error.UNKNOWN);
   }
+
+  @Test
+  public void should_cache_results() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK", "sort", "name");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(any(Map.class))).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    MeasureFilterResult first = engine.execute(filterMap, 50L);
+    // same criteria in a different order, requested by another user
+    MeasureFilterResult second = engine.execute(ImmutableMap.of("sort", (Object) "name", "qualifiers", "TRK"), 60L);
+
+    assertThat(second).isSameAs(first);
+    verify(executor, times(1)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+    assertThat(engine.getCacheStats().hitCount()).isEqualTo(1);
+    assertThat(engine.getCacheStats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_ignore_properties_which_are_not_criteria() throws Exception {
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(any(Map.class))).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    engine.execute(ImmutableMap.of("qualifiers", (Object) "TRK", "c1_metric", "ncloc", "page", "1", "pageSize", "20"), 50L);
+    engine.execute(ImmutableMap.of("qualifiers", (Object) "TRK", "c1_metric", "ncloc", "page", "2", "display", "treemap", "id", "3"), 50L);
+    engine.execute(ImmutableMap.of("qualifiers", (Object) "TRK", "c1_metric", "lines"), 50L);
+
+    verify(executor, times(2)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+  }
+
+  @Test
+  public void should_not_cache_favourites() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("onFavourites", (Object) "true");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(filterMap)).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    engine.execute(filterMap, 50L);
+    engine.execute(filterMap, 50L);
+
+    verify(executor, times(2)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+  }
+
+  @Test
+  public void should_invalidate_cache_when_new_analysis() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(filterMap)).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+    PropertiesDao propertiesDao = mock(PropertiesDao.class);
+    when(propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION)).thenReturn(new PropertyDto().setValue("10"));
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, propertiesDao);
+    engine.execute(filterMap, 50L);
+    engine.execute(filterMap, 50L);
+    verify(executor, times(1)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+
+    when(propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION)).thenReturn(new PropertyDto().setValue("11"));
+    engine.execute(filterMap, 50L);
+    verify(executor, times(2)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+  }
+
+  @Test
+  public void should_expire_results() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(filterMap)).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class), 10, 0L);
+    engine.execute(filterMap, 50L);
+    engine.execute(filterMap, 50L);
+
+    verify(executor, times(2)).execute(any(MeasureFilter.class), any(MeasureFilterContext.class));
+  }
+
+  @Test
+  public void should_not_cache_errors() throws Exception {
+    Map<String, Object> filterMap = ImmutableMap.of("qualifiers", (Object) "TRK");
+    MeasureFilterFactory factory = mock(MeasureFilterFactory.class);
+    when(factory.create(filterMap)).thenThrow(new IllegalArgumentException()).thenReturn(new MeasureFilter());
+    MeasureFilterExecutor executor = mock(MeasureFilterExecutor.class);
+
+    MeasureFilterEngine engine = new MeasureFilterEngine(factory, executor, mock(PropertiesDao.class));
+    assertThat(engine.execute(filterMap, 50L).isSuccess()).isFalse();
+    assertThat(engine.execute(filterMap, 50L).isSuccess()).isTrue();
+  }
 }
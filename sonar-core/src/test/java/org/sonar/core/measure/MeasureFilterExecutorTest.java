@@ -24,7 +24,10 @@ import org.junit.Test;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.properties.PropertiesDao;
 import org.sonar.core.resource.ResourceDao;
+import org.sonar.core.resource.ResourceIndexerDao;
+import org.sonar.core.resource.ResourceSearchIndex;
 import org.sonar.core.resource.SnapshotDto;
 
 import java.sql.SQLException;
@@ -52,7 +55,8 @@ public class MeasureFilterExecutorTest extends AbstractDaoTestCase {
 
   @Before
   public void before() {
-    executor = new MeasureFilterExecutor(getMyBatis(), getDatabase(), new ResourceDao(getMyBatis()));
+    ResourceSearchIndex searchIndex = new ResourceSearchIndex(new ResourceIndexerDao(getMyBatis()), new PropertiesDao(getMyBatis()));
+    executor = new MeasureFilterExecutor(getMyBatis(), getDatabase(), new ResourceDao(getMyBatis()), searchIndex);
   }
 
   @Test
@@ -396,6 +400,18 @@ public class MeasureFilterExecutorTest extends AbstractDaoTestCase {
     verifyPhpProject(rows.get(0));
   }
 
+  @Test
+  public void filter_by_resource_name_with_search_index() throws SQLException {
+    setupData("shared");
+    MeasureFilterContext context = new MeasureFilterContext();
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceName("proj");
+    List<MeasureFilterRow> rows = executor.execute(filter, context);
+
+    assertThat(rows).hasSize(2);
+    assertThat(context.getResourceIdsMatchingName()).containsOnly(JAVA_PROJECT_ID, PHP_PROJECT_ID);
+    assertThat(context.getSql()).excludes("resource_index");
+  }
+
   @Test
   public void filter_by_resource_key_star_regexp() throws SQLException {
     setupData("shared");
@@ -415,6 +431,31 @@ public class MeasureFilterExecutorTest extends AbstractDaoTestCase {
     verifyJavaProject(rows.get(0));
   }
 
+  @Test
+  public void filter_by_resource_name_containing_quote() throws SQLException {
+    setupData("shared");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceName("PHP' Proj");
+    List<MeasureFilterRow> rows = executor.execute(filter, new MeasureFilterContext());
+
+    assertThat(rows).isEmpty();
+  }
+
+  @Test
+  public void values_are_bound_to_sql_parameters() throws SQLException {
+    setupData("shared");
+    MeasureFilterContext javaContext = new MeasureFilterContext();
+    executor.execute(new MeasureFilter().setResourceQualifiers(Arrays.asList("CLA")).setResourceKeyRegexp("java*")
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 200)), javaContext);
+    MeasureFilterContext phpContext = new MeasureFilterContext();
+    executor.execute(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceKeyRegexp("php*")
+      .addCondition(new MeasureFilterCondition(METRIC_COVERAGE, MeasureFilterCondition.Operator.GREATER, 10)), phpContext);
+
+    assertThat(phpContext.getSql()).isEqualTo(javaContext.getSql());
+    assertThat(javaContext.getSql()).excludes("CLA").excludes("JAVA").excludes("200");
+    assertThat(javaContext.getSqlParameters()).contains("CLA", "JAVA%", 1, 200.0);
+    assertThat(phpContext.getSqlParameters()).contains("TRK", "PHP%", 3, 10.0);
+  }
+
   @Test
   public void filter_by_base_resource() throws SQLException {
     setupData("shared");
@@ -501,6 +542,55 @@ public class MeasureFilterExecutorTest extends AbstractDaoTestCase {
     assertThat(rows.get(0).getSnapshotId()).isEqualTo(101L);
   }
 
+  @Test
+  public void paginate_rows_sorted_by_database() throws SQLException {
+    setupData("shared");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .setSortOnMetric(METRIC_COVERAGE).setSortAsc(true).setPageSize(1);
+    MeasureFilterContext context = new MeasureFilterContext();
+    List<MeasureFilterRow> rows = executor.execute(filter, context);
+
+    assertThat(context.getSql()).contains("ORDER BY").contains("LIMIT 1 OFFSET 0");
+    assertThat(rows).hasSize(1);
+    verifyJavaProject(rows.get(0));
+
+    // PHP project has no coverage, null measures are last
+    rows = executor.execute(filter.setPageIndex(2), new MeasureFilterContext());
+    assertThat(rows).hasSize(1);
+    verifyPhpProject(rows.get(0));
+
+    rows = executor.execute(filter.setPageIndex(3), new MeasureFilterContext());
+    assertThat(rows).isEmpty();
+  }
+
+  @Test
+  public void paginate_rows_sorted_programmatically() throws SQLException {
+    setupData("shared");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("CLA")).setSortAsc(false).setPageSize(1);
+    MeasureFilterContext context = new MeasureFilterContext();
+    List<MeasureFilterRow> rows = executor.execute(filter, context);
+
+    // text columns are not sorted by database
+    assertThat(context.getSql()).excludes("LIMIT");
+    assertThat(rows).hasSize(1);
+    verifyJavaTinyFile(rows.get(0));
+
+    rows = executor.execute(filter.setPageIndex(2), new MeasureFilterContext());
+    assertThat(rows).hasSize(1);
+    verifyJavaBigFile(rows.get(0));
+
+    rows = executor.execute(filter.setPageIndex(3), new MeasureFilterContext());
+    assertThat(rows).isEmpty();
+  }
+
+  @Test
+  public void count_rows_whatever_the_pagination() throws SQLException {
+    setupData("shared");
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("CLA")).setPageSize(1).setPageIndex(2);
+
+    assertThat(executor.count(filter, new MeasureFilterContext())).isEqualTo(2);
+    assertThat(executor.count(new MeasureFilter(), new MeasureFilterContext())).isEqualTo(0);
+  }
 
   private void verifyJavaProject(MeasureFilterRow row) {
     assertThat(row.getSnapshotId()).isEqualTo(JAVA_PROJECT_SNAPSHOT_ID);
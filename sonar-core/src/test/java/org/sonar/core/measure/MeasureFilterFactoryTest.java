@@ -37,6 +37,20 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class MeasureFilterFactoryTest {
+  @Test
+  public void should_recognize_criteria() {
+    assertThat(MeasureFilterFactory.isCriterion("qualifiers")).isTrue();
+    assertThat(MeasureFilterFactory.isCriterion("onFavourites")).isTrue();
+    assertThat(MeasureFilterFactory.isCriterion("c2_metric")).isTrue();
+    assertThat(MeasureFilterFactory.isCriterion("c3_period")).isTrue();
+
+    assertThat(MeasureFilterFactory.isCriterion("page")).isFalse();
+    assertThat(MeasureFilterFactory.isCriterion("pageSize")).isFalse();
+    assertThat(MeasureFilterFactory.isCriterion("display")).isFalse();
+    assertThat(MeasureFilterFactory.isCriterion("cols")).isFalse();
+    assertThat(MeasureFilterFactory.isCriterion("c4_metric")).isFalse();
+  }
+
   @Test
   public void sort_on_measure_value() {
     MeasureFilterFactory factory = new MeasureFilterFactory(newMetricFinder());
@@ -63,4 +63,19 @@ public class MeasureFilterTest {
     assertThat(new MeasureFilter().setBaseResourceKey("foo").isEmpty()).isFalse();
     assertThat(new MeasureFilter().setBaseResourceId(123L).isEmpty()).isFalse();
   }
+
+  @Test
+  public void should_not_be_paginated_by_default() {
+    MeasureFilter filter = new MeasureFilter();
+    assertThat(filter.isPaginated()).isFalse();
+    assertThat(filter.getPageIndex()).isEqualTo(1);
+
+    filter.setPageSize(20);
+    assertThat(filter.isPaginated()).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void page_index_starts_from_one() {
+    new MeasureFilter().setPageIndex(0);
+  }
 }
@@ -19,11 +19,15 @@
  */
 package org.sonar.core.notification;
 
+import com.google.common.collect.SetMultimap;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.notifications.Notification;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
@@ -55,4 +59,46 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     assertThat(manager.isEnabled("godin", "email", "CommentOnReviewAssignedToMe"), is(false));
   }
 
+  @Test
+  public void shouldReadSeveralElementsFromQueue() {
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+    Notification third = new Notification("third");
+    manager.scheduleForSending(first);
+    manager.scheduleForSending(second);
+    manager.scheduleForSending(third);
+
+    List<NotificationQueueElement> queueElements = manager.readQueue(2);
+    assertThat(queueElements.size(), is(2));
+    assertThat(queueElements.get(0).getNotification(), is(first));
+    assertThat(queueElements.get(1).getNotification(), is(second));
+
+    // not removed until delivered
+    assertThat(manager.readQueue(2).size(), is(2));
+
+    manager.removeFromQueue(queueElements);
+    queueElements = manager.readQueue(2);
+    assertThat(queueElements.size(), is(1));
+    assertThat(queueElements.get(0).getNotification(), is(third));
+
+    manager.removeFromQueue(queueElements);
+    assertThat(manager.readQueue(2).isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldGetEnabledNotificationKeys() {
+    setupData("shouldGetEnabledNotificationKeys");
+
+    SetMultimap<String, String> keys = manager.getEnabledNotificationKeys();
+
+    assertThat(keys.keySet().size(), is(1));
+    assertThat(keys.get("simon").size(), is(2));
+    assertThat(keys.get("simon"), hasItems("notification.CommentOnReviewAssignedToMe.email", "notification.NewViolations.email"));
+  }
+
+  @Test
+  public void shouldFormatNotificationKey() {
+    assertThat(DefaultNotificationManager.getNotificationKey("NewViolations", "email"), is("notification.NewViolations.email"));
+  }
+
 }
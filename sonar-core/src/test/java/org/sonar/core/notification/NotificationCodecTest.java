@@ -0,0 +1,97 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.notification;
+
+import org.junit.Test;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.utils.SonarException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NotificationCodecTest {
+
+  @Test
+  public void should_encode_and_decode() {
+    Notification notification = new Notification("review-changed")
+      .setFieldValue("reviewId", "42")
+      .setFieldValue("comment", "\u00c7a marche \n pas")
+      .setFieldValue("assignee", null);
+
+    byte[] data = NotificationCodec.encode(notification);
+    Notification decoded = NotificationCodec.decode(data);
+
+    assertThat(decoded).isEqualTo(notification);
+    assertThat(decoded.getFieldValues()).hasSize(3);
+    assertThat(decoded.getFieldValue("assignee")).isNull();
+  }
+
+  @Test
+  public void should_encode_notification_without_fields() {
+    Notification notification = new Notification("new-violations");
+
+    assertThat(NotificationCodec.decode(NotificationCodec.encode(notification))).isEqualTo(notification);
+  }
+
+  @Test
+  public void should_be_more_compact_than_java_serialization() throws Exception {
+    Notification notification = new Notification("review-changed").setFieldValue("reviewId", "42");
+
+    assertThat(NotificationCodec.encode(notification).length).isLessThan(serialize(notification).length);
+  }
+
+  @Test
+  public void should_decode_legacy_java_serialization() throws Exception {
+    Notification notification = new Notification("review-changed").setFieldValue("reviewId", "42");
+
+    assertThat(NotificationCodec.decode(serialize(notification))).isEqualTo(notification);
+  }
+
+  @Test
+  public void should_keep_java_serialization_for_subclasses() {
+    Notification notification = new CustomNotification().setFieldValue("reviewId", "42");
+
+    Notification decoded = NotificationCodec.decode(NotificationCodec.encode(notification));
+
+    assertThat(decoded).isInstanceOf(CustomNotification.class);
+    assertThat(decoded.getFieldValue("reviewId")).isEqualTo("42");
+  }
+
+  @Test(expected = SonarException.class)
+  public void should_fail_if_unknown_format() {
+    NotificationCodec.decode(new byte[] {1, 2, 3, 4});
+  }
+
+  private static byte[] serialize(Notification notification) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(notification);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  static class CustomNotification extends Notification {
+    CustomNotification() {
+      super("custom");
+    }
+  }
+}
@@ -49,4 +49,9 @@ public class MsSqlTest {
     assertThat(msSql.getDefaultDriverClassName()).isEqualTo("net.sourceforge.jtds.jdbc.Driver");
     assertThat(msSql.getValidationQuery()).isEqualTo("SELECT 1");
   }
+
+  @Test
+  public void should_not_support_pagination() {
+    assertThat(msSql.getPaginatedSql("SELECT id FROM projects ORDER BY id", 20, 10)).isNull();
+  }
 }
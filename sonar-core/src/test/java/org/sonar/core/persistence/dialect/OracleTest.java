@@ -63,4 +63,10 @@ public class OracleTest {
     assertThat(oracle.getDefaultDriverClassName()).isEqualTo("oracle.jdbc.OracleDriver");
     assertThat(oracle.getValidationQuery()).isEqualTo("SELECT 1 FROM DUAL");
   }
+
+  @Test
+  public void should_wrap_paginated_query() {
+    assertThat(oracle.getPaginatedSql("SELECT id FROM projects ORDER BY id", 20, 10))
+      .isEqualTo("SELECT * FROM (SELECT pq.*, ROWNUM pq_rownum FROM (SELECT id FROM projects ORDER BY id) pq WHERE ROWNUM <= 30) WHERE pq_rownum > 20");
+  }
 }
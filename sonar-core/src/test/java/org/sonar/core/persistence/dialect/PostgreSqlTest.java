@@ -63,4 +63,9 @@ public class PostgreSqlTest {
     assertThat(postgreSql.getDefaultDriverClassName()).isEqualTo("org.postgresql.Driver");
     assertThat(postgreSql.getValidationQuery()).isEqualTo("SELECT 1");
   }
+
+  @Test
+  public void should_paginate_with_limit_and_offset() {
+    assertThat(postgreSql.getPaginatedSql("SELECT id FROM projects ORDER BY id", 20, 10)).isEqualTo("SELECT id FROM projects ORDER BY id LIMIT 10 OFFSET 20");
+  }
 }
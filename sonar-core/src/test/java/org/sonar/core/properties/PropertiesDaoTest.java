@@ -20,6 +20,7 @@
 package org.sonar.core.properties;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -27,9 +28,11 @@ import org.junit.rules.ExpectedException;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class PropertiesDaoTest extends AbstractDaoTestCase {
@@ -67,6 +70,18 @@ public class PropertiesDaoTest extends AbstractDaoTestCase {
     assertThat(second.getValue(), is("two"));
   }
 
+  @Test
+  public void selectGlobalProperty() {
+    setupData("selectGlobalProperties");
+
+    PropertyDto property = dao.selectGlobalProperty("global.two");
+    assertThat(property.getKey(), is("global.two"));
+    assertThat(property.getValue(), is("two"));
+
+    assertThat(dao.selectGlobalProperty("project.one"), nullValue());
+    assertThat(dao.selectGlobalProperty("unknown"), nullValue());
+  }
+
   @Test
   public void selectProjectProperties() {
     setupData("selectProjectProperties");
@@ -78,6 +93,20 @@ public class PropertiesDaoTest extends AbstractDaoTestCase {
     assertThat(first.getValue(), is("one"));
   }
 
+  @Test
+  public void selectResourcePropertiesByKey() {
+    setupData("selectResourcePropertiesByKey");
+    List<PropertyDto> properties = dao.selectResourcePropertiesByKey("generation");
+    assertThat(properties.size(), is(2));
+
+    Map<Long, String> values = Maps.newHashMap();
+    for (PropertyDto property : properties) {
+      values.put(property.getResourceId(), property.getValue());
+    }
+    assertThat(values.get(10L), is("10"));
+    assertThat(values.get(11L), is("12"));
+  }
+
   @Test
   public void setProperty_update() {
     setupData("update");
@@ -86,4 +86,17 @@ public class PurgeCommandsTest extends AbstractDaoTestCase {
     assertEmptyTables("projects", "snapshots", "events", "reviews", "review_comments", "authors");
   }
 
+  @Test
+  public void shouldDeleteResourcesByChunks() {
+    setupData("shouldDeleteResourcesByChunks");
+    SqlSession session = getMyBatis().openSession();
+    try {
+      new PurgeCommands(session, session.getMapper(PurgeMapper.class), 1).deleteResources(Arrays.asList(1L, 2L));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+    checkTable("shouldDeleteResourcesByChunks", "projects", "id");
+    checkTable("shouldDeleteResourcesByChunks", "snapshots", "id", "project_id");
+    checkTable("shouldDeleteResourcesByChunks", "events", "id", "resource_id");
+  }
 }
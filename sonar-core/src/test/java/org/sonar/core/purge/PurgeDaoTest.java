@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.sonar.api.resources.Scopes;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.persistence.SemaphoreDao;
 import org.sonar.core.resource.ResourceDao;
 
 import java.util.List;
@@ -41,7 +42,7 @@ public class PurgeDaoTest extends AbstractDaoTestCase {
 
   @Before
   public void createDao() {
-    dao = new PurgeDao(getMyBatis(), new ResourceDao(getMyBatis()));
+    dao = new PurgeDao(getMyBatis(), new ResourceDao(getMyBatis()), new SemaphoreDao(getMyBatis()));
   }
 
   @Test
@@ -83,6 +84,31 @@ public class PurgeDaoTest extends AbstractDaoTestCase {
     checkTables("shouldDeleteHistoricalDataOfDirectoriesAndFiles", "projects", "snapshots");
   }
 
+  @Test
+  public void shouldPurgeSnapshotsInParallel() {
+    setupData("shouldPurgeSnapshotsInParallel");
+    dao.purge(1, new String[]{Scopes.FILE}, 3, 1L);
+    checkTables("shouldPurgeSnapshotsInParallel", "projects", "snapshots");
+  }
+
+  @Test
+  public void shouldNotPurgeWhenAnotherPurgeIsRunning() {
+    setupData("shouldPurgeProject");
+    SemaphoreDao semaphoreDao = new SemaphoreDao(getMyBatis());
+    semaphoreDao.acquire("purge-1");
+    try {
+      dao.purge(1, new String[0]);
+      checkTables("shouldNotPurgeWhenAnotherPurgeIsRunning", "projects", "snapshots");
+    } finally {
+      semaphoreDao.release("purge-1");
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldFailIfNoThreads() {
+    dao.purge(1, new String[0], 0, 0L);
+  }
+
   @Test
   public void shouldDisableResourcesWithoutLastSnapshot() {
     setupData("shouldDisableResourcesWithoutLastSnapshot");
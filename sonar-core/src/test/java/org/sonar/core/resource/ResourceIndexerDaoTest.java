@@ -28,6 +28,9 @@ import org.sonar.core.persistence.AbstractDaoTestCase;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.number.OrderingComparisons.greaterThan;
 import static org.junit.Assert.assertThat;
@@ -59,6 +62,15 @@ public class ResourceIndexerDaoTest extends AbstractDaoTestCase {
     checkTables("shouldIndexProjects", new String[] {"id"}, "resource_index");
   }
 
+  @Test
+  public void shouldIndexProjectsInParallel() {
+    setupData("shouldIndexProjects");
+
+    dao.indexProjects(3);
+
+    checkTables("shouldIndexProjects", new String[] {"id"}, "resource_index");
+  }
+
   @Test
   public void shouldIndexMultiModulesProject() {
     setupData("shouldIndexMultiModulesProject");
@@ -77,6 +89,32 @@ public class ResourceIndexerDaoTest extends AbstractDaoTestCase {
     checkTables("shouldReindexProjectAfterRenaming", new String[] {"id"}, "resource_index");
   }
 
+  @Test
+  public void shouldUpdateOnlyChangedRows() {
+    setupData("shouldUpdateOnlyChangedRows");
+
+    dao.indexProject(1);
+
+    checkTable("shouldUpdateOnlyChangedRows", "resource_index", "id", "kee", "position", "name_size", "resource_id", "root_project_id", "qualifier");
+  }
+
+  @Test
+  public void shouldSelectMasterIndexes() {
+    setupData("shouldSelectMasterIndexes");
+
+    List<ResourceIndexDto> all = dao.selectMasterIndexes(null);
+    assertThat(all.size(), Is.is(2));
+
+    List<ResourceIndexDto> ofProjects = dao.selectMasterIndexes(Arrays.asList(10L));
+    assertThat(ofProjects.size(), Is.is(1));
+    assertThat(ofProjects.get(0).getKey(), Is.is("commons"));
+    assertThat(ofProjects.get(0).getResourceId(), Is.is(10L));
+    assertThat(ofProjects.get(0).getQualifier(), Is.is("TRK"));
+    assertThat(ofProjects.get(0).getNameSize(), Is.is(7));
+
+    assertThat(dao.selectMasterIndexes(Collections.<Long>emptyList()).size(), Is.is(0));
+  }
+
   @Test
   public void shouldNotIndexPackages() throws SQLException {
     setupData("shouldNotIndexPackages");
@@ -0,0 +1,253 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.resource;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.core.properties.PropertiesDao;
+import org.sonar.core.properties.PropertyDto;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceSearchIndexTest {
+
+  private ResourceIndexerDao indexerDao = mock(ResourceIndexerDao.class);
+  private PropertiesDao propertiesDao = mock(PropertiesDao.class);
+  private ResourceSearchIndex index;
+
+  @Before
+  public void before() {
+    when(indexerDao.selectMasterIndexes(null)).thenReturn(Arrays.asList(
+      row(1L, "struts", "TRK", 1L),
+      row(2L, "struts core", "BRC", 1L),
+      row(3L, "requestcontext", "CLA", 1L),
+      row(4L, "commons lang", "TRK", 4L),
+      row(5L, "ab", "FIL", 4L)
+    ));
+    setGeneration("100");
+    index = new ResourceSearchIndex(indexerDao, propertiesDao, 0L);
+  }
+
+  @Test
+  public void should_search_by_infix() {
+    assertThat(resourceIds(index.search("ruts", null))).containsExactly(1L, 2L);
+    assertThat(resourceIds(index.search("on", null))).containsExactly(4L, 3L);
+    assertThat(resourceIds(index.search("unknown", null))).isEmpty();
+  }
+
+  @Test
+  public void should_search_by_prefix() {
+    assertThat(resourceIds(index.searchByPrefix("struts", null))).containsExactly(1L, 2L);
+    assertThat(resourceIds(index.searchByPrefix("ruts", null))).isEmpty();
+  }
+
+  @Test
+  public void should_be_case_insensitive() {
+    assertThat(resourceIds(index.search("Struts Co", null))).containsExactly(2L);
+  }
+
+  @Test
+  public void should_filter_qualifiers() {
+    assertThat(resourceIds(index.search("ruts", Arrays.asList("BRC", "FIL")))).containsExactly(2L);
+  }
+
+  @Test
+  public void should_not_index_short_names() {
+    assertThat(resourceIds(index.search("ab", null))).isEmpty();
+    assertThat(index.size()).isEqualTo(5);
+  }
+
+  @Test
+  public void should_sort_by_name_size() {
+    List<ResourceIndexDto> results = index.search("s", null);
+    assertThat(resourceIds(results)).containsExactly(1L, 2L, 4L, 3L);
+  }
+
+  @Test
+  public void should_reload_projects_whose_generation_changed() {
+    setProjectGenerations("100", "90");
+    index.start();
+    assertThat(resourceIds(index.search("struts", null))).containsExactly(1L, 2L);
+
+    // the module of the project 1 has been renamed
+    setGeneration("200");
+    setProjectGenerations("200", "90");
+    when(indexerDao.selectMasterIndexes(Sets.newHashSet(1L))).thenReturn(Arrays.asList(
+      row(1L, "struts", "TRK", 1L),
+      row(2L, "struts kernel", "BRC", 1L)
+    ));
+
+    assertThat(resourceIds(index.search("ker", null))).containsExactly(2L);
+    assertThat(resourceIds(index.search("core", null))).isEmpty();
+    assertThat(resourceIds(index.search("lang", null))).containsExactly(4L);
+    verify(indexerDao, times(1)).selectMasterIndexes(null);
+  }
+
+  @Test
+  public void should_reload_projects_whose_analysis_ended_in_any_order() {
+    setProjectGenerations("100", "50");
+    index.start();
+
+    // the analysis 150 of the project 4 ends, then the analysis 101 of the project 1, which started before.
+    // The global generation 150 is overwritten before the refresh.
+    setGeneration("101");
+    setProjectGenerations("101", "150");
+    when(indexerDao.selectMasterIndexes(Sets.newHashSet(1L, 4L))).thenReturn(Arrays.asList(
+      row(1L, "struts", "TRK", 1L),
+      row(4L, "commons collections", "TRK", 4L)
+    ));
+
+    assertThat(resourceIds(index.search("collections", null))).containsExactly(4L);
+    assertThat(resourceIds(index.search("core", null))).isEmpty();
+  }
+
+  @Test
+  public void should_remove_deleted_projects() {
+    setProjectGenerations("100", "50");
+    index.start();
+
+    setGeneration("101");
+    when(propertiesDao.selectResourcePropertiesByKey(CoreProperties.ANALYSIS_GENERATION)).thenReturn(Arrays.asList(
+      new PropertyDto().setResourceId(1L).setValue("100")
+    ));
+    when(indexerDao.selectMasterIndexes(Sets.newHashSet(4L))).thenReturn(Collections.<ResourceIndexDto>emptyList());
+
+    assertThat(resourceIds(index.search("lang", null))).isEmpty();
+    assertThat(resourceIds(index.search("struts", null))).containsExactly(1L, 2L);
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_not_reload_if_generation_is_unchanged() {
+    index.start();
+    index.search("struts", null);
+    index.search("struts", null);
+
+    verify(indexerDao, times(1)).selectMasterIndexes(null);
+    verify(propertiesDao, times(1)).selectResourcePropertiesByKey(CoreProperties.ANALYSIS_GENERATION);
+  }
+
+  @Test
+  public void should_not_reload_if_no_generation() {
+    setGeneration(null);
+    index.start();
+    index.search("struts", null);
+    index.search("struts", null);
+
+    verify(indexerDao, times(1)).selectMasterIndexes(null);
+  }
+
+  @Test
+  public void should_reload_projects_analyzed_since_first_generation() {
+    setGeneration(null);
+    index.start();
+
+    setGeneration("200");
+    setProjectGenerations("200", null);
+    when(indexerDao.selectMasterIndexes(Sets.newHashSet(1L))).thenReturn(Arrays.asList(row(1L, "struts", "TRK", 1L)));
+
+    assertThat(resourceIds(index.search("struts", null))).containsExactly(1L);
+    verify(indexerDao, times(1)).selectMasterIndexes(null);
+  }
+
+  @Test
+  public void should_merge_reloaded_projects_like_full_load() {
+    List<ResourceIndexDto> kept = Arrays.asList(row(4L, "commons lang", "TRK", 4L), row(6L, "stringutils", "CLA", 4L));
+    List<ResourceIndexDto> reloaded = Arrays.asList(row(1L, "struts", "TRK", 1L), row(7L, "actionservlet", "CLA", 1L));
+    ResourceSearchIndex.SuffixArray merged = new ResourceSearchIndex.SuffixArray(Arrays.asList(
+      row(1L, "struts", "TRK", 1L), row(3L, "requestcontext", "CLA", 1L), kept.get(0), kept.get(1)))
+      .reload(Sets.newHashSet(1L), reloaded);
+    ResourceSearchIndex.SuffixArray loaded = new ResourceSearchIndex.SuffixArray(Lists.newArrayList(Iterables.concat(kept, reloaded)));
+
+    for (String text : Arrays.asList("s", "t", "st", "on", "ts", "utils", "servlet", "request", "z")) {
+      assertThat(resourceIds(merged.search(text, null, false))).isEqualTo(resourceIds(loaded.search(text, null, false)));
+      assertThat(resourceIds(merged.search(text, null, true))).isEqualTo(resourceIds(loaded.search(text, null, true)));
+    }
+  }
+
+  @Test
+  public void should_not_check_generation_before_end_of_refresh_period() {
+    index = new ResourceSearchIndex(indexerDao, propertiesDao, 60000L);
+    index.start();
+    setGeneration("200");
+    index.search("struts", null);
+
+    verify(propertiesDao, times(1)).selectResourcePropertiesByKey(CoreProperties.ANALYSIS_GENERATION);
+  }
+
+  @Test
+  public void should_reload_everything_when_invalidated() {
+    index.start();
+    index.invalidate();
+    index.search("struts", null);
+
+    verify(indexerDao, times(2)).selectMasterIndexes(null);
+  }
+
+  @Test
+  public void should_keep_previous_index_if_refresh_fails() {
+    index.start();
+    when(propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION)).thenThrow(new IllegalStateException());
+
+    assertThat(resourceIds(index.search("struts", null))).containsExactly(1L, 2L);
+  }
+
+  private void setGeneration(String value) {
+    when(propertiesDao.selectGlobalProperty(CoreProperties.ANALYSIS_GENERATION)).thenReturn(new PropertyDto().setValue(value));
+  }
+
+  private void setProjectGenerations(@Nullable String project1, @Nullable String project4) {
+    List<PropertyDto> properties = Lists.newArrayList();
+    if (project1 != null) {
+      properties.add(new PropertyDto().setResourceId(1L).setValue(project1));
+    }
+    if (project4 != null) {
+      properties.add(new PropertyDto().setResourceId(4L).setValue(project4));
+    }
+    when(propertiesDao.selectResourcePropertiesByKey(CoreProperties.ANALYSIS_GENERATION)).thenReturn(properties);
+  }
+
+  private static ResourceIndexDto row(long resourceId, String key, String qualifier, long rootProjectId) {
+    return new ResourceIndexDto().setResourceId(resourceId).setKey(key).setNameSize(key.length()).setQualifier(qualifier)
+      .setRootProjectId(rootProjectId).setPosition(0);
+  }
+
+  private static List<Long> resourceIds(List<ResourceIndexDto> rows) {
+    List<Long> ids = Lists.newArrayList();
+    for (ResourceIndexDto row : rows) {
+      ids.add(row.getResourceId());
+    }
+    return ids;
+  }
+}
@@ -21,8 +21,10 @@ package org.sonar.graph;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class CycleDetector<V> {
@@ -32,6 +34,8 @@ public class CycleDetector<V> {
   private Set<V> analyzedVertices;
   private Set<Cycle> cycles = new HashSet<Cycle>();
   private Set<Edge> edgesToExclude;
+  private StronglyConnectedComponents<V> components;
+  private Map<V, Integer> positionsInPath = new HashMap<V, Integer>();
   private long searchCyclesCalls = 0;
   private int maxSearchDepth = -1;
   private boolean maxSearchDepthActivated = false;
@@ -84,6 +88,13 @@ public class CycleDetector<V> {
     if (!cycles.isEmpty()) {
       throw new IllegalStateException("Cycle detection can't be executed twice on the same CycleDetector object.");
     }
+    // cycles never leave a strongly connected component, so acyclic parts of the graph are not explored
+    components = new StronglyConnectedComponents<V>(graph, vertices, edgesToExclude);
+    Set<V> verticesInCycles = new HashSet<V>();
+    for (Set<V> component : components.getCyclicComponents()) {
+      verticesInCycles.addAll(component);
+    }
+    vertices = verticesInCycles;
     try {
       for (V vertex : vertices) {
         if (maxSearchDepthActivated || !analyzedVertices.contains(vertex)) {
@@ -99,15 +110,17 @@ public class CycleDetector<V> {
 
   private void searchCycles(V fromVertex, List<V> path, Set<V> tmpAnalyzedVertices) {
     searchCyclesCalls++;
+    positionsInPath.put(fromVertex, path.size());
     path.add(fromVertex);
     tmpAnalyzedVertices.add(fromVertex);
     for (Edge<V> edge : graph.getOutgoingEdges(fromVertex)) {
       V toVertex = edge.getTo();
-      if (!edgesToExclude.contains(edge) && vertices.contains(toVertex)
+      if (!edgesToExclude.contains(edge) && components.inSameComponent(fromVertex, toVertex)
           && (maxSearchDepthActivated || !analyzedVertices.contains(toVertex))) {
-        if (path.contains(toVertex)) {
+        Integer position = positionsInPath.get(toVertex);
+        if (position != null) {
           path.add(toVertex);
-          List<V> cyclePath = path.subList(path.indexOf(toVertex), path.size());
+          List<V> cyclePath = path.subList(position, path.size());
           Cycle cycle = convertListOfVerticesToCycle(cyclePath);
           cycles.add(cycle);
 
@@ -120,7 +133,7 @@ public class CycleDetector<V> {
         }
       }
     }
-    path.remove(path.size() - 1);
+    positionsInPath.remove(path.remove(path.size() - 1));
   }
 
   private Cycle convertListOfVerticesToCycle(List<V> vertices) {
@@ -147,6 +160,15 @@ public class CycleDetector<V> {
     return searchCyclesCalls;
   }
 
+  /**
+   * Available once cycles have been detected.
+   *
+   * @since 3.5
+   */
+  public StronglyConnectedComponents<V> getStronglyConnectedComponents() {
+    return components;
+  }
+
 }
 
 class MaximumCyclesToFoundException extends RuntimeException {
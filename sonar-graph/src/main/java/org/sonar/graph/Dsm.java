@@ -19,21 +19,36 @@
  */
 package org.sonar.graph;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Dependency structure matrix. Only non-empty cells, i.e. edges with a weight, are stored, as compressed lists of outgoing and incoming
+ * edges of each vertex, so the memory used is proportional to the number of edges and not to the square of the
+ * number of vertices. Permuting two vertices does not move any cell.
+ */
 public class Dsm<V> {
 
+  private static final DsmCell EMPTY_CELL = new DsmCell(null, false);
+
   private V[] vertices;
-  private DsmCell[][] cells;
   private int dimension;
+  // position -> vertex id and vertex id -> position, a vertex id is the initial position of the vertex
+  private int[] order;
+  private int[] positions;
+  private int[][] outgoingIds;
+  private DsmCell[][] outgoingCells;
+  private int[][] incomingIds;
+  private DsmCell[][] incomingCells;
   private DirectedGraphAccessor<V, ? extends Edge<V>> graph;
 
   public Dsm(DirectedGraphAccessor<V, ? extends Edge<V>> graph, Collection<V> vertices, Set<Edge> feedbackEdges) {
     this.graph = graph;
     this.dimension = vertices.size();
-    this.cells = new DsmCell[dimension][dimension];
     initVertices(vertices);
     initCells(feedbackEdges);
   }
@@ -47,30 +62,83 @@ public class Dsm<V> {
   }
 
   private void initCells(Set<Edge> feedbackEdges) {
-    for (int x = 0; x < dimension; x++) {
-      for (int y = 0; y < dimension; y++) {
-        V from = vertices[x];
-        V to = vertices[y];
-
-        Edge<V> edge = graph.getEdge(from, to);
-        boolean isFeedbackEdge = (edge != null && feedbackEdges.contains(edge));
-        DsmCell cell = new DsmCell(edge, isFeedbackEdge);
-        cells[x][y] = cell;
+    Map<V, Integer> ids = new HashMap<V, Integer>();
+    for (int id = 0; id < dimension; id++) {
+      ids.put(vertices[id], id);
+    }
+    outgoingIds = new int[dimension][];
+    outgoingCells = new DsmCell[dimension][];
+    int[] incomingCounts = new int[dimension];
+    for (int id = 0; id < dimension; id++) {
+      Collection<? extends Edge<V>> edges = graph.getOutgoingEdges(vertices[id]);
+      int[] targets = new int[edges == null ? 0 : edges.size()];
+      DsmCell[] cells = new DsmCell[targets.length];
+      int count = 0;
+      if (edges != null) {
+        for (Edge<V> edge : edges) {
+          Integer target = ids.get(edge.getTo());
+          if (target != null && edge.getWeight() != 0) {
+            targets[count] = target;
+            cells[count] = new DsmCell(edge, feedbackEdges.contains(edge));
+            incomingCounts[target]++;
+            count++;
+          }
+        }
+      }
+      outgoingIds[id] = trim(targets, count);
+      outgoingCells[id] = trim(cells, count);
+    }
+
+    incomingIds = new int[dimension][];
+    incomingCells = new DsmCell[dimension][];
+    for (int id = 0; id < dimension; id++) {
+      incomingIds[id] = new int[incomingCounts[id]];
+      incomingCells[id] = new DsmCell[incomingCounts[id]];
+      incomingCounts[id] = 0;
+    }
+    for (int id = 0; id < dimension; id++) {
+      for (int i = 0; i < outgoingIds[id].length; i++) {
+        int target = outgoingIds[id][i];
+        incomingIds[target][incomingCounts[target]] = id;
+        incomingCells[target][incomingCounts[target]] = outgoingCells[id][i];
+        incomingCounts[target]++;
       }
     }
   }
 
+  private static int[] trim(int[] array, int length) {
+    if (array.length == length) {
+      return array;
+    }
+    int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, length);
+    return result;
+  }
+
+  private static DsmCell[] trim(DsmCell[] array, int length) {
+    if (array.length == length) {
+      return array;
+    }
+    DsmCell[] result = new DsmCell[length];
+    System.arraycopy(array, 0, result, 0, length);
+    return result;
+  }
+
   private void initVertices(Collection<V> verticesCol) {
     this.vertices = (V[]) new Object[dimension];
+    this.order = new int[dimension];
+    this.positions = new int[dimension];
     int i = 0;
     for (V vertex : verticesCol) {
       vertices[i] = vertex;
+      order[i] = i;
+      positions[i] = i;
       i++;
     }
   }
 
   public V getVertex(int rowIndex) {
-    return vertices[rowIndex];
+    return vertices[order[rowIndex]];
   }
 
   public int getDimension() {
@@ -80,9 +148,12 @@ public class Dsm<V> {
   public void permute(int fromIndex, int toIndex) {
     if (fromIndex != toIndex) {
       checkIndicesBoudaries(fromIndex, toIndex);
-      permuteVertice(fromIndex, toIndex);
-      permuteColumns(fromIndex, toIndex);
-      permuteRows(fromIndex, toIndex);
+      int fromId = order[fromIndex];
+      int toId = order[toIndex];
+      order[fromIndex] = toId;
+      order[toIndex] = fromId;
+      positions[fromId] = toIndex;
+      positions[toId] = fromIndex;
     }
   }
 
@@ -90,7 +161,7 @@ public class Dsm<V> {
     for (int index : indices) {
       if (index < 0 || index >= dimension) {
         StringBuilder builder = new StringBuilder("DSM contains the following vertices : ");
-        for (V vertex : vertices) {
+        for (V vertex : getVertices()) {
           builder.append(vertex.toString()).append(" | ");
         }
         builder.append(". Trying to reach index ").append(index);
@@ -99,61 +170,68 @@ public class Dsm<V> {
     }
   }
 
-  private void permuteVertice(int fromIndex, int toIndex) {
-    V fromVertex = vertices[fromIndex];
-    V toVertex = vertices[toIndex];
-    vertices[fromIndex] = toVertex;
-    vertices[toIndex] = fromVertex;
+  public int getNumberOfIncomingEdges(int y, int from, int to) {
+    return countEdges(incomingIds[order[y]], incomingCells[order[y]], from, to);
+  }
+
+  public int getNumberOfOutgoingEdges(int x, int from, int to) {
+    return countEdges(outgoingIds[order[x]], outgoingCells[order[x]], from, to);
   }
 
-  private void permuteRows(int fromYIndex, int toYIndex) {
-    for (int x = 0; x < dimension; x++) {
-      permuteCells(x, fromYIndex, x, toYIndex);
+  private int countEdges(int[] ids, DsmCell[] cells, int from, int to) {
+    int edges = 0;
+    for (int i = 0; i < ids.length; i++) {
+      int position = positions[ids[i]];
+      if (position >= from && position <= to && cells[i].getWeight() != 0 && !cells[i].isFeedbackEdge()) {
+        edges++;
+      }
     }
+    return edges;
   }
 
-  private void permuteColumns(int fromXIndex, int toXIndex) {
-    for (int y = 0; y < dimension; y++) {
-      permuteCells(fromXIndex, y, toXIndex, y);
+  public DsmCell getCell(int x, int y) {
+    int[] targets = outgoingIds[order[x]];
+    int targetId = order[y];
+    for (int i = 0; i < targets.length; i++) {
+      if (targets[i] == targetId) {
+        return outgoingCells[order[x]][i];
+      }
     }
+    return EMPTY_CELL;
   }
 
-  private void permuteCells(int fromXIndex, int fromYIndex, int toXIndex, int toYIndex) {
-    DsmCell fromCell = cells[fromXIndex][fromYIndex];
-    DsmCell toCell = cells[toXIndex][toYIndex];
-    cells[toXIndex][toYIndex] = fromCell;
-    cells[fromXIndex][fromYIndex] = toCell;
+  /**
+   * Sorted indexes of the non-empty cells of the row x, i.e. the vertices which the vertex x depends upon.
+   *
+   * @since 3.5
+   */
+  public int[] getOutgoingIndexes(int x) {
+    return toSortedPositions(outgoingIds[order[x]]);
   }
 
-  public int getNumberOfIncomingEdges(int y, int from, int to) {
-    int incomingEdges = 0;
-    for (int x = from; x <= to; x++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
-        incomingEdges++;
-      }
-    }
-    return incomingEdges;
+  /**
+   * Sorted indexes of the non-empty cells of the column y, i.e. the vertices which depend upon the vertex y.
+   *
+   * @since 3.5
+   */
+  public int[] getIncomingIndexes(int y) {
+    return toSortedPositions(incomingIds[order[y]]);
   }
 
-  public int getNumberOfOutgoingEdges(int x, int from, int to) {
-    int outgoingEdges = 0;
-    for (int y = from; y <= to; y++) {
-      DsmCell cell = cells[x][y];
-      if (cell.getWeight() != 0 && !cell.isFeedbackEdge()) {
-        outgoingEdges++;
-      }
+  private int[] toSortedPositions(int[] ids) {
+    int[] result = new int[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      result[i] = positions[ids[i]];
     }
-    return outgoingEdges;
-  }
-
-  public DsmCell getCell(int x, int y) {
-    return cells[x][y];
+    Arrays.sort(result);
+    return result;
   }
 
   public V[] getVertices() {
-    V[] verticesCopy = (V[]) new Object[vertices.length];
-    System.arraycopy(vertices, 0, verticesCopy, 0, vertices.length);
+    V[] verticesCopy = (V[]) new Object[dimension];
+    for (int i = 0; i < dimension; i++) {
+      verticesCopy[i] = vertices[order[i]];
+    }
     return verticesCopy;
   }
 }
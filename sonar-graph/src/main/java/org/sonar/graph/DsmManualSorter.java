@@ -50,8 +50,8 @@ public final class DsmManualSorter<V> {
   }
 
   private int getCurrentIndex(V v) {
-    for (int currentIndex = 0; currentIndex < dsm.getVertices().length; currentIndex++) {
-      if (dsm.getVertices()[currentIndex].equals(v)) {
+    for (int currentIndex = 0; currentIndex < dsm.getDimension(); currentIndex++) {
+      if (dsm.getVertex(currentIndex).equals(v)) {
         return currentIndex;
       }
     }
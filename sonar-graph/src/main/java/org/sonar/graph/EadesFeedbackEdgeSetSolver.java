@@ -0,0 +1,297 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Heuristic feedback edge set which does not need to enumerate cycles, so it can be used on large tangles.
+ * <p>
+ * Each cyclic strongly connected component is handled separately. Its vertices are ordered with the greedy heuristic
+ * of Eades, Lin and Smyth, weighted by the edge weights: sinks are moved to the end, sources to the beginning, and
+ * otherwise the vertex with the highest difference between outgoing and incoming weights is moved to the beginning.
+ * Edges going backward in this order are the feedback edges. As a local improvement, the heaviest feedback edges
+ * are then put back in the graph when they do not close a cycle.
+ * </p>
+ * <p>
+ * The ordering takes O(E log V). The result is not guaranteed to be minimal, see {@link MinimumFeedbackEdgeSetSolver}
+ * for an exact (but exponential) search on a small set of cycles.
+ * </p>
+ *
+ * @since 3.5
+ */
+public class EadesFeedbackEdgeSetSolver<V> {
+
+  private final DirectedGraphAccessor<V, ? extends Edge> graph;
+  private final Set<Edge> feedbackEdges = new HashSet<Edge>();
+  private int weightOfFeedbackEdgeSet = 0;
+
+  public EadesFeedbackEdgeSetSolver(DirectedGraphAccessor<V, ? extends Edge> graph) {
+    this(graph, graph.getVertices());
+  }
+
+  public EadesFeedbackEdgeSetSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this.graph = graph;
+    StronglyConnectedComponents<V> components = new StronglyConnectedComponents<V>(graph, vertices);
+    for (Set<V> component : components.getCyclicComponents()) {
+      new ComponentSolver(component).solve();
+    }
+  }
+
+  public Set<Edge> getFeedbackEdgeSet() {
+    return feedbackEdges;
+  }
+
+  public int getWeightOfFeedbackEdgeSet() {
+    return weightOfFeedbackEdgeSet;
+  }
+
+  public boolean isAcyclicGraph() {
+    return feedbackEdges.isEmpty();
+  }
+
+  private static final class Candidate {
+    private final int vertex;
+    private final long delta;
+
+    private Candidate(int vertex, long delta) {
+      this.vertex = vertex;
+      this.delta = delta;
+    }
+  }
+
+  private static final Comparator<Candidate> HIGHEST_DELTA_FIRST = new Comparator<Candidate>() {
+    public int compare(Candidate c1, Candidate c2) {
+      if (c1.delta != c2.delta) {
+        return c1.delta > c2.delta ? -1 : 1;
+      }
+      return c1.vertex - c2.vertex;
+    }
+  };
+
+  /**
+   * Vertices and edges of the component are indexed by int, so that the ordering works on primitive arrays.
+   */
+  private final class ComponentSolver {
+    private final int size;
+    private final List<Edge> edges = new ArrayList<Edge>();
+    private int[] from;
+    private int[] to;
+    private int[][] outgoing;
+    private int[][] incoming;
+    private final boolean[] feedback;
+
+    private ComponentSolver(Set<V> component) {
+      List<V> vertices = new ArrayList<V>(component);
+      size = vertices.size();
+      Map<V, Integer> indexes = new HashMap<V, Integer>();
+      for (int i = 0; i < size; i++) {
+        indexes.put(vertices.get(i), i);
+      }
+      for (V vertex : vertices) {
+        for (Edge<V> edge : graph.getOutgoingEdges(vertex)) {
+          if (component.contains(edge.getTo())) {
+            edges.add(edge);
+          }
+        }
+      }
+      feedback = new boolean[edges.size()];
+      indexEdges(indexes);
+    }
+
+    private void indexEdges(Map<V, Integer> indexes) {
+      from = new int[edges.size()];
+      to = new int[edges.size()];
+      int[] outCounts = new int[size];
+      int[] inCounts = new int[size];
+      for (int e = 0; e < edges.size(); e++) {
+        Edge<V> edge = edges.get(e);
+        from[e] = indexes.get(edge.getFrom());
+        to[e] = indexes.get(edge.getTo());
+        outCounts[from[e]]++;
+        inCounts[to[e]]++;
+      }
+      outgoing = new int[size][];
+      incoming = new int[size][];
+      for (int v = 0; v < size; v++) {
+        outgoing[v] = new int[outCounts[v]];
+        incoming[v] = new int[inCounts[v]];
+        outCounts[v] = 0;
+        inCounts[v] = 0;
+      }
+      for (int e = 0; e < edges.size(); e++) {
+        outgoing[from[e]][outCounts[from[e]]++] = e;
+        incoming[to[e]][inCounts[to[e]]++] = e;
+      }
+    }
+
+    private void solve() {
+      int[] positions = order();
+      List<Integer> candidates = new ArrayList<Integer>();
+      for (int e = 0; e < edges.size(); e++) {
+        if (from[e] == to[e]) {
+          addFeedbackEdge(e);
+        } else if (positions[from[e]] > positions[to[e]]) {
+          feedback[e] = true;
+          candidates.add(e);
+        }
+      }
+      improve(candidates);
+    }
+
+    /**
+     * @return the position of each vertex in the order computed by the Eades-Lin-Smyth heuristic
+     */
+    private int[] order() {
+      int[] outCounts = new int[size];
+      int[] inCounts = new int[size];
+      long[] deltas = new long[size];
+      boolean[] removed = new boolean[size];
+      for (int e = 0; e < edges.size(); e++) {
+        if (from[e] != to[e]) {
+          int weight = edges.get(e).getWeight();
+          outCounts[from[e]]++;
+          inCounts[to[e]]++;
+          deltas[from[e]] += weight;
+          deltas[to[e]] -= weight;
+        }
+      }
+      List<Integer> sinks = new ArrayList<Integer>();
+      List<Integer> sources = new ArrayList<Integer>();
+      PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(Math.max(1, size), HIGHEST_DELTA_FIRST);
+      for (int v = 0; v < size; v++) {
+        queue.add(new Candidate(v, deltas[v]));
+      }
+
+      int[] positions = new int[size];
+      int head = 0;
+      int tail = size - 1;
+      int remaining = size;
+      while (remaining > 0) {
+        int vertex = -1;
+        boolean isSink = false;
+        while (vertex < 0 && !sinks.isEmpty()) {
+          int v = sinks.remove(sinks.size() - 1);
+          if (!removed[v] && outCounts[v] == 0) {
+            vertex = v;
+            isSink = true;
+          }
+        }
+        while (vertex < 0 && !sources.isEmpty()) {
+          int v = sources.remove(sources.size() - 1);
+          if (!removed[v] && inCounts[v] == 0) {
+            vertex = v;
+          }
+        }
+        while (vertex < 0) {
+          Candidate candidate = queue.poll();
+          if (!removed[candidate.vertex] && candidate.delta == deltas[candidate.vertex]) {
+            vertex = candidate.vertex;
+          }
+        }
+
+        removed[vertex] = true;
+        remaining--;
+        positions[vertex] = isSink ? tail-- : head++;
+        for (int e : outgoing[vertex]) {
+          int v = to[e];
+          if (!removed[v]) {
+            deltas[v] += edges.get(e).getWeight();
+            queue.add(new Candidate(v, deltas[v]));
+            if (--inCounts[v] == 0) {
+              sources.add(v);
+            }
+          }
+        }
+        for (int e : incoming[vertex]) {
+          int v = from[e];
+          if (!removed[v]) {
+            deltas[v] -= edges.get(e).getWeight();
+            queue.add(new Candidate(v, deltas[v]));
+            if (--outCounts[v] == 0) {
+              sinks.add(v);
+            }
+          }
+        }
+      }
+      return positions;
+    }
+
+    /**
+     * Heaviest feedback edges first: an edge is put back in the graph if its target can not reach its source
+     * through the edges which are not feedback edges.
+     */
+    private void improve(List<Integer> candidates) {
+      Collections.sort(candidates, new Comparator<Integer>() {
+        public int compare(Integer e1, Integer e2) {
+          return edges.get(e2).getWeight() - edges.get(e1).getWeight();
+        }
+      });
+      int[] visits = new int[size];
+      int[] stack = new int[size];
+      int visit = 0;
+      for (int e : candidates) {
+        visit++;
+        if (isReachable(to[e], from[e], visits, visit, stack)) {
+          addFeedbackEdge(e);
+        } else {
+          feedback[e] = false;
+        }
+      }
+    }
+
+    private boolean isReachable(int source, int target, int[] visits, int visit, int[] stack) {
+      int stackSize = 0;
+      stack[stackSize++] = source;
+      visits[source] = visit;
+      while (stackSize > 0) {
+        int vertex = stack[--stackSize];
+        if (vertex == target) {
+          return true;
+        }
+        for (int e : outgoing[vertex]) {
+          int next = to[e];
+          if (!feedback[e] && visits[next] != visit) {
+            visits[next] = visit;
+            stack[stackSize++] = next;
+          }
+        }
+      }
+      return false;
+    }
+
+    private void addFeedbackEdge(int e) {
+      feedback[e] = true;
+      Edge edge = edges.get(e);
+      feedbackEdges.add(edge);
+      weightOfFeedbackEdgeSet += edge.getWeight();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strongly connected components of a directed graph, computed with the Tarjan algorithm. The depth-first search
+ * is iterative, so the size of the graph is not limited by the size of the thread stack.
+ * <p>
+ * A cycle can only contain vertices of the same component, so components are the natural unit to search cycles
+ * and to compute tangles. A component is cyclic when it contains several vertices or a vertex with an edge to
+ * itself.
+ * </p>
+ *
+ * @since 3.5
+ */
+public class StronglyConnectedComponents<V> {
+
+  private final DirectedGraphAccessor<V, ? extends Edge> graph;
+  private final Set<V> vertices;
+  private final Set<Edge> edgesToExclude;
+
+  private final List<Set<V>> components = new ArrayList<Set<V>>();
+  private final Map<V, Integer> componentIndexes = new HashMap<V, Integer>();
+  private final Set<V> verticesWithLoop = new HashSet<V>();
+
+  private final Map<V, Integer> indexes = new HashMap<V, Integer>();
+  private final Map<V, Integer> lowLinks = new HashMap<V, Integer>();
+  private final List<V> stack = new ArrayList<V>();
+  private final Set<V> stacked = new HashSet<V>();
+
+  public StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph) {
+    this(graph, graph.getVertices(), Collections.<Edge>emptySet());
+  }
+
+  public StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this(graph, vertices, Collections.<Edge>emptySet());
+  }
+
+  public StronglyConnectedComponents(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, Set<Edge> edgesToExclude) {
+    this.graph = graph;
+    this.vertices = new HashSet<V>(vertices);
+    this.edgesToExclude = edgesToExclude;
+    for (V vertex : this.vertices) {
+      if (!indexes.containsKey(vertex)) {
+        visit(vertex);
+      }
+    }
+  }
+
+  private void visit(V root) {
+    List<V> path = new ArrayList<V>();
+    List<Iterator<? extends Edge>> pendingEdges = new ArrayList<Iterator<? extends Edge>>();
+    push(root, path, pendingEdges);
+
+    while (!path.isEmpty()) {
+      int top = path.size() - 1;
+      V vertex = path.get(top);
+      Iterator<? extends Edge> edges = pendingEdges.get(top);
+      if (edges.hasNext()) {
+        Edge<V> edge = edges.next();
+        V toVertex = edge.getTo();
+        if (edgesToExclude.contains(edge) || !vertices.contains(toVertex)) {
+          continue;
+        }
+        if (toVertex.equals(vertex)) {
+          verticesWithLoop.add(vertex);
+        }
+        if (!indexes.containsKey(toVertex)) {
+          push(toVertex, path, pendingEdges);
+        } else if (stacked.contains(toVertex)) {
+          lowLinks.put(vertex, Math.min(lowLinks.get(vertex), indexes.get(toVertex)));
+        }
+
+      } else {
+        path.remove(top);
+        pendingEdges.remove(top);
+        int lowLink = lowLinks.get(vertex);
+        if (lowLink == indexes.get(vertex)) {
+          popComponent(vertex);
+        }
+        if (top > 0) {
+          V parent = path.get(top - 1);
+          lowLinks.put(parent, Math.min(lowLinks.get(parent), lowLink));
+        }
+      }
+    }
+  }
+
+  private void push(V vertex, List<V> path, List<Iterator<? extends Edge>> pendingEdges) {
+    int index = indexes.size();
+    indexes.put(vertex, index);
+    lowLinks.put(vertex, index);
+    stack.add(vertex);
+    stacked.add(vertex);
+    path.add(vertex);
+    pendingEdges.add(graph.getOutgoingEdges(vertex).iterator());
+  }
+
+  private void popComponent(V root) {
+    Set<V> component = new HashSet<V>();
+    int componentIndex = components.size();
+    V vertex;
+    do {
+      vertex = stack.remove(stack.size() - 1);
+      stacked.remove(vertex);
+      component.add(vertex);
+      componentIndexes.put(vertex, componentIndex);
+    } while (!vertex.equals(root));
+    components.add(component);
+  }
+
+  /**
+   * All the components, including single vertices which are not part of a cycle. A component is always listed before
+   * the components that depend on it (reverse topological order).
+   */
+  public List<Set<V>> getComponents() {
+    return components;
+  }
+
+  /**
+   * The components which contain at least one cycle.
+   */
+  public List<Set<V>> getCyclicComponents() {
+    List<Set<V>> result = new ArrayList<Set<V>>();
+    for (Set<V> component : components) {
+      if (isCyclic(component)) {
+        result.add(component);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return null if the vertex is not part of the analyzed vertices
+   */
+  public Set<V> getComponent(V vertex) {
+    Integer index = componentIndexes.get(vertex);
+    return index == null ? null : components.get(index);
+  }
+
+  /**
+   * Two vertices are in the same component if and only if a cycle goes through both of them.
+   */
+  public boolean inSameComponent(V from, V to) {
+    Integer fromIndex = componentIndexes.get(from);
+    return fromIndex != null && fromIndex.equals(componentIndexes.get(to));
+  }
+
+  public boolean isCyclic(Set<V> component) {
+    return component.size() > 1 || verticesWithLoop.containsAll(component);
+  }
+
+  public boolean isAcyclicGraph() {
+    return getCyclicComponents().isEmpty();
+  }
+}
@@ -25,6 +25,7 @@ import org.sonar.graph.Dsm;
 import org.sonar.graph.DsmScanner;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -74,4 +75,24 @@ public class DsmTest {
     assertThat(dsm.getNumberOfIncomingEdges(0, 0, 4), equalTo(1));
     assertThat(dsm.getNumberOfIncomingEdges(4, 0, 4), equalTo(0));
   }
+
+  @Test
+  public void testGetIndexesOfNonEmptyCells() {
+    assertArrayEquals(new int[] {1, 2}, dsm.getOutgoingIndexes(0));
+    assertArrayEquals(new int[] {1}, dsm.getIncomingIndexes(0));
+    assertArrayEquals(new int[] {3}, dsm.getOutgoingIndexes(4));
+    assertArrayEquals(new int[0], dsm.getIncomingIndexes(4));
+
+    dsm.permute(0, 1);
+    assertArrayEquals(new int[] {0, 2}, dsm.getOutgoingIndexes(1));
+    assertArrayEquals(new int[] {1}, dsm.getIncomingIndexes(0));
+  }
+
+  @Test
+  public void testGetVerticesAfterPermutation() {
+    dsm.permute(0, 4);
+    assertArrayEquals(new Object[] {"E", "B", "C", "D", "A"}, dsm.getVertices());
+    assertEquals(5, dsm.getCell(0, 3).getWeight());
+    assertEquals(0, dsm.getCell(3, 0).getWeight());
+  }
 }
@@ -0,0 +1,117 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.graph;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EadesFeedbackEdgeSetSolverTest {
+
+  @Test
+  public void acyclicGraph() {
+    DirectedGraph<String, StringEdge> dag = DirectedGraph.createStringDirectedGraph();
+    dag.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C");
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dag);
+    assertTrue(solver.isAcyclicGraph());
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(0));
+  }
+
+  @Test
+  public void shouldRemoveLightestEdgeOfSimpleLoop() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B", 3).addEdge("B", "A", 1);
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dcg);
+    assertThat(solver.getFeedbackEdgeSet().size(), is(1));
+    assertTrue(solver.getFeedbackEdgeSet().contains(dcg.getEdge("B", "A")));
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(1));
+  }
+
+  @Test
+  public void complexGraph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B", 7).addEdge("B", "C", 3).addEdge("C", "D", 1).addEdge("D", "A", 3);
+    dcg.addEdge("B", "A", 12);
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dcg);
+    assertThat(solver.getFeedbackEdgeSet().size(), is(1));
+    assertTrue(solver.getFeedbackEdgeSet().contains(dcg.getEdge("A", "B")));
+  }
+
+  @Test
+  public void sameResultAsIncrementalSolverOnSmallGraph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D").addEdge("D", "A");
+    dcg.addEdge("C", "A");
+    dcg.addEdge("B", "A");
+    dcg.addEdge("A", "E").addEdge("E", "C");
+    dcg.addEdge("E", "D");
+    dcg.addEdge("E", "F");
+    dcg.addEdge("F", "C");
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dcg);
+    assertThat(solver.getWeightOfFeedbackEdgeSet(), is(2));
+    assertAcyclicWithout(dcg, solver.getFeedbackEdgeSet());
+  }
+
+  @Test
+  public void loopOnVertex() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "A").addEdge("A", "B");
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dcg);
+    assertThat(solver.getFeedbackEdgeSet().size(), is(1));
+    assertTrue(solver.getFeedbackEdgeSet().contains(dcg.getEdge("A", "A")));
+  }
+
+  @Test
+  public void shouldBreakAllCyclesOfLargeRandomGraph() {
+    DirectedGraph<String, StringEdge> dcg = randomGraph(2000, 4, new Random(42));
+
+    EadesFeedbackEdgeSetSolver<String> solver = new EadesFeedbackEdgeSetSolver<String>(dcg);
+    assertFalse(solver.isAcyclicGraph());
+    assertAcyclicWithout(dcg, solver.getFeedbackEdgeSet());
+  }
+
+  static DirectedGraph<String, StringEdge> randomGraph(int vertices, int edgesPerVertex, Random random) {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    for (int i = 0; i < vertices; i++) {
+      for (int j = 0; j < edgesPerVertex; j++) {
+        int to = random.nextInt(vertices);
+        if (to != i && !graph.hasEdge("V" + i, "V" + to)) {
+          graph.addEdge("V" + i, "V" + to, 1 + random.nextInt(10));
+        }
+      }
+    }
+    return graph;
+  }
+
+  private static void assertAcyclicWithout(DirectedGraph<String, StringEdge> graph, Set<Edge> feedbackEdges) {
+    assertTrue(new StronglyConnectedComponents<String>(graph, graph.getVertices(), feedbackEdges).isAcyclicGraph());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StronglyConnectedComponentsTest {
+
+  @Test
+  public void acyclicGraph() {
+    DirectedGraph<String, StringEdge> dag = DirectedGraph.createStringDirectedGraph();
+    dag.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C");
+
+    StronglyConnectedComponents<String> sccs = new StronglyConnectedComponents<String>(dag);
+    assertThat(sccs.getComponents().size(), is(3));
+    assertThat(sccs.getCyclicComponents().size(), is(0));
+    assertTrue(sccs.isAcyclicGraph());
+    // reverse topological order
+    assertThat(sccs.getComponents().get(0), is(set("C")));
+    assertThat(sccs.getComponents().get(2), is(set("A")));
+  }
+
+  @Test
+  public void cyclicComponents() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "A");
+    dcg.addEdge("B", "C");
+    dcg.addEdge("C", "D").addEdge("D", "E").addEdge("E", "C");
+    dcg.addEdge("E", "F");
+
+    StronglyConnectedComponents<String> sccs = new StronglyConnectedComponents<String>(dcg);
+    assertThat(sccs.getComponents().size(), is(3));
+    List<Set<String>> cyclic = sccs.getCyclicComponents();
+    assertThat(cyclic.size(), is(2));
+    assertThat(cyclic.get(0), is(set("C", "D", "E")));
+    assertThat(cyclic.get(1), is(set("A", "B")));
+    assertFalse(sccs.isAcyclicGraph());
+    assertTrue(sccs.inSameComponent("C", "E"));
+    assertFalse(sccs.inSameComponent("B", "C"));
+    assertThat(sccs.getComponent("D"), is(set("C", "D", "E")));
+    assertThat(sccs.getComponent("Z"), nullValue());
+  }
+
+  @Test
+  public void vertexWithLoop() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "A").addEdge("A", "B");
+
+    StronglyConnectedComponents<String> sccs = new StronglyConnectedComponents<String>(dcg);
+    assertThat(sccs.getCyclicComponents().size(), is(1));
+    assertThat(sccs.getCyclicComponents().get(0), is(set("A")));
+  }
+
+  @Test
+  public void excludeEdgesAndVertices() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+
+    Set<Edge> excludedEdges = new HashSet<Edge>();
+    excludedEdges.add(dcg.getEdge("C", "A"));
+    assertTrue(new StronglyConnectedComponents<String>(dcg, dcg.getVertices(), excludedEdges).isAcyclicGraph());
+    assertTrue(new StronglyConnectedComponents<String>(dcg, Arrays.asList("A", "B")).isAcyclicGraph());
+  }
+
+  @Test
+  public void shouldNotOverflowStackOnLongChains() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    int size = 100000;
+    for (int i = 0; i < size; i++) {
+      dcg.addEdge("V" + i, "V" + (i + 1));
+    }
+    dcg.addEdge("V" + size, "V0");
+
+    StronglyConnectedComponents<String> sccs = new StronglyConnectedComponents<String>(dcg);
+    assertThat(sccs.getComponents().size(), is(1));
+    assertThat(sccs.getComponents().get(0).size(), is(size + 1));
+  }
+
+  private static Set<String> set(String... vertices) {
+    return new HashSet<String>(Arrays.asList(vertices));
+  }
+}
@@ -27,6 +27,17 @@ import org.sonar.channel.CodeReader;
  */
 public final class Markdown {
 
+  /**
+   * Channels keep some state (regular expression matchers, buffers) during conversion, so they can not be shared
+   * between threads. Each thread reuses its own dispatcher : patterns are compiled once per thread instead of once per call.
+   */
+  private static final ThreadLocal<Markdown> INSTANCES = new ThreadLocal<Markdown>() {
+    @Override
+    protected Markdown initialValue() {
+      return new Markdown();
+    }
+  };
+
   private ChannelDispatcher<MarkdownOutput> dispatcher;
 
   private Markdown() {
@@ -49,7 +60,20 @@ public final class Markdown {
     return output.toString();
   }
 
+  /**
+   * This method is thread-safe.
+   */
   public static String convertToHtml(String input) {
-    return new Markdown().convert(input);
+    boolean success = false;
+    try {
+      String html = INSTANCES.get().convert(input);
+      success = true;
+      return html;
+    } finally {
+      if (!success) {
+        // state of channels can be inconsistent
+        INSTANCES.remove();
+      }
+    }
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.markdown;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of conversions, to be used when the same texts are converted many times, for example
+ * rule descriptions on server side. Least recently used entries are evicted first. Texts longer than
+ * the maximum length are converted but not cached. This class is thread-safe.
+ *
+ * @since 3.5
+ */
+public final class MarkdownCache {
+
+  private final int maxInputLength;
+  private final Map<String, String> htmlByInput;
+  private long hits = 0;
+  private long misses = 0;
+
+  public MarkdownCache(final int maxSize, int maxInputLength) {
+    this.maxInputLength = maxInputLength;
+    this.htmlByInput = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public String convertToHtml(String input) {
+    if (input.length() > maxInputLength) {
+      return Markdown.convertToHtml(input);
+    }
+    String html;
+    synchronized (this) {
+      html = htmlByInput.get(input);
+      if (html != null) {
+        hits++;
+        return html;
+      }
+      misses++;
+    }
+    // conversion is done outside of the lock
+    html = Markdown.convertToHtml(input);
+    synchronized (this) {
+      htmlByInput.put(input, html);
+    }
+    return html;
+  }
+
+  public synchronized int size() {
+    return htmlByInput.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized void clear() {
+    htmlByInput.clear();
+  }
+}
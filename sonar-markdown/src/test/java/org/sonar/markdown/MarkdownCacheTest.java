@@ -0,0 +1,65 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.markdown;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MarkdownCacheTest {
+
+  @Test
+  public void shouldCacheConversions() {
+    MarkdownCache cache = new MarkdownCache(10, 100);
+
+    assertThat(cache.convertToHtml("This is *important*"), is("This is <em>important</em>"));
+    assertThat(cache.convertToHtml("This is *important*"), is("This is <em>important</em>"));
+
+    assertThat(cache.size(), is(1));
+    assertThat(cache.getMisses(), is(1L));
+    assertThat(cache.getHits(), is(1L));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsed() {
+    MarkdownCache cache = new MarkdownCache(2, 100);
+
+    cache.convertToHtml("one");
+    cache.convertToHtml("two");
+    cache.convertToHtml("one");
+    cache.convertToHtml("three");
+    assertThat(cache.size(), is(2));
+
+    cache.convertToHtml("one");
+    assertThat(cache.getHits(), is(2L));
+    cache.convertToHtml("two");
+    assertThat(cache.getMisses(), is(4L));
+  }
+
+  @Test
+  public void shouldNotCacheLongTexts() {
+    MarkdownCache cache = new MarkdownCache(10, 5);
+
+    assertThat(cache.convertToHtml("*long text*"), is("<em>long text</em>"));
+
+    assertThat(cache.size(), is(0));
+  }
+}
@@ -24,6 +24,14 @@ import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class MarkdownTest {
 
   @Test
@@ -81,4 +89,24 @@ public class MarkdownTest {
     assertThat(Markdown.convertToHtml("My text is $123 ''"), is("My text is $123 ''"));
   }
 
+  @Test
+  public void shouldBeThreadSafe() throws Exception {
+    final String input = "  * one\r* *two*\r\nSee http://sonarsource.org and ``code``\n``java\nfoo\n``";
+    final String expected = Markdown.convertToHtml(input);
+    Collection<Callable<String>> tasks = new ArrayList<Callable<String>>();
+    for (int i = 0; i < 100; i++) {
+      tasks.add(new Callable<String>() {
+        public String call() {
+          return Markdown.convertToHtml(input);
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    List<Future<String>> futures = executor.invokeAll(tasks);
+    executor.shutdown();
+
+    for (Future<String> future : futures) {
+      assertThat(future.get(), is(expected));
+    }
+  }
 }
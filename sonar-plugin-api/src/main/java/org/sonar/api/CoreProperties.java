@@ -376,6 +376,32 @@ public interface CoreProperties {
    */
   String TASK = "sonar.task";
 
+  /**
+   * Compute syntax highlighting of sources during analysis, so that the server does not tokenize sources on each display.
+   * Only the languages whose {@link org.sonar.api.web.CodeColorizerFormat} is also a batch extension are concerned.
+   *
+   * @since 3.5
+   */
+  String PRECOMPUTE_HIGHLIGHTING = "sonar.highlighting.precompute";
+  boolean PRECOMPUTE_HIGHLIGHTING_DEFAULT_VALUE = false;
+
+  /**
+   * Insert the dependencies registered by sensors in batch, once all the sensors have been executed. Ids of dependencies
+   * are not available to sensors when enabled.
+   *
+   * @since 3.5
+   */
+  String BATCH_INSERT_DEPENDENCIES = "sonar.dependencies.batchInsert";
+  boolean BATCH_INSERT_DEPENDENCIES_DEFAULT_VALUE = false;
+
+  /**
+   * Global property changed at the end of each analysis. Its value is the id of the last processed snapshot. It is used
+   * by the server to detect that its cached results are out-of-date.
+   *
+   * @since 3.5
+   */
+  String ANALYSIS_GENERATION = "sonar.core.analysisGeneration";
+
   /**
    * @deprecated replaced in v3.4 by properties specific to languages, for example sonar.java.coveragePlugin
    * See http://jira.codehaus.org/browse/SONARJAVA-39 for more details.
@@ -46,6 +46,16 @@ public class EmailSettings implements BatchComponent, ServerComponent {
   public static final String PREFIX = "email.prefix";
   public static final String PREFIX_DEFAULT = "[SONAR]";
 
+  /**
+   * @since 3.5
+   */
+  public static final String SEND_THREADS = "email.sendThreads";
+
+  /**
+   * @since 3.5
+   */
+  public static final String SEND_THREADS_DEFAULT = "1";
+
   private final Settings settings;
 
   public EmailSettings(Settings settings) {
@@ -80,6 +90,15 @@ public class EmailSettings implements BatchComponent, ServerComponent {
     return get(PREFIX, PREFIX_DEFAULT);
   }
 
+  /**
+   * Maximum number of emails sent concurrently, each thread using its own SMTP connection
+   *
+   * @since 3.5
+   */
+  public int getSendThreads() {
+    return Math.max(1, Integer.parseInt(get(SEND_THREADS, SEND_THREADS_DEFAULT)));
+  }
+
   public String getServerBaseURL() {
     return get(CoreProperties.SERVER_BASE_URL, CoreProperties.SERVER_BASE_URL_DEFAULT_VALUE);
   }
@@ -41,6 +41,14 @@ public class SnapshotSource extends BaseIdentifiable {
   @Column(name = "data", updatable = true, nullable = true, length = DatabaseProperties.MAX_TEXT_SIZE)
   private String data;
 
+  /**
+   * Serialized {@link org.sonar.colorizer.SyntaxHighlighting}, computed during analysis.
+   * @since 3.5
+   */
+  @Lob
+  @Column(name = "highlighting", updatable = true, nullable = true, length = DatabaseProperties.MAX_TEXT_SIZE)
+  private String highlighting;
+
   public SnapshotSource() {
   }
 
@@ -66,6 +74,21 @@ public class SnapshotSource extends BaseIdentifiable {
     this.data = data;
   }
 
+  /**
+   * @since 3.5
+   */
+  public String getHighlighting() {
+    return highlighting;
+  }
+
+  /**
+   * @since 3.5
+   */
+  public SnapshotSource setHighlighting(String highlighting) {
+    this.highlighting = highlighting;
+    return this;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof SnapshotSource)) {
@@ -20,7 +20,9 @@
 package org.sonar.api.notifications;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
@@ -86,6 +88,16 @@ public class Notification implements Serializable {
     return fields.get(field);
   }
 
+  /**
+   * Returns all the fields of the notification
+   *
+   * @return the read-only map of values by field names
+   * @since 3.5
+   */
+  public Map<String, String> getFieldValues() {
+    return Collections.unmodifiableMap(fields);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof Notification)) {
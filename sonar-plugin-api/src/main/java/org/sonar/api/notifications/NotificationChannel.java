@@ -19,8 +19,12 @@
  */
 package org.sonar.api.notifications;
 
+import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerExtension;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  * Plugins should extend this class to provide implementation on a specific way to deliver notifications.
@@ -31,6 +35,10 @@ import org.sonar.api.ServerExtension;
  * <li>email (digest) - collects notifications and sends them together once a day</li>
  * <li>gtalk - sends a chat message as soon as possible</li>
  * </ul>
+ * <p>
+ * A channel is never called concurrently by the notification service, so implementations do not need to be thread-safe.
+ * Different channels may deliver at the same time.
+ * </p>
  * 
  * @since 2.10
  */
@@ -53,6 +61,28 @@ public abstract class NotificationChannel implements ServerExtension {
    */
   public abstract void deliver(Notification notification, String userlogin);
 
+  /**
+   * Implements the delivery of several notifications. By default notifications are delivered one by one with
+   * {@link #deliver(Notification, String)}. Channels can override this method in order to share resources, for example
+   * a connection, between deliveries.
+   *
+   * @param notificationsByUserlogin the notifications to deliver, grouped by login of the user who should receive them.
+   *                                 The notifications of a user are sorted in the order of delivery.
+   * @since 3.5
+   */
+  public void deliver(Map<String, List<Notification>> notificationsByUserlogin) {
+    for (Map.Entry<String, List<Notification>> entry : notificationsByUserlogin.entrySet()) {
+      String userlogin = entry.getKey();
+      for (Notification notification : entry.getValue()) {
+        try {
+          deliver(notification, userlogin);
+        } catch (Exception e) { // catch all exceptions in order to deliver the other notifications
+          LoggerFactory.getLogger(getClass()).warn("Unable to deliver notification " + notification + " for user " + userlogin + " via " + this, e);
+        }
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return getKey();
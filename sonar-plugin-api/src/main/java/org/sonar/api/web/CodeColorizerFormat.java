@@ -26,6 +26,12 @@ import org.sonar.colorizer.Tokenizer;
 
 /**
  * Extend the library sonar-colorizer to support new languages. By default only Java sources are colorized in Sonar.
+ * <p>
+ * Since 3.5 the syntax highlighting can be computed during analysis (see {@link org.sonar.api.CoreProperties#PRECOMPUTE_HIGHLIGHTING}).
+ * A format is used on batch side only if its implementation also implements {@link org.sonar.api.BatchExtension}, preferably
+ * with the instantiation strategy {@link org.sonar.api.batch.InstantiationStrategy#PER_BATCH}. Such an implementation must not
+ * depend on server components. The other formats are still applied by the server when the source code is displayed.
+ * </p>
  * 
  * @since 1.12
  */
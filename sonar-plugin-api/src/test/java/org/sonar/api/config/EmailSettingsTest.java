@@ -45,5 +45,12 @@ public class EmailSettingsTest {
     assertThat(emailSettings.getFrom()).isEqualTo("noreply@nowhere");
     assertThat(emailSettings.getPrefix()).isEqualTo("[SONAR]");
     assertThat(emailSettings.getServerBaseURL()).isEqualTo(CoreProperties.SERVER_BASE_URL_DEFAULT_VALUE);
+    assertThat(emailSettings.getSendThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_return_at_least_one_send_thread() {
+    assertThat(new EmailSettings(new Settings().setProperty(EmailSettings.SEND_THREADS, "4")).getSendThreads()).isEqualTo(4);
+    assertThat(new EmailSettings(new Settings().setProperty(EmailSettings.SEND_THREADS, "0")).getSendThreads()).isEqualTo(1);
   }
 }
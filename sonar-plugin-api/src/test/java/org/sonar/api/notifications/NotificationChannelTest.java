@@ -24,6 +24,12 @@ import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class NotificationChannelTest {
 
   @Test
@@ -33,9 +39,40 @@ public class NotificationChannelTest {
     assertThat(channel.toString(), is("FakeNotificationChannel"));
   }
 
+  @Test
+  public void shouldDeliverSeveralNotificationsOneByOne() {
+    FakeNotificationChannel channel = new FakeNotificationChannel();
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+    Map<String, List<Notification>> notificationsByUser = new LinkedHashMap<String, List<Notification>>();
+    notificationsByUser.put("simon", Arrays.asList(first, second));
+    notificationsByUser.put("evgeny", Arrays.asList(second));
+
+    channel.deliver(notificationsByUser);
+
+    assertThat(channel.deliveries, is(Arrays.asList("first to simon", "second to simon", "second to evgeny")));
+  }
+
+  @Test
+  public void shouldContinueDeliveryOnFailure() {
+    FakeNotificationChannel channel = new FakeNotificationChannel();
+    Map<String, List<Notification>> notificationsByUser = new LinkedHashMap<String, List<Notification>>();
+    notificationsByUser.put("simon", Arrays.asList(new Notification("failure"), new Notification("second")));
+
+    channel.deliver(notificationsByUser);
+
+    assertThat(channel.deliveries, is(Arrays.asList("second to simon")));
+  }
+
   class FakeNotificationChannel extends NotificationChannel {
+    private List<String> deliveries = new ArrayList<String>();
+
     @Override
     public void deliver(Notification notification, String username) {
+      if ("failure".equals(notification.getType())) {
+        throw new IllegalStateException("Fail to deliver");
+      }
+      deliveries.add(notification.getType() + " to " + username);
     }
   }
 
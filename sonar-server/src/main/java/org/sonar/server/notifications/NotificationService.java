@@ -20,9 +20,14 @@
 package org.sonar.server.notifications;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.ServerComponent;
@@ -40,7 +45,12 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -53,20 +63,49 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "60",
     name = "Delay of notifications, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Maximum number of notifications read from the queue at once",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_DELIVERY_THREADS,
+    defaultValue = "4",
+    name = "Number of threads used to deliver notifications, at most one per channel",
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent {
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
 
+  /**
+   * @since 3.5
+   */
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+
+  /**
+   * @since 3.5
+   */
+  public static final String PROPERTY_DELIVERY_THREADS = "sonar.notifications.deliveryThreads";
+
+  static final int DEFAULT_BATCH_SIZE = 100;
+  static final int DEFAULT_DELIVERY_THREADS = 4;
+
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(Logs.INFO).setLevelToDebug();
 
   private final long delayInSeconds;
+  private final int batchSize;
+  private final int deliveryThreads;
   private final DefaultNotificationManager manager;
   private final NotificationChannel[] channels;
   private final NotificationDispatcher[] dispatchers;
 
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  // deliveries are executed in the thread of processQueue() until the service is started
+  private ExecutorService deliveryService = MoreExecutors.sameThreadExecutor();
+  private volatile boolean stopping = false;
 
   /**
    * Default constructor when no channels.
@@ -78,12 +117,20 @@ public class NotificationService implements ServerComponent {
 
   public NotificationService(Settings settings, DefaultNotificationManager manager, NotificationDispatcher[] dispatchers, NotificationChannel[] channels) {
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
+    batchSize = getPositiveInt(settings, PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    deliveryThreads = getPositiveInt(settings, PROPERTY_DELIVERY_THREADS, DEFAULT_DELIVERY_THREADS);
     this.manager = manager;
     this.channels = channels;
     this.dispatchers = dispatchers;
   }
 
+  private static int getPositiveInt(Settings settings, String key, int defaultValue) {
+    int value = settings.getInt(key);
+    return value > 0 ? value : defaultValue;
+  }
+
   public void start() {
+    deliveryService = Executors.newFixedThreadPool(Math.min(deliveryThreads, Math.max(1, channels.length)));
     executorService = Executors.newSingleThreadScheduledExecutor();
     executorService.scheduleWithFixedDelay(new Runnable() {
       public void run() {
@@ -96,71 +143,203 @@ public class NotificationService implements ServerComponent {
   public void stop() {
     try {
       stopping = true;
-      executorService.shutdown();
-      executorService.awaitTermination(5, TimeUnit.SECONDS);
+      if (executorService != null) {
+        executorService.shutdown();
+        executorService.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      deliveryService.shutdown();
     } catch (InterruptedException e) {
       Logs.INFO.error("Error during stop of notification service", e);
     }
     Logs.INFO.info("Notification service stopped");
   }
 
+  /**
+   * Notifications are removed from the queue once delivered, so that a stop of the server does not lose them.
+   * Delivery tasks which have not started yet when the service is stopped are cancelled, and their notifications
+   * stay in the queue.
+   */
   @VisibleForTesting
   synchronized void processQueue() {
     TIME_PROFILER.start("Processing notifications queue");
 
-    NotificationQueueElement queueElement = manager.getFromQueue();
-    while (queueElement != null) {
-      deliver(queueElement.getNotification());
-      if (stopping) {
-        break;
+    List<NotificationQueueElement> queueElements = manager.readQueue(batchSize);
+    if (!queueElements.isEmpty()) {
+      // settings of users are loaded once per cycle instead of being requested for each recipient
+      SetMultimap<String, String> enabledNotificationKeys = manager.getEnabledNotificationKeys();
+      while (!queueElements.isEmpty()) {
+        List<Delivery> deliveries = Lists.newArrayList();
+        for (NotificationQueueElement queueElement : queueElements) {
+          Notification notification = getNotification(queueElement);
+          if (notification != null) {
+            deliveries.addAll(getDeliveries(queueElement, notification, enabledNotificationKeys));
+          }
+        }
+        Set<NotificationQueueElement> undelivered = deliver(deliveries);
+        // notifications which can not be read are removed too, otherwise they would block the queue
+        List<NotificationQueueElement> processed = Lists.newArrayList();
+        for (NotificationQueueElement queueElement : queueElements) {
+          if (!undelivered.contains(queueElement)) {
+            processed.add(queueElement);
+          }
+        }
+        manager.removeFromQueue(processed);
+        if (stopping || !undelivered.isEmpty()) {
+          break;
+        }
+        queueElements = manager.readQueue(batchSize);
       }
-      queueElement = manager.getFromQueue();
     }
 
     TIME_PROFILER.stop();
   }
 
-  private void deliver(Notification notification) {
+  private static Notification getNotification(NotificationQueueElement queueElement) {
+    try {
+      return queueElement.getNotification();
+    } catch (RuntimeException e) {
+      Logs.INFO.error("Unable to read notification " + queueElement.getId() + ", it is removed from the queue", e);
+      return null;
+    }
+  }
+
+  private List<Delivery> getDeliveries(NotificationQueueElement queueElement, Notification notification,
+      SetMultimap<String, String> enabledNotificationKeys) {
     Logs.INFO.debug("Delivering notification " + notification);
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
-    for (NotificationChannel channel : channels) {
-      for (NotificationDispatcher dispatcher : dispatchers) {
-        final Set<String> possibleRecipients = Sets.newHashSet();
-        NotificationDispatcher.Context context = new NotificationDispatcher.Context() {
-          public void addUser(String username) {
-            if (username != null) {
-              possibleRecipients.add(username);
-            }
+    for (NotificationDispatcher dispatcher : dispatchers) {
+      final Set<String> possibleRecipients = Sets.newHashSet();
+      NotificationDispatcher.Context context = new NotificationDispatcher.Context() {
+        public void addUser(String username) {
+          if (username != null) {
+            possibleRecipients.add(username);
           }
-        };
-        try {
-          dispatcher.dispatch(notification, context);
-        } catch (Exception e) { // catch all exceptions in order to dispatch using other dispatchers
-          Logs.INFO.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
         }
-        for (String username : possibleRecipients) {
-          if (manager.isEnabled(username, channel.getKey(), dispatcher.getKey())) {
+      };
+      try {
+        dispatcher.dispatch(notification, context);
+      } catch (Exception e) { // catch all exceptions in order to dispatch using other dispatchers
+        Logs.INFO.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
+      }
+      for (String username : possibleRecipients) {
+        Set<String> userNotificationKeys = enabledNotificationKeys.get(username);
+        for (NotificationChannel channel : channels) {
+          if (userNotificationKeys.contains(DefaultNotificationManager.getNotificationKey(dispatcher.getKey(), channel.getKey()))) {
             recipients.put(username, channel);
           }
         }
       }
     }
-    dispatch(notification, recipients);
-  }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+    List<Delivery> deliveries = Lists.newArrayList();
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      Logs.INFO.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
+      Logs.INFO.debug("For user {} via {}", entry.getKey(), entry.getValue());
+      for (NotificationChannel channel : entry.getValue()) {
+        deliveries.add(new Delivery(queueElement, notification, entry.getKey(), channel));
+      }
+    }
+    return deliveries;
+  }
+
+  /**
+   * Channels are not required to be thread-safe, so the deliveries of a channel are executed by a single task.
+   * Different channels deliver in parallel. A task keeps the order of the queue.
+   *
+   * @return the queue elements which have not been delivered to all their recipients because the service is stopping
+   */
+  private Set<NotificationQueueElement> deliver(List<Delivery> deliveries) {
+    ListMultimap<NotificationChannel, Delivery> deliveriesByChannel = ArrayListMultimap.create();
+    for (Delivery delivery : deliveries) {
+      deliveriesByChannel.put(delivery.channel, delivery);
+    }
+
+    List<DeliveryTask> tasks = Lists.newArrayList();
+    List<Future<Boolean>> futures = Lists.newArrayList();
+    for (Collection<Delivery> channelDeliveries : deliveriesByChannel.asMap().values()) {
+      DeliveryTask task = new DeliveryTask(channelDeliveries);
+      tasks.add(task);
+      try {
+        futures.add(deliveryService.submit(task));
+      } catch (RejectedExecutionException e) {
+        // the service is stopped
+        futures.add(null);
+      }
+    }
+
+    Set<NotificationQueueElement> undelivered = Sets.newHashSet();
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      boolean done = false;
+      if (!interrupted && futures.get(i) != null) {
         try {
-          channel.deliver(notification, username);
-        } catch (Exception e) { // catch all exceptions in order to deliver via other channels
-          Logs.INFO.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+          done = futures.get(i).get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          Logs.INFO.warn("Interrupted during delivery of notifications", e);
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // not retried, as the failures of channels
+          Logs.INFO.warn("Unable to deliver notifications", e);
+          done = true;
+        }
+      }
+      if (!done) {
+        for (Delivery delivery : tasks.get(i).deliveries) {
+          undelivered.add(delivery.queueElement);
         }
       }
     }
+    return undelivered;
+  }
+
+  private static final class Delivery {
+    private final NotificationQueueElement queueElement;
+    private final Notification notification;
+    private final String username;
+    private final NotificationChannel channel;
+
+    private Delivery(NotificationQueueElement queueElement, Notification notification, String username, NotificationChannel channel) {
+      this.queueElement = queueElement;
+      this.notification = notification;
+      this.username = username;
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Deliveries of a task share the same channel. Returns false if cancelled because the service is stopping.
+   */
+  private class DeliveryTask implements Callable<Boolean> {
+    private final Collection<Delivery> deliveries;
+
+    private DeliveryTask(Collection<Delivery> deliveries) {
+      this.deliveries = deliveries;
+    }
+
+    public Boolean call() {
+      if (stopping) {
+        return Boolean.FALSE;
+      }
+      NotificationChannel channel = deliveries.iterator().next().channel;
+      Map<String, List<Notification>> notificationsByUsername = Maps.newLinkedHashMap();
+      for (Delivery delivery : deliveries) {
+        List<Notification> notifications = notificationsByUsername.get(delivery.username);
+        if (notifications == null) {
+          notifications = Lists.newArrayList();
+          notificationsByUsername.put(delivery.username, notifications);
+        }
+        notifications.add(delivery.notification);
+      }
+      try {
+        channel.deliver(notificationsByUsername);
+      } catch (Exception e) { // catch all exceptions in order to deliver via other channels
+        Logs.INFO.warn("Unable to deliver notifications via " + channel, e);
+      } finally {
+        // channels can use the database session of the thread, for example to load users
+        manager.releaseSession();
+      }
+      return Boolean.TRUE;
+    }
   }
 
   public List<NotificationDispatcher> getDispatchers() {
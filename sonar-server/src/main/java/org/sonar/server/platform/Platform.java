@@ -54,6 +54,7 @@ import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.persistence.SemaphoresImpl;
 import org.sonar.core.qualitymodel.DefaultModelFinder;
 import org.sonar.core.resource.DefaultResourcePermissions;
+import org.sonar.core.resource.ResourceSearchIndex;
 import org.sonar.core.rule.DefaultRuleFinder;
 import org.sonar.core.timemachine.Periods;
 import org.sonar.core.user.DefaultUserFinder;
@@ -243,6 +244,7 @@ public final class Platform {
     servicesContainer.addSingleton(NewUserNotifier.class);
     servicesContainer.addSingleton(SettingsChangeNotifier.class);
     servicesContainer.addSingleton(PageDecorations.class);
+    servicesContainer.addSingleton(ResourceSearchIndex.class);
     servicesContainer.addSingleton(MeasureFilterFactory.class);
     servicesContainer.addSingleton(MeasureFilterExecutor.class);
     servicesContainer.addSingleton(MeasureFilterEngine.class);
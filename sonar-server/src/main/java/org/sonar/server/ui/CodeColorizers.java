@@ -25,8 +25,12 @@ import org.sonar.api.utils.Logs;
 import org.sonar.api.web.CodeColorizerFormat;
 import org.sonar.colorizer.CodeColorizer;
 import org.sonar.colorizer.HtmlOptions;
+import org.sonar.colorizer.SynhtaxHighlightingException;
+import org.sonar.colorizer.SyntaxHighlighting;
 import org.sonar.colorizer.Tokenizer;
 
+import javax.annotation.Nullable;
+
 import java.io.StringReader;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,4 +60,20 @@ public class CodeColorizers implements ServerExtension {
     }
     return new CodeColorizer(tokenizers).toHtml(new StringReader(code), HtmlOptions.ONLY_SYNTAX);
   }
+
+  /**
+   * Renders the highlighting computed during analysis, if available. Otherwise the code is tokenized.
+   *
+   * @since 3.5
+   */
+  public String toHtml(String code, String language, @Nullable String highlighting) {
+    if (highlighting != null) {
+      try {
+        return SyntaxHighlighting.parse(highlighting).toHtml(code);
+      } catch (SynhtaxHighlightingException e) {
+        Logs.INFO.warn("Invalid syntax highlighting, code is tokenized again", e);
+      }
+    }
+    return toHtml(code, language);
+  }
 }
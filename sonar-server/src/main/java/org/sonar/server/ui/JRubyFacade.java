@@ -54,11 +54,13 @@ import org.sonar.core.persistence.Database;
 import org.sonar.core.persistence.DatabaseMigrator;
 import org.sonar.core.persistence.DryRunDatabaseFactory;
 import org.sonar.core.purge.PurgeDao;
+import org.sonar.core.resource.ResourceIndexDto;
 import org.sonar.core.resource.ResourceIndexerDao;
 import org.sonar.core.resource.ResourceKeyUpdaterDao;
+import org.sonar.core.resource.ResourceSearchIndex;
 import org.sonar.core.timemachine.Periods;
 import org.sonar.core.workflow.WorkflowEngine;
-import org.sonar.markdown.Markdown;
+import org.sonar.markdown.MarkdownCache;
 import org.sonar.server.configuration.Backup;
 import org.sonar.server.configuration.ProfilesManager;
 import org.sonar.server.notifications.reviews.ReviewsNotificationManager;
@@ -89,6 +91,7 @@ import java.util.Set;
 public final class JRubyFacade {
 
   private static final JRubyFacade SINGLETON = new JRubyFacade();
+  private static final MarkdownCache MARKDOWN_CACHE = new MarkdownCache(1000, 10000);
   private JRubyI18n i18n;
 
   public static JRubyFacade getInstance() {
@@ -205,8 +208,21 @@ public final class JRubyFacade {
     }
   }
 
+  /**
+   * @param highlighting the syntax highlighting computed during analysis, null if not available
+   * @since 3.5
+   */
+  public String colorizeCode(String code, String language, @Nullable String highlighting) {
+    try {
+      return get(CodeColorizers.class).toHtml(code, language, highlighting);
+    } catch (Exception e) {
+      LoggerFactory.getLogger(getClass()).error("Can not highlight the code, language= " + language, e);
+      return code;
+    }
+  }
+
   public static String markdownToHtml(String input) {
-    return Markdown.convertToHtml(input);
+    return MARKDOWN_CACHE.convertToHtml(input);
   }
 
   public List<ViewProxy<Widget>> getWidgets(String resourceScope, String resourceQualifier, String resourceLanguage, Object[] availableMeasures) {
@@ -426,16 +442,35 @@ public final class JRubyFacade {
   }
 
   public void indexProjects() {
-    get(ResourceIndexerDao.class).indexProjects();
+    get(ResourceIndexerDao.class).indexProjects(Runtime.getRuntime().availableProcessors());
+    invalidateResourceSearchIndex();
   }
 
   public void indexResource(long resourceId) {
     get(ResourceIndexerDao.class).indexResource(resourceId);
+    invalidateResourceSearchIndex();
+  }
+
+  private void invalidateResourceSearchIndex() {
+    // the index is not available during database migrations
+    ResourceSearchIndex searchIndex = get(ResourceSearchIndex.class);
+    if (searchIndex != null) {
+      searchIndex.invalidate();
+    }
+  }
+
+  /**
+   * Resources whose name contains the given text, sorted by name size
+   * @since 3.5
+   */
+  public List<ResourceIndexDto> searchResources(String text) {
+    return get(ResourceSearchIndex.class).search(text, null);
   }
 
   public void deleteResourceTree(long rootProjectId) {
     try {
       get(PurgeDao.class).deleteResourceTree(rootProjectId);
+      invalidateResourceSearchIndex();
     } catch (RuntimeException e) {
       LoggerFactory.getLogger(JRubyFacade.class).error("Fail to delete resource with ID: " + rootProjectId, e);
       throw e;
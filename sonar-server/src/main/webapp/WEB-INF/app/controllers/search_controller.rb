@@ -32,10 +32,11 @@ class SearchController < ApplicationController
     bad_request("Minimum search is #{ResourceIndex::MIN_SEARCH_SIZE} characters") if search.empty? || search.to_s.size<ResourceIndex::MIN_SEARCH_SIZE
 
     key = search.downcase
-    results = ResourceIndex.find(:all,
-                                 :select => 'distinct(resource_id),root_project_id,qualifier,name_size', # optimization to not load unused columns like 'kee'
-                                 :conditions => ["kee like ?", key + '%'],
-                                 :order => 'name_size')
+    # in-memory index of names, sorted by name size. Rows are not loaded from the table RESOURCE_INDEX.
+    results = java_facade.searchResources(key).map do |index|
+      ResourceIndex.new(:resource_id => index.getResourceId(), :root_project_id => index.getRootProjectId(),
+                        :qualifier => index.getQualifier(), :name_size => index.getNameSize())
+    end
 
     results = select_authorized(:user, results)
     @total = results.size
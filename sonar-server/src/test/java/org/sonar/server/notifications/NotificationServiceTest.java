@@ -19,23 +19,35 @@
  */
 package org.sonar.server.notifications;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.SetMultimap;
 import org.junit.Test;
+import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.core.notification.NotificationQueueElement;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +64,9 @@ public class NotificationServiceTest {
   private final NotificationDispatcher commentOnReviewAssignedToMe = mock(NotificationDispatcher.class);
   private final NotificationDispatcher commentOnReviewCreatedByMe = mock(NotificationDispatcher.class);
 
+  private final SetMultimap<String, String> enabledNotificationKeys = HashMultimap.create();
+  private final Settings settings = new Settings();
+
   private NotificationService service;
 
   private void setUpMocks(String creator, String assignee) {
@@ -60,12 +75,16 @@ public class NotificationServiceTest {
     when(commentOnReviewAssignedToMe.getKey()).thenReturn("comment on review assigned to me");
     when(commentOnReviewCreatedByMe.getKey()).thenReturn("comment on review created by me");
     when(queueElement.getNotification()).thenReturn(notification);
-    when(manager.getFromQueue()).thenReturn(queueElement).thenReturn(null);
+    when(manager.readQueue(anyInt())).thenReturn(Arrays.asList(queueElement)).thenReturn(Collections.<NotificationQueueElement>emptyList());
+    when(manager.getEnabledNotificationKeys()).thenReturn(enabledNotificationKeys);
     doAnswer(addUser(assignee)).when(commentOnReviewAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(creator)).when(commentOnReviewCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
-    Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L); // delay 1 second
+    settings.setProperty("sonar.notifications.delay", 1L); // delay 1 second
+    createService();
+  }
 
+  private void createService() {
     service = new NotificationService(settings, manager,
         new NotificationDispatcher[] {commentOnReviewAssignedToMe, commentOnReviewCreatedByMe},
         new NotificationChannel[] {emailChannel, gtalkChannel});
@@ -84,14 +103,14 @@ public class NotificationServiceTest {
   @Test
   public void scenario1() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
-    when(manager.isEnabled(CREATOR_SIMON, "email", "comment on review created by me")).thenReturn(true);
-    when(manager.isEnabled(ASSIGNEE_SIMON, "email", "comment on review assigned to me")).thenReturn(true);
+    enable(CREATOR_SIMON, "email", "comment on review created by me");
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
 
     service.start();
-    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
     service.stop();
 
-    verify(gtalkChannel, never()).deliver(notification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, never()).deliver(anyNotifications());
   }
 
   /**
@@ -108,16 +127,16 @@ public class NotificationServiceTest {
   @Test
   public void scenario2() {
     setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
-    when(manager.isEnabled(CREATOR_EVGENY, "gtalk", "comment on review created by me")).thenReturn(true);
-    when(manager.isEnabled(ASSIGNEE_SIMON, "email", "comment on review assigned to me")).thenReturn(true);
+    enable(CREATOR_EVGENY, "gtalk", "comment on review created by me");
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
 
     service.start();
-    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
-    verify(gtalkChannel, timeout(2000)).deliver(notification, CREATOR_EVGENY);
+    verify(emailChannel, timeout(2000)).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
+    verify(gtalkChannel, timeout(2000)).deliver(notificationsFor(CREATOR_EVGENY, 1));
     service.stop();
 
-    verify(emailChannel, never()).deliver(notification, CREATOR_EVGENY);
-    verify(gtalkChannel, never()).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, times(1)).deliver(anyNotifications());
+    verify(gtalkChannel, times(1)).deliver(anyNotifications());
   }
 
   /**
@@ -133,16 +152,16 @@ public class NotificationServiceTest {
   @Test
   public void scenario3() {
     setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
-    when(manager.isEnabled(ASSIGNEE_SIMON, "email", "comment on review assigned to me")).thenReturn(true);
-    when(manager.isEnabled(ASSIGNEE_SIMON, "gtalk", "comment on review assigned to me")).thenReturn(true);
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
+    enable(ASSIGNEE_SIMON, "gtalk", "comment on review assigned to me");
 
     service.start();
-    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
-    verify(gtalkChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
+    verify(gtalkChannel, timeout(2000)).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
     service.stop();
 
-    verify(emailChannel, never()).deliver(notification, CREATOR_EVGENY);
-    verify(gtalkChannel, never()).deliver(notification, CREATOR_EVGENY);
+    verify(emailChannel, times(1)).deliver(anyNotifications());
+    verify(gtalkChannel, times(1)).deliver(anyNotifications());
   }
 
   /**
@@ -162,8 +181,117 @@ public class NotificationServiceTest {
     service.start();
     service.stop();
 
-    verify(emailChannel, never()).deliver(any(Notification.class), anyString());
-    verify(gtalkChannel, never()).deliver(any(Notification.class), anyString());
+    verify(emailChannel, never()).deliver(anyNotifications());
+    verify(gtalkChannel, never()).deliver(anyNotifications());
+  }
+
+  @Test
+  public void shouldDeliverSeveralBatchesOfNotifications() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
+    enable(CREATOR_EVGENY, "gtalk", "comment on review created by me");
+    when(manager.readQueue(anyInt()))
+        .thenReturn(Arrays.asList(queueElement, queueElement))
+        .thenReturn(Arrays.asList(queueElement))
+        .thenReturn(Collections.<NotificationQueueElement>emptyList());
+
+    service.processQueue();
+
+    verify(manager, times(3)).readQueue(NotificationService.DEFAULT_BATCH_SIZE);
+    verify(manager, times(1)).getEnabledNotificationKeys();
+    verify(emailChannel).deliver(notificationsFor(ASSIGNEE_SIMON, 2));
+    verify(emailChannel).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
+    verify(gtalkChannel).deliver(notificationsFor(CREATOR_EVGENY, 2));
+    verify(gtalkChannel).deliver(notificationsFor(CREATOR_EVGENY, 1));
+    verify(manager).removeFromQueue(Arrays.asList(queueElement, queueElement));
+    verify(manager).removeFromQueue(Arrays.asList(queueElement));
+    verify(manager, atLeastOnce()).releaseSession();
+  }
+
+  @Test
+  public void shouldReadConfiguredNumberOfNotifications() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    settings.setProperty(NotificationService.PROPERTY_BATCH_SIZE, 10);
+    createService();
+
+    service.processQueue();
+
+    verify(manager, times(2)).readQueue(10);
+  }
+
+  @Test
+  public void shouldKeepNotificationsInQueueIfStoppedDuringDelivery() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
+    enable(CREATOR_EVGENY, "gtalk", "comment on review created by me");
+    // the service is not started, so deliveries via email and gtalk are executed one after the other
+    Answer<Object> stopService = new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        service.stop();
+        return null;
+      }
+    };
+    doAnswer(stopService).when(emailChannel).deliver(anyNotifications());
+    doAnswer(stopService).when(gtalkChannel).deliver(anyNotifications());
+
+    service.processQueue();
+
+    // the first delivery stops the service, so the second one is cancelled
+    verify(manager, times(1)).readQueue(anyInt());
+    verify(manager).removeFromQueue(Collections.<NotificationQueueElement>emptyList());
+  }
+
+  @Test
+  public void shouldRemoveNotificationsWhichCanNotBeRead() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
+    NotificationQueueElement corruptedElement = mock(NotificationQueueElement.class);
+    when(corruptedElement.getNotification()).thenThrow(new SonarException("Unable to read notification"));
+    when(manager.readQueue(anyInt()))
+        .thenReturn(Arrays.asList(corruptedElement, queueElement))
+        .thenReturn(Collections.<NotificationQueueElement>emptyList());
+
+    service.processQueue();
+
+    verify(emailChannel).deliver(notificationsFor(ASSIGNEE_SIMON, 1));
+    verify(manager).removeFromQueue(Arrays.asList(corruptedElement, queueElement));
+  }
+
+  @Test
+  public void shouldDeliverNotificationsOfChannelInSingleCall() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    enable(ASSIGNEE_SIMON, "email", "comment on review assigned to me");
+    enable(CREATOR_EVGENY, "email", "comment on review created by me");
+
+    service.processQueue();
+
+    // channels are not thread-safe
+    verify(emailChannel).deliver(ImmutableMap.of(
+        ASSIGNEE_SIMON, Arrays.asList(notification),
+        CREATOR_EVGENY, Arrays.asList(notification)));
+    verify(emailChannel, times(1)).deliver(anyNotifications());
+  }
+
+  @Test
+  public void shouldNotLoadSettingsOfUsersIfQueueIsEmpty() {
+    setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
+    when(manager.readQueue(anyInt())).thenReturn(Collections.<NotificationQueueElement>emptyList());
+
+    service.processQueue();
+
+    verify(manager, never()).getEnabledNotificationKeys();
+  }
+
+  private Map<String, List<Notification>> notificationsFor(String username, int count) {
+    return ImmutableMap.of(username, Collections.nCopies(count, notification));
+  }
+
+  private static Map<String, List<Notification>> anyNotifications() {
+    return Matchers.<Map<String, List<Notification>>>any();
+  }
+
+  private void enable(String username, String channelKey, String dispatcherKey) {
+    enabledNotificationKeys.put(username, DefaultNotificationManager.getNotificationKey(dispatcherKey, channelKey));
   }
 
   private static Answer<Object> addUser(final String user) {
@@ -24,6 +24,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.picocontainer.MutablePicoContainer;
 import org.picocontainer.containers.TransientPicoContainer;
@@ -98,9 +100,21 @@ public class Squid implements DirectedGraphAccessor<SourceCode, SourceCodeEdge>,
     return decorateSourceCodeTreeWith(Metric.values());
   }
 
+  /**
+   * Independent subtrees are decorated in parallel when several processors are available.
+   */
   public SourceProject decorateSourceCodeTreeWith(MetricDef... metrics) {
-    SourceCodeTreeDecorator decorator = new SourceCodeTreeDecorator(project);
-    decorator.decorateWith(metrics);
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (threads < 2) {
+      new SourceCodeTreeDecorator(project).decorateWith(metrics);
+      return project;
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      new SourceCodeTreeDecorator(project, executorService).decorateWith(metrics);
+    } finally {
+      executorService.shutdown();
+    }
     return project;
   }
 
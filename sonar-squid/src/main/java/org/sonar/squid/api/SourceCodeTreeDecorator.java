@@ -20,37 +20,146 @@
 
 package org.sonar.squid.api;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import org.sonar.squid.measures.MetricDef;
 
+/**
+ * Aggregates measures from children to parents. When an executor is given, independent subtrees are aggregated in
+ * parallel: the upper levels of the tree are split until there are enough subtrees, each subtree is decorated by a
+ * task, then the upper nodes are decorated once their children are done. The value of a node only depends on the
+ * values of its children, summed in the order of the children, so results do not depend on the scheduling of the tasks.
+ */
 public class SourceCodeTreeDecorator {
 
+  private static final int MIN_SUBTREES = 16;
+
   private final SourceProject project;
+  private final ExecutorService executorService;
 
   public SourceCodeTreeDecorator(SourceProject project) {
+    this(project, null);
+  }
+
+  /**
+   * @param executorService executor of the subtrees. It is not shut down by this class. The tree is decorated in
+   *                        the current thread if null.
+   * @since 3.5
+   */
+  public SourceCodeTreeDecorator(SourceProject project, ExecutorService executorService) {
     this.project = project;
+    this.executorService = executorService;
   }
 
   public void decorateWith(MetricDef... metrics) {
-    decorateWith(project, metrics);
+    List<MetricDef> aggregatedMetrics = new ArrayList<MetricDef>();
+    for (MetricDef metric : metrics) {
+      if ( !metric.isCalculatedMetric() && metric.isThereAggregationFormula()) {
+        aggregatedMetrics.add(metric);
+      }
+    }
+    MetricDef[] metricsArray = aggregatedMetrics.toArray(new MetricDef[aggregatedMetrics.size()]);
+    if (executorService != null) {
+      decorateInParallel(metricsArray);
+    } else {
+      decorateWith(project, metricsArray);
+    }
   }
 
-  private void decorateWith(SourceCode sourceCode, MetricDef... metrics) {
-    if (sourceCode.hasChildren()) {
-      for (SourceCode child : sourceCode.getChildren()) {
-        decorateWith(child, metrics);
+  private void decorateInParallel(MetricDef[] metrics) {
+    List<SourceCode> upperNodes = new ArrayList<SourceCode>();
+    List<SourceCode> subtrees = split(upperNodes);
+    if (subtrees.size() < 2) {
+      decorateWith(project, metrics);
+      return;
+    }
+
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (SourceCode subtree : subtrees) {
+        futures.add(executorService.submit(new DecorationTask(subtree, metrics)));
       }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new AnalysisException(e);
+    } catch (ExecutionException e) {
+      throw new AnalysisException(e.getCause());
+    }
+
+    // children are after their parents in the list of upper nodes
+    for (int i = upperNodes.size() - 1; i >= 0; i--) {
+      aggregate(upperNodes.get(i), metrics);
     }
+  }
+
+  /**
+   * Walks the tree breadth-first until there are enough subtrees to keep the threads of the executor busy.
+   */
+  private List<SourceCode> split(List<SourceCode> upperNodes) {
+    List<SourceCode> subtrees = new ArrayList<SourceCode>();
+    subtrees.add(project);
+    boolean expanded = true;
+    while (expanded && subtrees.size() < MIN_SUBTREES) {
+      expanded = false;
+      List<SourceCode> nextLevel = new ArrayList<SourceCode>();
+      for (SourceCode node : subtrees) {
+        if (node.hasChildren()) {
+          upperNodes.add(node);
+          nextLevel.addAll(node.getChildren());
+          expanded = true;
+        }
+      }
+      if (expanded) {
+        subtrees = nextLevel;
+      }
+    }
+    return subtrees;
+  }
+
+  private static void decorateWith(SourceCode sourceCode, MetricDef[] metrics) {
+    if ( !sourceCode.hasChildren()) {
+      return;
+    }
+    for (SourceCode child : sourceCode.getChildren()) {
+      decorateWith(child, metrics);
+    }
+    aggregate(sourceCode, metrics);
+  }
+
+  private static void aggregate(SourceCode sourceCode, MetricDef[] metrics) {
+    Set<SourceCode> children = sourceCode.getChildren();
     for (MetricDef metric : metrics) {
-      if ( !metric.aggregateIfThereIsAlreadyAValue() && sourceCode.getDouble(metric) != 0) {
+      double value = sourceCode.getDouble(metric);
+      if ( !metric.aggregateIfThereIsAlreadyAValue() && value != 0) {
         continue;
       }
-      if (sourceCode.hasChildren()) {
-        for (SourceCode child : sourceCode.getChildren()) {
-          if ( !metric.isCalculatedMetric() && metric.isThereAggregationFormula()) {
-            sourceCode.add(metric, child);
-          }
-        }
+      for (SourceCode child : children) {
+        value += child.getDouble(metric);
       }
+      sourceCode.setMeasure(metric, value);
+    }
+  }
+
+  private static final class DecorationTask implements Callable<Void> {
+    private final SourceCode subtree;
+    private final MetricDef[] metrics;
+
+    private DecorationTask(SourceCode subtree, MetricDef[] metrics) {
+      this.subtree = subtree;
+      this.metrics = metrics;
+    }
+
+    public Void call() {
+      decorateWith(subtree, metrics);
+      return null;
     }
   }
 }
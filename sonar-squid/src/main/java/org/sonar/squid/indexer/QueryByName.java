@@ -34,6 +34,10 @@ public class QueryByName implements Query {
     this.resourceName = resourceName;
   }
 
+  String getResourceName() {
+    return resourceName;
+  }
+
   public boolean match(SourceCode unit) {
     if(unit.getName() != null) {
       return unit.getName().equals(resourceName);
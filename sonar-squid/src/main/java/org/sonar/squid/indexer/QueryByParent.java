@@ -31,6 +31,10 @@ public class QueryByParent implements Query {
     this.parent = parent;
   }
 
+  SourceCode getParent() {
+    return parent;
+  }
+
   public boolean match(SourceCode unit) {
     return unit.hasAmongParents(parent);
   }
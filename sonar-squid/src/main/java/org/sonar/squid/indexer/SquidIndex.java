@@ -20,8 +20,13 @@
 
 package org.sonar.squid.indexer;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -31,13 +36,20 @@ import org.sonar.squid.api.SourceCode;
 import org.sonar.squid.api.SourceCodeIndexer;
 import org.sonar.squid.api.SourceCodeSearchEngine;
 
+/**
+ * Units are indexed by key, and also by type and by name so that {@link QueryByType} and {@link QueryByName} do not
+ * scan all the units. {@link QueryByParent} walks the tree of children of the parent. The smallest set of candidates
+ * is used to evaluate all the queries.
+ */
 public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
 
   private Map<String, SourceCode> index = new TreeMap<String, SourceCode>();
+  private Map<Class<?>, Set<SourceCode>> indexByType = new HashMap<Class<?>, Set<SourceCode>>();
+  private Map<String, Set<SourceCode>> indexByName = new HashMap<String, Set<SourceCode>>();
 
   public Collection<SourceCode> search(Query... query) {
     Set<SourceCode> result = new HashSet<SourceCode>();
-    for (SourceCode unit : index.values()) {
+    for (SourceCode unit : getCandidates(query)) {
       if (isSquidUnitMatchQueries(unit, query)) {
         result.add(unit);
       }
@@ -45,6 +57,54 @@ public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
     return result;
   }
 
+  private Collection<SourceCode> getCandidates(Query... queries) {
+    Collection<SourceCode> candidates = index.values();
+    List<QueryByParent> parentQueries = new ArrayList<QueryByParent>();
+    for (Query query : queries) {
+      Collection<SourceCode> subset = null;
+      if (query instanceof QueryByType) {
+        subset = get(indexByType, ((QueryByType) query).getResourceType());
+      } else if (query instanceof QueryByName) {
+        subset = get(indexByName, ((QueryByName) query).getResourceName());
+      } else if (query instanceof QueryByParent) {
+        parentQueries.add((QueryByParent) query);
+      }
+      if (subset != null && subset.size() < candidates.size()) {
+        candidates = subset;
+      }
+    }
+    // trees are walked last, and only while they are smaller than the best candidates
+    for (QueryByParent query : parentQueries) {
+      List<SourceCode> descendants = new ArrayList<SourceCode>();
+      if (addDescendants(query.getParent(), descendants, candidates.size())) {
+        candidates = descendants;
+      }
+    }
+    return candidates;
+  }
+
+  private boolean addDescendants(SourceCode parent, List<SourceCode> descendants, int maxSize) {
+    SourceCode indexedParent = parent == null ? null : index.get(parent.getKey());
+    if (indexedParent == null || !indexedParent.hasChildren()) {
+      return true;
+    }
+    for (SourceCode child : indexedParent.getChildren()) {
+      if (descendants.size() >= maxSize) {
+        return false;
+      }
+      descendants.add(child);
+      if (!addDescendants(child, descendants, maxSize)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static <K> Collection<SourceCode> get(Map<K, Set<SourceCode>> map, K key) {
+    Set<SourceCode> units = map.get(key);
+    return units == null ? Collections.<SourceCode>emptySet() : units;
+  }
+
   private boolean isSquidUnitMatchQueries(SourceCode unit, Query... queries) {
     boolean match;
     for (Query query : queries) {
@@ -62,6 +122,28 @@ public class SquidIndex implements SourceCodeIndexer, SourceCodeSearchEngine {
 
   public void index(SourceCode sourceCode) {
     sourceCode.setSourceCodeIndexer(this);
-    index.put(sourceCode.getKey(), sourceCode);
+    SourceCode previous = index.put(sourceCode.getKey(), sourceCode);
+    if (previous != null) {
+      remove(indexByType, previous.getClass(), previous);
+      remove(indexByName, previous.getName(), previous);
+    }
+    add(indexByType, sourceCode.getClass(), sourceCode);
+    add(indexByName, sourceCode.getName(), sourceCode);
+  }
+
+  private static <K> void add(Map<K, Set<SourceCode>> map, K key, SourceCode sourceCode) {
+    Set<SourceCode> units = map.get(key);
+    if (units == null) {
+      units = new LinkedHashSet<SourceCode>();
+      map.put(key, units);
+    }
+    units.add(sourceCode);
+  }
+
+  private static <K> void remove(Map<K, Set<SourceCode>> map, K key, SourceCode sourceCode) {
+    Set<SourceCode> units = map.get(key);
+    if (units != null) {
+      units.remove(sourceCode);
+    }
   }
 }
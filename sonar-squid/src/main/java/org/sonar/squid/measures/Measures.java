@@ -23,71 +23,83 @@ package org.sonar.squid.measures;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
+/**
+ * Values are stored in an array indexed by a dense id of the metric, ids being shared by all the instances.
+ * Data are rare, they are stored in a map created on demand.
+ */
 public class Measures {
 
-  private Map<MetricDef, Measure> measures = new IdentityHashMap<MetricDef, Measure>();
+  private static final double[] NO_VALUES = new double[0];
+
+  /**
+   * Copied on write, so that the ids can be read without synchronization.
+   */
+  private static volatile Map<MetricDef, Integer> metricIds = new IdentityHashMap<MetricDef, Integer>();
+
+  private double[] values = NO_VALUES;
+  private Map<MetricDef, Object> data;
 
   public double getValue(MetricDef metric) {
-    Measure measure = measures.get(metric);
-    if (measure == null) {
+    Integer id = metricIds.get(metric);
+    if (id == null || id >= values.length) {
       return 0;
     }
-    return measure.getValue();
+    return values[id];
   }
 
   public Object getData(MetricDef metric) {
-    Measure measure = measures.get(metric);
-    if (measure == null) {
+    if (data == null) {
       return null;
     }
-    return measure.getData();
+    return data.get(metric);
   }
 
   public void setValue(MetricDef metric, double measure) {
-    getMeasureOrCreateIt(metric).setValue(measure);
+    int id = getOrCreateId(metric);
+    if (id >= values.length) {
+      if (measure == 0) {
+        return;
+      }
+      double[] newValues = new double[id + 1];
+      System.arraycopy(values, 0, newValues, 0, values.length);
+      values = newValues;
+    }
+    values[id] = measure;
   }
 
   public void setData(MetricDef metric, Object data) {
-    getMeasureOrCreateIt(metric).setData(data);
-  }
-
-  private Measure getMeasureOrCreateIt(MetricDef metric) {
-    Measure measure = measures.get(metric);
-    if (measure == null) {
-      measure = new Measure(0);
-      measures.put(metric, measure);
+    if (this.data == null) {
+      this.data = new IdentityHashMap<MetricDef, Object>(4);
     }
-    return measure;
+    this.data.put(metric, data);
   }
 
   public void removeMeasure(MetricDef metric) {
-    measures.remove(metric);
-  }
-
-  private static final class Measure {
-
-    private double value;
-    private Object data;
-
-    private Measure(double value) {
-      this.value = value;
-    }
-
-    private double getValue() {
-      return value;
+    Integer id = metricIds.get(metric);
+    if (id != null && id < values.length) {
+      values[id] = 0;
     }
-
-    private void setValue(double value) {
-      this.value = value;
+    if (data != null) {
+      data.remove(metric);
     }
+  }
 
-    private Object getData() {
-      return data;
+  private static int getOrCreateId(MetricDef metric) {
+    Integer id = metricIds.get(metric);
+    if (id == null) {
+      id = createId(metric);
     }
+    return id;
+  }
 
-    private void setData(Object data) {
-      this.data = data;
+  private static synchronized int createId(MetricDef metric) {
+    Integer id = metricIds.get(metric);
+    if (id == null) {
+      Map<MetricDef, Integer> ids = new IdentityHashMap<MetricDef, Integer>(metricIds);
+      id = ids.size();
+      ids.put(metric, id);
+      metricIds = ids;
     }
+    return id;
   }
-
 }
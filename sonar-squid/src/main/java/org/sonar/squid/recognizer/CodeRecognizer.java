@@ -21,12 +21,27 @@
 package org.sonar.squid.recognizer;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CodeRecognizer {
 
+  /**
+   * Lines of comments are often repeated (license headers, separators, common sentences), so the latest
+   * decisions of {@link #isLineOfCode(String)} are kept.
+   */
+  private static final int CACHE_SIZE = 500;
+  private static final int MAX_CACHED_LINE_LENGTH = 300;
+
   private LanguageFootprint language;
   private double            threshold;
+  private final Map<String, Boolean> decisions = new LinkedHashMap<String, Boolean>(CACHE_SIZE, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
 
   public CodeRecognizer(double threshold, LanguageFootprint language) {
     this.language = language;
@@ -52,6 +67,34 @@ public class CodeRecognizer {
   }
 
   public final boolean isLineOfCode(String line) {
-    return recognition(line) - threshold > 0;
+    if (line.length() > MAX_CACHED_LINE_LENGTH) {
+      return exceedsThreshold(line);
+    }
+    Boolean decision;
+    synchronized (decisions) {
+      decision = decisions.get(line);
+    }
+    if (decision == null) {
+      decision = exceedsThreshold(line);
+      synchronized (decisions) {
+        decisions.put(line, decision);
+      }
+    }
+    return decision;
+  }
+
+  /**
+   * The probability can only increase with each detector, so remaining detectors are not executed as soon as
+   * the threshold is exceeded.
+   */
+  private boolean exceedsThreshold(String line) {
+    double probability = 0;
+    for (Detector pattern : language.getDetectors()) {
+      probability = 1 - ((1 - probability) * (1 - pattern.recognition(line)));
+      if (probability - threshold > 0) {
+        return true;
+      }
+    }
+    return false;
   }
 }
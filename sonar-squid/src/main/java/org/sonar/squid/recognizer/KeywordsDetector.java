@@ -21,18 +21,19 @@
 package org.sonar.squid.recognizer;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 public class KeywordsDetector extends Detector {
 
-  private List<String> keywords;
+  private Set<String> keywords;
   private boolean toUpperCase = false;
 
   public KeywordsDetector(double probability, String... keywords) {
     super(probability);
-    this.keywords = Arrays.asList(keywords);
+    this.keywords = new HashSet<String>(Arrays.asList(keywords));
   }
 
   public KeywordsDetector(double probability, boolean toUpperCase, String... keywords) {
@@ -30,7 +30,16 @@ import org.sonar.squid.api.AnalysisException;
 
 class LinesFactory {
 
+  /**
+   * Receives each line as soon as it is read, so that lines do not need to be kept in memory.
+   */
+  interface LineVisitor {
+    void visit(Line line);
+  }
+
   private final List<Line> lines = new ArrayList<Line>();
+  private final LineVisitor visitor;
+  private int linesCount = 0;
   private char lastReadCharacter;
   private StringBuilder currentStringBuilder = new StringBuilder();
   private Line currentLine;
@@ -41,6 +50,14 @@ class LinesFactory {
   private LineContextHandler[] handlers;
 
   LinesFactory(Reader reader, String... additionalSingleLineCommentFlags) {
+    this(reader, null, additionalSingleLineCommentFlags);
+  }
+
+  /**
+   * Lines are given to the visitor and are not returned by {@link #getLines()}.
+   */
+  LinesFactory(Reader reader, LineVisitor visitor, String... additionalSingleLineCommentFlags) {
+    this.visitor = visitor;
     List<LineContextHandler> tmpHandlers = new ArrayList<LineContextHandler>();
     for (String additionalSingleLineCommentFlag : additionalSingleLineCommentFlags) {
       tmpHandlers.add(new SingleLineCommentHandler(additionalSingleLineCommentFlag));
@@ -75,7 +92,7 @@ class LinesFactory {
     } catch (IOException e) {
       throw new AnalysisException("Unable to read the source code.", e);
     } catch (Exception e) {
-      throw new AnalysisException("A problem was encountered when analyzing line " + lines.size() + " : '"
+      throw new AnalysisException("A problem was encountered when analyzing line " + linesCount + " : '"
           + currentStringBuilder.toString() + "'", e);
     }
   }
@@ -111,9 +128,17 @@ class LinesFactory {
   private void createNewLine() {
     notifyHandlersAboutEndOfLine();
     currentLine.setString(currentStringBuilder);
-    lines.add(currentLine);
-    currentLine = new Line(lines.size() + 1);
-    currentStringBuilder = new StringBuilder();
+    linesCount++;
+    Line previousLine = currentLine;
+    currentLine = new Line(linesCount + 1);
+    if (visitor == null) {
+      lines.add(previousLine);
+      currentStringBuilder = new StringBuilder();
+    } else {
+      visitor.visit(previousLine);
+      // the visitor does not keep the content of lines, so the buffer can be reused
+      currentStringBuilder.setLength(0);
+    }
   }
 
   private void appendToStringBuilder(int nextChar) {
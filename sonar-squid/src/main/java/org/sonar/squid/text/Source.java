@@ -24,38 +24,49 @@ import org.sonar.squid.measures.Metric;
 import org.sonar.squid.recognizer.CodeRecognizer;
 
 import java.io.Reader;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class Source {
 
-  private List<Line> lines = new ArrayList<Line>();
+  /**
+   * Lines are classified as soon as they are read and their content is not kept. Only one bit per line
+   * and per metric is stored.
+   */
+  private static final Set<Metric> LINE_METRICS = EnumSet.of(Metric.BLANK_LINES, Metric.LINES_OF_CODE, Metric.COMMENT_LINES,
+      Metric.COMMENTED_OUT_CODE_LINES, Metric.COMMENT_BLANK_LINES, Metric.HEADER_COMMENT_LINES);
+
+  private final Map<Metric, BitSet> linesByMetric = new EnumMap<Metric, BitSet>(Metric.class);
+  private int numberOfLines = 0;
   private CodeRecognizer codeRecognizer;
   private Set<Integer> noSonarTagLines = new HashSet<Integer>();
 
   public Source(Reader reader, CodeRecognizer codeRecognizer, String... additionalSingleLineCommentFlag) {
     this.codeRecognizer = codeRecognizer;
-    LinesFactory linesFactory = new LinesFactory(reader, additionalSingleLineCommentFlag);
-    lines = linesFactory.getLines();
-    processLines();
+    new LinesFactory(reader, new LinesFactory.LineVisitor() {
+      public void visit(Line line) {
+        processLine(line);
+      }
+    }, additionalSingleLineCommentFlag);
   }
 
   public Source(String[] stringLines, CodeRecognizer codeRecognizer) {
     this(new StringArrayReader(stringLines), codeRecognizer);
   }
 
-  private void processLines() {
-    for (Line line : lines) {
-      computeBlankLine(line);
-      computeHeaderCommentLine(line);
-      computeCommentLine(line);
-      computeCommentBlankLine(line);
-      computeLineOfCode(line);
-      computeNoSonarTag(line);
-      line.deleteLineContent();
-    }
+  private void processLine(Line line) {
+    numberOfLines++;
+    computeBlankLine(line);
+    computeHeaderCommentLine(line);
+    computeCommentLine(line);
+    computeCommentBlankLine(line);
+    computeLineOfCode(line);
+    computeNoSonarTag(line);
+    line.deleteLineContent();
   }
 
   private void computeNoSonarTag(Line line) {
@@ -66,62 +77,80 @@ public class Source {
 
   private void computeLineOfCode(Line line) {
     if (line.isThereCode()) {
-      line.setMeasure(Metric.LINES_OF_CODE, 1);
+      setMeasure(line, Metric.LINES_OF_CODE);
     }
   }
 
   private void computeHeaderCommentLine(Line line) {
     if (line.isThereComment() && !line.isThereBlankComment() && line.isThereLicenseHeaderComment()) {
-      line.setMeasure(Metric.HEADER_COMMENT_LINES, 1);
+      setMeasure(line, Metric.HEADER_COMMENT_LINES);
     }
   }
 
   private void computeCommentLine(Line line) {
     if (line.isThereComment() && !line.isThereBlankComment()) {
       if (line.isThereJavadoc() || line.isThereLicenseHeaderComment()) {
-        line.setMeasure(Metric.COMMENT_LINES, 1);
+        setMeasure(line, Metric.COMMENT_LINES);
         return;
       }
 
       boolean isCommentedOutCode = codeRecognizer.isLineOfCode(line.getComment());
       if (!isCommentedOutCode) {
-        line.setMeasure(Metric.COMMENT_LINES, 1);
+        setMeasure(line, Metric.COMMENT_LINES);
       } else {
-        line.setMeasure(Metric.COMMENTED_OUT_CODE_LINES, 1);
+        setMeasure(line, Metric.COMMENTED_OUT_CODE_LINES);
       }
     }
   }
 
   private void computeBlankLine(Line line) {
     if (line.isBlank()) {
-      line.setMeasure(Metric.BLANK_LINES, 1);
+      setMeasure(line, Metric.BLANK_LINES);
     }
   }
 
   private void computeCommentBlankLine(Line line) {
     if (line.isThereBlankComment()) {
-      line.setMeasure(Metric.COMMENT_BLANK_LINES, 1);
+      setMeasure(line, Metric.COMMENT_BLANK_LINES);
     }
   }
 
+  private void setMeasure(Line line, Metric metric) {
+    BitSet lines = linesByMetric.get(metric);
+    if (lines == null) {
+      lines = new BitSet();
+      linesByMetric.put(metric, lines);
+    }
+    lines.set(line.getLineIndex());
+  }
+
   public int getMeasure(Metric metric) {
-    return getMeasure(metric, 1, lines.size());
+    return getMeasure(metric, 1, numberOfLines);
   }
 
   /**
    * Numbering of lines starts from 1.
    */
   public int getMeasure(Metric metric, int fromLine, int toLine) {
-    if (toLine > lines.size()) {
-      throw new IllegalStateException("There are only " + lines.size() + " lines in the file and you're trying to reach line " + toLine);
+    if (toLine > numberOfLines) {
+      throw new IllegalStateException("There are only " + numberOfLines + " lines in the file and you're trying to reach line " + toLine);
     }
     if (fromLine < 1) {
       throw new IllegalStateException("Line index starts from 1 and not from " + fromLine);
     }
+    if (metric == Metric.LINES) {
+      return Math.max(0, toLine - fromLine + 1);
+    }
+    if (!LINE_METRICS.contains(metric)) {
+      throw new IllegalStateException("Metric " + metric.name() + " is not available on Line object.");
+    }
 
     int measure = 0;
-    for (int index = fromLine; index < toLine + 1; index++) {
-      measure += lines.get(index - 1).getInt(metric);
+    BitSet lines = linesByMetric.get(metric);
+    if (lines != null) {
+      for (int index = lines.nextSetBit(fromLine); index >= 0 && index <= toLine; index = lines.nextSetBit(index + 1)) {
+        measure++;
+      }
     }
     return measure;
   }
@@ -135,7 +164,7 @@ public class Source {
    */
   @Beta
   public int getNumberOfLines() {
-    return lines.size();
+    return numberOfLines;
   }
 
 }
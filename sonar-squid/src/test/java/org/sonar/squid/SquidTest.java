@@ -21,6 +21,14 @@
 package org.sonar.squid;
 
 import org.junit.Test;
+import org.sonar.squid.api.SourceClass;
+import org.sonar.squid.api.SourceCode;
+import org.sonar.squid.api.SourceMethod;
+import org.sonar.squid.api.SourcePackage;
+import org.sonar.squid.api.SourceProject;
+import org.sonar.squid.measures.Metric;
+
+import static org.junit.Assert.assertEquals;
 
 public class SquidTest {
 
@@ -30,4 +38,24 @@ public class SquidTest {
     squid.register(MyCodeScanner.class);
     squid.register(MyCodeScanner.class);
   }
+
+  @Test
+  public void shouldDecorateSourceCodeTree() {
+    Squid squid = new Squid();
+    for (int i = 0; i < 20; i++) {
+      SourceCode sourcePackage = new SourcePackage("package" + i);
+      SourceCode sourceClass = new SourceClass("package" + i + "/Class");
+      SourceCode method = new SourceMethod("package" + i + "/Class#method()V");
+      method.setMeasure(Metric.COMPLEXITY, 2);
+      method.setMeasure(Metric.METHODS, 1);
+      sourceClass.addChild(method);
+      sourcePackage.addChild(sourceClass);
+      squid.getProject().addChild(sourcePackage);
+    }
+
+    SourceProject project = squid.decorateSourceCodeTreeWith(Metric.COMPLEXITY, Metric.METHODS);
+
+    assertEquals(20, project.getInt(Metric.METHODS));
+    assertEquals(40, project.getInt(Metric.COMPLEXITY));
+  }
 }
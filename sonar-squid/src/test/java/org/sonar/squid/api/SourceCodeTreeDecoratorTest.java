@@ -23,6 +23,9 @@ package org.sonar.squid.api;
 import org.junit.Test;
 import org.sonar.squid.measures.Metric;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
 
 public class SourceCodeTreeDecoratorTest {
@@ -114,6 +117,53 @@ public class SourceCodeTreeDecoratorTest {
     assertEquals(3281, prj1.getInt(Metric.LINES));
   }
 
+  @Test
+  public void parallelDecorationShouldBeEqualToSequentialDecoration() {
+    SourceProject sequentialProject = createTree();
+    new SourceCodeTreeDecorator(sequentialProject).decorateWith(Metric.values());
+    SourceProject parallelProject = createTree();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      new SourceCodeTreeDecorator(parallelProject, executorService).decorateWith(Metric.values());
+    } finally {
+      executorService.shutdown();
+    }
+
+    assertEquals(sequentialProject.getDouble(Metric.COMPLEXITY), parallelProject.getDouble(Metric.COMPLEXITY), 0.0);
+    assertEquals(sequentialProject.getDouble(Metric.LINES), parallelProject.getDouble(Metric.LINES), 0.0);
+    assertEquals(sequentialProject.getDouble(Metric.METHODS), parallelProject.getDouble(Metric.METHODS), 0.0);
+    assertEquals(50 * 10 * 6 + 3, parallelProject.getInt(Metric.METHODS));
+    // LINES is not aggregated on the file which already has a value
+    assertEquals(50 * 10 * 6 * 2 - 6 * 2 + 1000, parallelProject.getInt(Metric.LINES));
+    SourceCode firstPackage = parallelProject.getChildren().iterator().next();
+    assertEquals(10 * 6 + 3, firstPackage.getInt(Metric.METHODS));
+  }
+
+  private SourceProject createTree() {
+    SourceProject project = new SourceProject("project");
+    for (int p = 0; p < 50; p++) {
+      SourceCode pack = new SourcePackage("pack" + p);
+      project.addChild(pack);
+      for (int f = 0; f < 10; f++) {
+        SourceCode file = new SourceFile("pack" + p + "/file" + f);
+        pack.addChild(file);
+        if (p == 0 && f == 0) {
+          file.setMeasure(Metric.LINES, 1000);
+          // methods are aggregated even if the file already has a value
+          file.setMeasure(Metric.METHODS, 3);
+        }
+        for (int m = 0; m < 6; m++) {
+          SourceCode method = new SourceMethod("pack" + p + "/file" + f + "#method" + m);
+          file.addChild(method);
+          method.setMeasure(Metric.METHODS, 1);
+          method.setMeasure(Metric.LINES, 2);
+          method.setMeasure(Metric.COMPLEXITY, 0.1 * m);
+        }
+      }
+    }
+    return project;
+  }
+
   private void decorate(SourceProject project) {
     SourceCodeTreeDecorator decorator = new SourceCodeTreeDecorator(project);
     decorator.decorateWith(Metric.values());
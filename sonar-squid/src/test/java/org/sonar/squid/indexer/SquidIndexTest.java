@@ -97,6 +97,33 @@ public class SquidIndexTest {
     assertTrue(resources.contains(classSquid));
   }
 
+  @Test
+  public void searchByParentAndByName() {
+    Collection<SourceCode> resources = indexer.search(new QueryByParent(project), new QueryByName("Squid"));
+    assertEquals(1, resources.size());
+    assertTrue(resources.contains(classSquid));
+
+    resources = indexer.search(new QueryByParent(fileSquid), new QueryByName("SquidConfiguration.java"));
+    assertEquals(0, resources.size());
+  }
+
+  @Test
+  public void searchByTypeAfterReindexing() {
+    SourceCode otherClass = new SourceClass("org.sonar.squid.Squid", "OtherName");
+    indexer.index(otherClass);
+
+    Collection<SourceCode> resources = indexer.search(new QueryByType(SourceClass.class));
+    assertEquals(1, resources.size());
+    assertTrue(indexer.search(new QueryByName("Squid")).isEmpty());
+    assertEquals(1, indexer.search(new QueryByName("OtherName")).size());
+  }
+
+  @Test
+  public void searchByUnknownParent() {
+    assertTrue(indexer.search(new QueryByParent(new SourcePackage("unknown"))).isEmpty());
+    assertTrue(indexer.search(new QueryByParent(classSquid)).isEmpty());
+  }
+
   @Test
   public void searchByMeasure() {
     fileSquid.add(Metric.COMPLEXITY, 2);
@@ -51,4 +51,43 @@ public class MeasuresTest {
     assertEquals("blocks detail", measures.getData(Metric.LCOM4_BLOCKS));
   }
 
+  @Test
+  public void testRemoveMeasure() {
+    measures.setValue(Metric.ACCESSORS, 3);
+    measures.setData(Metric.LCOM4_BLOCKS, "blocks detail");
+    measures.removeMeasure(Metric.ACCESSORS);
+    measures.removeMeasure(Metric.LCOM4_BLOCKS);
+    assertEquals(0, measures.getValue(Metric.ACCESSORS), 0.1);
+    assertNull(measures.getData(Metric.LCOM4_BLOCKS));
+  }
+
+  @Test
+  public void testMetricsOfDifferentTypes() {
+    MetricDef other = new MetricDef() {
+      public String getName() {
+        return "other";
+      }
+
+      public boolean isCalculatedMetric() {
+        return false;
+      }
+
+      public boolean aggregateIfThereIsAlreadyAValue() {
+        return true;
+      }
+
+      public boolean isThereAggregationFormula() {
+        return true;
+      }
+
+      public CalculatedMetricFormula getCalculatedMetricFormula() {
+        return null;
+      }
+    };
+    measures.setValue(Metric.COMPLEXITY, 5);
+    measures.setValue(other, 2);
+    assertEquals(5, measures.getValue(Metric.COMPLEXITY), 0.1);
+    assertEquals(2, measures.getValue(other), 0.1);
+    assertEquals(0, new Measures().getValue(other), 0.1);
+  }
 }
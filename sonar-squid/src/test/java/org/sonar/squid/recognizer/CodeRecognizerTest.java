@@ -0,0 +1,94 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+
+package org.sonar.squid.recognizer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CodeRecognizerTest {
+
+  @Test
+  public void recognition() {
+    CodeRecognizer recognizer = new CodeRecognizer(0.9, new Footprint(new EndWithDetector(0.95, ';'), new KeywordsDetector(0.5, "int")));
+    assertEquals(0.975, recognizer.recognition("int i;"), 0.0001);
+    assertEquals(0.95, recognizer.recognition("i;"), 0.0001);
+    assertEquals(0.0, recognizer.recognition("comment"), 0.0001);
+  }
+
+  @Test
+  public void isLineOfCode() {
+    CodeRecognizer recognizer = new CodeRecognizer(0.9, new Footprint(new EndWithDetector(0.95, ';'), new KeywordsDetector(0.5, "int")));
+    assertTrue(recognizer.isLineOfCode("int i;"));
+    assertTrue(recognizer.isLineOfCode("i;"));
+    assertFalse(recognizer.isLineOfCode("int"));
+    assertFalse(recognizer.isLineOfCode("comment"));
+  }
+
+  @Test
+  public void shouldStopScanningWhenThresholdIsExceeded() {
+    CountingDetector counting = new CountingDetector();
+    CodeRecognizer recognizer = new CodeRecognizer(0.9, new Footprint(new EndWithDetector(0.95, ';'), counting));
+    assertTrue(recognizer.isLineOfCode("i;"));
+    assertEquals(0, counting.scans);
+  }
+
+  @Test
+  public void shouldReuseDecisionsForSameLines() {
+    CountingDetector counting = new CountingDetector();
+    CodeRecognizer recognizer = new CodeRecognizer(0.9, new Footprint(counting));
+    assertFalse(recognizer.isLineOfCode("Licensed under the Apache License"));
+    assertFalse(recognizer.isLineOfCode("Licensed under the Apache License"));
+    assertEquals(1, counting.scans);
+  }
+
+  private static class Footprint implements LanguageFootprint {
+    private final Set<Detector> detectors;
+
+    Footprint(Detector... detectors) {
+      this.detectors = new LinkedHashSet<Detector>(Arrays.asList(detectors));
+    }
+
+    public Set<Detector> getDetectors() {
+      return detectors;
+    }
+  }
+
+  private static class CountingDetector extends Detector {
+    private int scans = 0;
+
+    CountingDetector() {
+      super(0.5);
+    }
+
+    @Override
+    public int scan(String line) {
+      scans++;
+      return 0;
+    }
+  }
+}
@@ -178,4 +178,19 @@ public class SourceTest {
     assertEquals(1, source.getMeasure(Metric.COMMENT_LINES));
     assertEquals(1, source.getNoSonarTagLines().size());
   }
+
+  @Test
+  public void testGetHeaderCommentLinesOnLargeFile() {
+    StringBuilder code = new StringBuilder("/*\n * license\n */\npackage toto;\n");
+    for (int i = 0; i < 1000; i++) {
+      code.append("int i").append(i).append(" = 0; // value\n\n");
+    }
+    Source source = new Source(new StringReader(code.toString()), codeRecognizer);
+    assertEquals(2005, source.getNumberOfLines());
+    assertEquals(1, source.getMeasure(Metric.HEADER_COMMENT_LINES));
+    assertEquals(1001, source.getMeasure(Metric.LINES_OF_CODE));
+    assertEquals(1001, source.getMeasure(Metric.BLANK_LINES));
+    assertEquals(1001, source.getMeasure(Metric.COMMENT_LINES));
+    assertEquals(2, source.getMeasure(Metric.LINES_OF_CODE, 2000, 2005));
+  }
 }